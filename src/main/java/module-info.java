@@ -10,4 +10,5 @@ module net.finmath.climateschool {
 	requires javafx.graphics;
 	requires java.prefs;
 	requires javafx.base;
+	requires jdk.management;
 }
@@ -0,0 +1,290 @@
+package net.finmath.climateschool.batch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.finmath.climate.models.ClimateModel;
+import net.finmath.climate.models.dice.DICEModel;
+import net.finmath.climateschool.utilities.CancellationToken;
+import net.finmath.climateschool.utilities.ClimateModelSnapshot;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * Evaluates a grid of DICE scenarios without a display.
+ *
+ * The scenarios are evaluated in parallel. Each result is streamed to disk as soon as it is complete:
+ * a line of summary values is appended to <code>summary.csv</code> and the trajectories are passed to a {@link TrajectoryWriter}
+ * (<code>trajectories.bin</code>, see {@link BinaryTrajectoryWriter}, <code>trajectories.csv</code>, or a
+ * memory-mapped {@link ScenarioResultStore} in the directory <code>store</code>, keyed by the scenario index).
+ * The number of scenarios in flight (submitted but not yet written) is bounded, hence the memory does not grow with the size of the grid.
+ *
+ * Usage:
+ * <pre>
+ * java net.finmath.climateschool.batch.BatchScenarioRunner gridFile outputDirectory [binary|csv|mapped] [numberOfThreads]
+ * </pre>
+ * See {@link ScenarioGrid} for the format of the grid file.
+ *
+ * @author Christian Fries
+ */
+public class BatchScenarioRunner {
+
+	public enum TrajectoryFormat {
+		BINARY,
+		CSV,
+		MAPPED
+	}
+
+	private static final String SUMMARY_HEADER = "scenario,discountRate,abatement,savingsRate,timeHorizon,timeStep,"
+			+ "value,temperatureMaximum,temperatureFinal,carbonMaximum,emissionCumulative,damageCostsDiscounted,abatementCostsDiscounted,error";
+
+	private final ScenarioGrid grid;
+	private final Path outputDirectory;
+	private final TrajectoryFormat trajectoryFormat;
+	private final int numberOfThreads;
+	private final int maxScenariosInFlight;
+
+	/**
+	 * Create the runner.
+	 *
+	 * @param grid The scenario grid.
+	 * @param outputDirectory The directory for the output files (created if it does not exist).
+	 * @param trajectoryFormat The format of the trajectory file.
+	 * @param numberOfThreads The number of threads evaluating scenarios.
+	 * @param maxScenariosInFlight The maximum number of scenarios submitted, but not yet written.
+	 */
+	public BatchScenarioRunner(ScenarioGrid grid, Path outputDirectory, TrajectoryFormat trajectoryFormat, int numberOfThreads, int maxScenariosInFlight) {
+		this.grid = grid;
+		this.outputDirectory = outputDirectory;
+		this.trajectoryFormat = trajectoryFormat;
+		this.numberOfThreads = numberOfThreads;
+		this.maxScenariosInFlight = maxScenariosInFlight;
+	}
+
+	public BatchScenarioRunner(ScenarioGrid grid, Path outputDirectory, TrajectoryFormat trajectoryFormat) {
+		this(grid, outputDirectory, trajectoryFormat, Runtime.getRuntime().availableProcessors(), 4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length < 2) {
+			System.err.println("Usage: BatchScenarioRunner gridFile outputDirectory [binary|csv|mapped] [numberOfThreads]");
+			System.exit(1);
+		}
+
+		final ScenarioGrid grid = ScenarioGrid.read(Path.of(args[0]));
+		final TrajectoryFormat format = args.length > 2 ? TrajectoryFormat.valueOf(args[2].toUpperCase()) : TrajectoryFormat.BINARY;
+		final int numberOfThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		final long timeStart = System.currentTimeMillis();
+		final long numberOfScenarios = new BatchScenarioRunner(grid, Path.of(args[1]), format, numberOfThreads, 4 * numberOfThreads).run();
+		final long timeEnd = System.currentTimeMillis();
+
+		System.out.println("Evaluated " + numberOfScenarios + " scenarios in " + (timeEnd-timeStart)/1000.0 + " s.");
+	}
+
+	/**
+	 * Evaluate all scenarios of the grid and write the results.
+	 *
+	 * @return The number of scenarios evaluated.
+	 * @throws IOException Thrown if the output cannot be written.
+	 * @throws InterruptedException Thrown if the calling thread is interrupted.
+	 */
+	public long run() throws IOException, InterruptedException {
+		return run(new CancellationToken());
+	}
+
+	/**
+	 * Evaluate the scenarios of the grid and write the results, until the cancellation is requested.
+	 * After the cancellation no further scenarios are started; the scenarios already evaluated are written.
+	 *
+	 * @param cancellationToken The cancellation token.
+	 * @return The number of scenarios evaluated.
+	 * @throws IOException Thrown if the output cannot be written.
+	 * @throws InterruptedException Thrown if the calling thread is interrupted.
+	 */
+	public long run(CancellationToken cancellationToken) throws IOException, InterruptedException {
+		Files.createDirectories(outputDirectory);
+
+		final long numberOfScenarios = grid.getNumberOfScenarios();
+
+		/*
+		 * Workers evaluate the scenarios, a single writer thread writes the results.
+		 * A permit is acquired before a scenario is submitted. It is released after the scenario has been written,
+		 * or, if the scenario does not reach the writer (cancellation or failure), by the worker.
+		 * The first failure (including errors like OutOfMemoryError) stops the submission and is rethrown.
+		 */
+		final ExecutorService workers = Executors.newFixedThreadPool(numberOfThreads, runnable -> {
+			final Thread thread = new Thread(runnable, "batch-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "batch-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		final Semaphore inFlight = new Semaphore(maxScenariosInFlight);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final AtomicLong numberOfScenariosEvaluated = new AtomicLong();
+
+		try(BufferedWriter summary = Files.newBufferedWriter(outputDirectory.resolve("summary.csv"), StandardCharsets.UTF_8);
+				TrajectoryWriter trajectories = createTrajectoryWriter()) {
+			try {
+				summary.write(SUMMARY_HEADER);
+				summary.newLine();
+
+				for(long index=0; index<numberOfScenarios && failure.get() == null && !cancellationToken.isCancellationRequested(); index++) {
+					final Scenario scenario = grid.getScenario(index);
+					inFlight.acquire();
+					try {
+						workers.execute(() -> {
+							boolean isPermitPassedToWriter = false;
+							try {
+								if(cancellationToken.isCancellationRequested() || failure.get() != null) {
+									return;
+								}
+								final ScenarioResult result = evaluate(scenario);
+								numberOfScenariosEvaluated.incrementAndGet();
+								writer.execute(() -> {
+									try {
+										if(failure.get() == null) {
+											summary.write(getSummaryLine(result));
+											summary.newLine();
+											trajectories.write(result);
+										}
+									}
+									catch(final Throwable e) {
+										failure.compareAndSet(null, e);
+									}
+									finally {
+										inFlight.release();
+									}
+								});
+								isPermitPassedToWriter = true;
+							}
+							catch(final Throwable e) {
+								failure.compareAndSet(null, e);
+							}
+							finally {
+								if(!isPermitPassedToWriter) {
+									inFlight.release();
+								}
+							}
+						});
+					}
+					catch(final RuntimeException e) {
+						inFlight.release();
+						throw e;
+					}
+				}
+
+				// Wait until all scenarios have been written
+				inFlight.acquire(maxScenariosInFlight);
+			}
+			finally {
+				// The writer finishes the queued results before the output is closed
+				workers.shutdownNow();
+				writer.shutdown();
+				writer.awaitTermination(1, TimeUnit.MINUTES);
+			}
+		}
+		finally {
+			workers.shutdownNow();
+			writer.shutdownNow();
+		}
+
+		final Throwable error = failure.get();
+		if(error instanceof IOException) {
+			throw (IOException)error;
+		}
+		else if(error instanceof RuntimeException) {
+			throw (RuntimeException)error;
+		}
+		else if(error instanceof Error) {
+			throw (Error)error;
+		}
+		else if(error != null) {
+			throw new IllegalStateException("The evaluation of the scenarios failed.", error);
+		}
+
+		return numberOfScenariosEvaluated.get();
+	}
+
+	/**
+	 * Evaluate a single scenario using the DICE model.
+	 *
+	 * @param scenario The scenario.
+	 * @return The result (or a result carrying the error, if the evaluation failed).
+	 */
+	public static ScenarioResult evaluate(Scenario scenario) {
+		try {
+			final TimeDiscretization timeDiscretization = scenario.getTimeDiscretization();
+			final ClimateModel climateModel = new DICEModel(timeDiscretization, scenario.getAbatementFunction(), scenario.getSavingsRateFunction(), scenario.discountRate());
+
+			final ClimateModelSnapshot snapshot = ClimateModelSnapshot.of(climateModel);
+
+			final double[][] trajectories = new double[ScenarioResult.TRAJECTORY_NAMES.size()][];
+			trajectories[ScenarioResult.TEMPERATURE] = snapshot.getTemperature();
+			trajectories[ScenarioResult.CARBON] = snapshot.getCarbonConcentration();
+			trajectories[ScenarioResult.EMISSION] = snapshot.getEmission();
+			trajectories[ScenarioResult.GDP] = snapshot.getGDP();
+			trajectories[ScenarioResult.ABATEMENT] = snapshot.getAbatement();
+			trajectories[ScenarioResult.DAMAGE_COSTS] = snapshot.getDamageCosts();
+			trajectories[ScenarioResult.ABATEMENT_COSTS] = snapshot.getAbatementCosts();
+
+			return new ScenarioResult(scenario, snapshot.getValue(), snapshot.getTime(), trajectories, null);
+		}
+		catch(final RuntimeException e) {
+			return ScenarioResult.ofError(scenario, e);
+		}
+	}
+
+	private TrajectoryWriter createTrajectoryWriter() throws IOException {
+		switch(trajectoryFormat) {
+		case CSV:
+			return new CsvTrajectoryWriter(outputDirectory.resolve("trajectories.csv"));
+		case MAPPED:
+			if(grid.getNumberOfScenarios() > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("The grid is too large for a single result store.");
+			}
+			return ScenarioResultStore.create(outputDirectory.resolve("store"), (int)grid.getNumberOfScenarios(), grid.getMaximumNumberOfTimes());
+		case BINARY:
+		default:
+			return new BinaryTrajectoryWriter(outputDirectory.resolve("trajectories.bin"));
+		}
+	}
+
+	private static String getSummaryLine(ScenarioResult result) {
+		final Scenario scenario = result.scenario();
+		return String.join(",",
+				String.valueOf(scenario.index()),
+				String.valueOf(scenario.discountRate()),
+				scenario.abatement(),
+				scenario.savingsRate(),
+				String.valueOf(scenario.timeHorizon()),
+				String.valueOf(scenario.timeStep()),
+				String.valueOf(result.value()),
+				String.valueOf(result.getMaximum(ScenarioResult.TEMPERATURE)),
+				String.valueOf(result.getFinal(ScenarioResult.TEMPERATURE)),
+				String.valueOf(result.getMaximum(ScenarioResult.CARBON)),
+				String.valueOf(result.getIntegral(ScenarioResult.EMISSION, false)),
+				String.valueOf(result.getIntegral(ScenarioResult.DAMAGE_COSTS, true)),
+				String.valueOf(result.getIntegral(ScenarioResult.ABATEMENT_COSTS, true)),
+				result.isError() ? getQuoted(result.error()) : "");
+	}
+
+	/**
+	 * Quote a field for CSV: quotes are doubled, line breaks are replaced by spaces (such that each scenario is a single line).
+	 */
+	private static String getQuoted(String field) {
+		return "\"" + field.replace("\"", "\"\"").replaceAll("[\r\n]+", " ") + "\"";
+	}
+}
@@ -0,0 +1,68 @@
+package net.finmath.climateschool.batch;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the trajectories to a compact binary file (big endian, as written by {@link DataOutputStream}).
+ *
+ * The file starts with a header
+ * <pre>
+ * int    magic (0x44494345, "DICE")
+ * int    version (1)
+ * int    number of trajectories k
+ * String name of trajectory 1..k (modified UTF-8)
+ * </pre>
+ * followed by one record per scenario, each storing its columns one after another
+ * <pre>
+ * long     scenario index
+ * int      number of times n (0 if the evaluation failed)
+ * double[] time (n values)
+ * double[] trajectory 1 (n values)
+ * ...
+ * double[] trajectory k (n values)
+ * </pre>
+ *
+ * @author Christian Fries
+ */
+public class BinaryTrajectoryWriter implements TrajectoryWriter {
+
+	public static final int MAGIC = 0x44494345;
+	public static final int VERSION = 1;
+
+	private final DataOutputStream output;
+
+	public BinaryTrajectoryWriter(Path file) throws IOException {
+		output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(ScenarioResult.TRAJECTORY_NAMES.size());
+		for(final String name : ScenarioResult.TRAJECTORY_NAMES) {
+			output.writeUTF(name);
+		}
+	}
+
+	@Override
+	public void write(ScenarioResult result) throws IOException {
+		output.writeLong(result.scenario().index());
+		output.writeInt(result.time().length);
+		writeColumn(result.time());
+		for(final double[] trajectory : result.trajectories()) {
+			writeColumn(trajectory);
+		}
+	}
+
+	private void writeColumn(double[] values) throws IOException {
+		for(final double value : values) {
+			output.writeDouble(value);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		output.close();
+	}
+}
@@ -0,0 +1,55 @@
+package net.finmath.climateschool.batch;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Parses the specification of a control function (abatement or savings rate) of a scenario.
+ *
+ * Supported specifications are
+ * <ul>
+ * 	<li><code>constant:c</code> - the constant function t &mapsto; c,</li>
+ * 	<li><code>linear:initial:max:time</code> - the one parametric function starting in <code>initial</code>, increasing linearly
+ * 		and reaching <code>max</code> at <code>time</code>, then staying at <code>max</code>.</li>
+ * </ul>
+ *
+ * @author Christian Fries
+ */
+public class ControlFunctions {
+
+	private ControlFunctions() {}
+
+	/**
+	 * Create the control function from its specification.
+	 *
+	 * @param specification The specification, e.g. <code>linear:0.03:1.0:50</code>.
+	 * @return The control function t &mapsto; value.
+	 * @throws IllegalArgumentException If the specification is not supported.
+	 */
+	public static UnaryOperator<Double> parse(String specification) {
+		final String[] parts = specification.trim().split(":");
+		try {
+			switch(parts[0].trim().toLowerCase()) {
+			case "constant":
+				if(parts.length == 2) {
+					final double value = Double.parseDouble(parts[1]);
+					return time -> value;
+				}
+				break;
+			case "linear":
+				if(parts.length == 4) {
+					final double initial = Double.parseDouble(parts[1]);
+					final double max = Double.parseDouble(parts[2]);
+					final double timeToMax = Double.parseDouble(parts[3]);
+					return time -> Math.min(initial + (max-initial)/timeToMax * time, max);
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		catch(final NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number in control specification: " + specification, e);
+		}
+		throw new IllegalArgumentException("Unsupported control specification: " + specification);
+	}
+}
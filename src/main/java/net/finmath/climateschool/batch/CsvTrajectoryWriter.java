@@ -0,0 +1,42 @@
+package net.finmath.climateschool.batch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the trajectories to a CSV file with one line per scenario and time.
+ *
+ * @author Christian Fries
+ */
+public class CsvTrajectoryWriter implements TrajectoryWriter {
+
+	private final BufferedWriter output;
+
+	public CsvTrajectoryWriter(Path file) throws IOException {
+		output = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+		output.write("scenario,time," + String.join(",", ScenarioResult.TRAJECTORY_NAMES));
+		output.newLine();
+	}
+
+	@Override
+	public void write(ScenarioResult result) throws IOException {
+		final StringBuilder line = new StringBuilder();
+		for(int timeIndex=0; timeIndex<result.time().length; timeIndex++) {
+			line.setLength(0);
+			line.append(result.scenario().index()).append(',').append(result.time()[timeIndex]);
+			for(final double[] trajectory : result.trajectories()) {
+				line.append(',').append(trajectory[timeIndex]);
+			}
+			output.write(line.toString());
+			output.newLine();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		output.close();
+	}
+}
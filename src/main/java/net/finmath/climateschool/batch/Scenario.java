@@ -0,0 +1,34 @@
+package net.finmath.climateschool.batch;
+
+import java.util.function.UnaryOperator;
+
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * A single scenario of a batch run: discount rate, abatement and savings rate specification and time horizon.
+ *
+ * @param index The index of the scenario in its grid.
+ * @param discountRate The discount rate.
+ * @param abatement The specification of the abatement function (see {@link ControlFunctions}).
+ * @param savingsRate The specification of the savings rate function (see {@link ControlFunctions}).
+ * @param timeHorizon The time horizon.
+ * @param timeStep The time step.
+ *
+ * @author Christian Fries
+ */
+public record Scenario(long index, double discountRate, String abatement, String savingsRate, double timeHorizon, double timeStep) {
+
+	public TimeDiscretization getTimeDiscretization() {
+		final int numberOfTimeSteps = (int)Math.round(timeHorizon / timeStep);
+		return new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, timeStep);
+	}
+
+	public UnaryOperator<Double> getAbatementFunction() {
+		return ControlFunctions.parse(abatement);
+	}
+
+	public UnaryOperator<Double> getSavingsRateFunction() {
+		return ControlFunctions.parse(savingsRate);
+	}
+}
@@ -0,0 +1,179 @@
+package net.finmath.climateschool.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A grid of scenarios, given as the Cartesian product of the values of each dimension.
+ *
+ * The grid is read from a text file with one line per dimension, e.g.
+ * <pre>
+ * # comment
+ * discountRate = 0.01:0.05:0.005
+ * abatement    = linear:0.03:1.0:50; linear:0.03:1.0:100; constant:0.5
+ * savingsRate  = constant:0.26
+ * timeHorizon  = 500
+ * timeStep     = 1
+ * </pre>
+ * Values are separated by <code>;</code>. Numerical dimensions may also be given as a range <code>from:to:step</code> (including <code>to</code>).
+ * Missing dimensions use the defaults discountRate = 0.03, abatement = linear:0.03:1.0:50, savingsRate = constant:0.26,
+ * timeHorizon = 500, timeStep = 1.
+ *
+ * The scenarios are not stored, {@link #getScenario(long)} maps the index to the scenario (mixed radix), such that
+ * large grids can be enumerated with constant memory.
+ *
+ * @author Christian Fries
+ */
+public class ScenarioGrid {
+
+	private final double[] discountRates;
+	private final String[] abatements;
+	private final String[] savingsRates;
+	private final double[] timeHorizons;
+	private final double[] timeSteps;
+
+	public ScenarioGrid(double[] discountRates, String[] abatements, String[] savingsRates, double[] timeHorizons, double[] timeSteps) {
+		this.discountRates = discountRates.clone();
+		this.abatements = abatements.clone();
+		this.savingsRates = savingsRates.clone();
+		this.timeHorizons = timeHorizons.clone();
+		this.timeSteps = timeSteps.clone();
+
+		// Fail early on invalid control specifications
+		Arrays.stream(abatements).forEach(ControlFunctions::parse);
+		Arrays.stream(savingsRates).forEach(ControlFunctions::parse);
+	}
+
+	/**
+	 * Read the grid from a file (see the class documentation for the format).
+	 *
+	 * @param file The file.
+	 * @return The grid.
+	 * @throws IOException Thrown if the file cannot be read.
+	 * @throws IllegalArgumentException Thrown if the file contains an unknown dimension or an invalid value.
+	 */
+	public static ScenarioGrid read(Path file) throws IOException {
+		double[] discountRates = { 0.03 };
+		String[] abatements = { "linear:0.03:1.0:50" };
+		String[] savingsRates = { "constant:0.26" };
+		double[] timeHorizons = { 500.0 };
+		double[] timeSteps = { 1.0 };
+
+		for(final String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			final String content = line.contains("#") ? line.substring(0, line.indexOf('#')).trim() : line.trim();
+			if(content.isEmpty()) {
+				continue;
+			}
+			final int separator = content.indexOf('=');
+			if(separator < 0) {
+				throw new IllegalArgumentException("Expected 'dimension = values': " + line);
+			}
+			final String key = content.substring(0, separator).trim();
+			final String[] values = Arrays.stream(content.substring(separator+1).split(";")).map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new);
+			if(values.length == 0) {
+				throw new IllegalArgumentException("No values for dimension " + key);
+			}
+			switch(key) {
+			case "discountRate":
+				discountRates = parseNumbers(values);
+				break;
+			case "abatement":
+				abatements = values;
+				break;
+			case "savingsRate":
+				savingsRates = values;
+				break;
+			case "timeHorizon":
+				timeHorizons = parseNumbers(values);
+				break;
+			case "timeStep":
+				timeSteps = parseNumbers(values);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown dimension " + key);
+			}
+		}
+
+		return new ScenarioGrid(discountRates, abatements, savingsRates, timeHorizons, timeSteps);
+	}
+
+	public long getNumberOfScenarios() {
+		return (long)discountRates.length * abatements.length * savingsRates.length * timeHorizons.length * timeSteps.length;
+	}
+
+	/**
+	 * Get the maximum number of times of the time discretizations of the scenarios.
+	 *
+	 * @return The maximum number of times.
+	 */
+	public int getMaximumNumberOfTimes() {
+		int maximumNumberOfTimes = 0;
+		for(final double timeHorizon : timeHorizons) {
+			for(final double timeStep : timeSteps) {
+				maximumNumberOfTimes = Math.max(maximumNumberOfTimes, (int)Math.round(timeHorizon / timeStep) + 1);
+			}
+		}
+		return maximumNumberOfTimes;
+	}
+
+	/**
+	 * Get the scenario with the given index. The discount rate is the fastest running dimension.
+	 *
+	 * @param index The index (0 &le; index &lt; {@link #getNumberOfScenarios()}).
+	 * @return The scenario.
+	 */
+	public Scenario getScenario(long index) {
+		if(index < 0 || index >= getNumberOfScenarios()) {
+			throw new IndexOutOfBoundsException("Scenario index " + index + " out of range.");
+		}
+		long remainder = index;
+		final int discountRateIndex = (int)(remainder % discountRates.length);
+		remainder /= discountRates.length;
+		final int abatementIndex = (int)(remainder % abatements.length);
+		remainder /= abatements.length;
+		final int savingsRateIndex = (int)(remainder % savingsRates.length);
+		remainder /= savingsRates.length;
+		final int timeHorizonIndex = (int)(remainder % timeHorizons.length);
+		remainder /= timeHorizons.length;
+		final int timeStepIndex = (int)remainder;
+
+		return new Scenario(index, discountRates[discountRateIndex], abatements[abatementIndex], savingsRates[savingsRateIndex],
+				timeHorizons[timeHorizonIndex], timeSteps[timeStepIndex]);
+	}
+
+	private static double[] parseNumbers(String[] values) {
+		final List<Double> numbers = new ArrayList<>();
+		for(final String value : values) {
+			final String[] range = value.split(":");
+			try {
+				if(range.length == 1) {
+					numbers.add(Double.parseDouble(range[0]));
+				}
+				else if(range.length == 3) {
+					final double from = Double.parseDouble(range[0]);
+					final double to = Double.parseDouble(range[1]);
+					final double step = Double.parseDouble(range[2]);
+					if(step <= 0) {
+						throw new IllegalArgumentException("Range step has to be positive: " + value);
+					}
+					final long numberOfValues = (long)Math.floor((to - from) / step + 1E-9) + 1;
+					for(long i=0; i<numberOfValues; i++) {
+						numbers.add(from + i * step);
+					}
+				}
+				else {
+					throw new IllegalArgumentException("Expected a number or a range from:to:step: " + value);
+				}
+			}
+			catch(final NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid number: " + value, e);
+			}
+		}
+		return numbers.stream().mapToDouble(Double::doubleValue).toArray();
+	}
+}
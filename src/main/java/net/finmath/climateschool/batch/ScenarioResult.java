@@ -0,0 +1,69 @@
+package net.finmath.climateschool.batch;
+
+import java.util.List;
+
+/**
+ * The result of the evaluation of a {@link Scenario}: the value (welfare) and the (expected) trajectories of the model.
+ *
+ * @param scenario The scenario.
+ * @param value The value (welfare) of the model, NaN if the evaluation failed.
+ * @param time The times of the trajectories.
+ * @param trajectories The trajectories, in the order of {@link #TRAJECTORY_NAMES}.
+ * @param error The error message if the evaluation failed, otherwise null.
+ *
+ * @author Christian Fries
+ */
+public record ScenarioResult(Scenario scenario, double value, double[] time, double[][] trajectories, String error) {
+
+	public static final int TEMPERATURE = 0;
+	public static final int CARBON = 1;
+	public static final int EMISSION = 2;
+	public static final int GDP = 3;
+	public static final int ABATEMENT = 4;
+	public static final int DAMAGE_COSTS = 5;
+	public static final int ABATEMENT_COSTS = 6;
+
+	public static final List<String> TRAJECTORY_NAMES = List.of("temperature", "carbon", "emission", "gdp", "abatement", "damageCosts", "abatementCosts");
+
+	public static ScenarioResult ofError(Scenario scenario, Throwable error) {
+		return new ScenarioResult(scenario, Double.NaN, new double[0], new double[TRAJECTORY_NAMES.size()][0], String.valueOf(error));
+	}
+
+	public boolean isError() {
+		return error != null;
+	}
+
+	public double[] getTrajectory(int trajectoryIndex) {
+		return trajectories[trajectoryIndex];
+	}
+
+	public double getMaximum(int trajectoryIndex) {
+		double maximum = Double.NaN;
+		for(final double x : trajectories[trajectoryIndex]) {
+			maximum = Double.isNaN(maximum) ? x : Math.max(maximum, x);
+		}
+		return maximum;
+	}
+
+	public double getFinal(int trajectoryIndex) {
+		final double[] trajectory = trajectories[trajectoryIndex];
+		return trajectory.length > 0 ? trajectory[trajectory.length-1] : Double.NaN;
+	}
+
+	/**
+	 * The sum of the trajectory times the time step, discounted with the scenario's discount rate (or undiscounted).
+	 *
+	 * @param trajectoryIndex The index of the trajectory.
+	 * @param isDiscounted If true, the values are discounted with exp(-r t).
+	 * @return The integral of the trajectory over the time horizon.
+	 */
+	public double getIntegral(int trajectoryIndex, boolean isDiscounted) {
+		final double[] trajectory = trajectories[trajectoryIndex];
+		double sum = 0.0;
+		for(int i=0; i<trajectory.length-1; i++) {
+			final double discountFactor = isDiscounted ? Math.exp(-scenario.discountRate() * time[i]) : 1.0;
+			sum += trajectory[i] * (time[i+1] - time[i]) * discountFactor;
+		}
+		return sum;
+	}
+}
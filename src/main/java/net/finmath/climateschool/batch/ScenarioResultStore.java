@@ -0,0 +1,301 @@
+package net.finmath.climateschool.batch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * A store for scenario trajectories, backed by memory-mapped files, laid out column by column.
+ *
+ * The store is a directory containing one file per column (<code>time.f64</code> and one file per name in
+ * {@link ScenarioResult#TRAJECTORY_NAMES}, e.g. <code>temperature.f64</code>). Each column file consists of
+ * <code>capacity</code> slots of <code>maxNumberOfTimes</code> doubles (native byte order), slot <i>s</i> holding the values
+ * of the scenario stored in that slot. The file <code>index.csv</code> maps the scenario keys to the slots
+ * (and the number of times stored), <code>store.properties</code> holds the layout.
+ *
+ * Reading returns read-only {@link DoubleBuffer} views on the mapped files, i.e., no copies are made on the heap.
+ * Scenarios may be stored concurrently from different threads (each scenario is written to its own slot).
+ *
+ * @author Christian Fries
+ */
+public class ScenarioResultStore implements TrajectoryWriter {
+
+	private static final String INDEX_FILE = "index.csv";
+	private static final String LAYOUT_FILE = "store.properties";
+
+	// Maximum number of bytes mapped by one buffer (a MappedByteBuffer is limited to 2 GB)
+	private static final long SEGMENT_SIZE_MAX = 1L << 30;
+
+	private record Entry(int slot, int numberOfTimes) {}
+
+	private final Path directory;
+	private final int capacity;
+	private final int maxNumberOfTimes;
+	private final int slotsPerSegment;
+
+	// columns.get(column)[segment], column 0 is the time
+	private final List<DoubleBuffer[]> columns = new ArrayList<>();
+	private final List<FileChannel> channels = new ArrayList<>();
+
+	// Stored scenarios (published after their data has been written) and keys of scenarios being written, guarded by index
+	private final Map<String, Entry> index = new LinkedHashMap<>();
+	private final Set<String> reservedKeys = new HashSet<>();
+	private int nextSlot = 0;
+	private final BufferedWriter indexWriter;
+
+	private ScenarioResultStore(Path directory, int capacity, int maxNumberOfTimes, boolean isNew) throws IOException {
+		this.directory = directory;
+		this.capacity = capacity;
+		this.maxNumberOfTimes = maxNumberOfTimes;
+		this.slotsPerSegment = (int)Math.max(1, Math.min(capacity, SEGMENT_SIZE_MAX / (maxNumberOfTimes * (long)Double.BYTES)));
+
+		final List<String> columnNames = new ArrayList<>();
+		columnNames.add("time");
+		columnNames.addAll(ScenarioResult.TRAJECTORY_NAMES);
+
+		final int numberOfSegments = (capacity + slotsPerSegment - 1) / slotsPerSegment;
+		for(final String columnName : columnNames) {
+			final FileChannel channel = FileChannel.open(directory.resolve(columnName + ".f64"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			channels.add(channel);
+
+			final DoubleBuffer[] segments = new DoubleBuffer[numberOfSegments];
+			for(int segment=0; segment<numberOfSegments; segment++) {
+				final long segmentPosition = (long)segment * slotsPerSegment * maxNumberOfTimes * Double.BYTES;
+				final long segmentSize = (long)Math.min(slotsPerSegment, capacity - segment * slotsPerSegment) * maxNumberOfTimes * Double.BYTES;
+				segments[segment] = channel.map(MapMode.READ_WRITE, segmentPosition, segmentSize).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+			}
+			columns.add(segments);
+		}
+
+		final Path indexFile = directory.resolve(INDEX_FILE);
+		if(!isNew) {
+			for(final String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+				final String[] fields = line.split(",", 3);
+				if(fields.length == 3) {
+					final Entry entry = new Entry(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]));
+					index.put(fields[2], entry);
+					nextSlot = Math.max(nextSlot, entry.slot()+1);
+				}
+			}
+		}
+		indexWriter = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, isNew ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Create a new (empty) store. Existing files in the directory are overwritten.
+	 *
+	 * @param directory The directory of the store (created if it does not exist).
+	 * @param capacity The maximum number of scenarios.
+	 * @param maxNumberOfTimes The maximum number of times of a trajectory.
+	 * @return The store.
+	 * @throws IOException Thrown if the files cannot be created.
+	 */
+	public static ScenarioResultStore create(Path directory, int capacity, int maxNumberOfTimes) throws IOException {
+		Files.createDirectories(directory);
+		final Properties layout = new Properties();
+		layout.setProperty("capacity", String.valueOf(capacity));
+		layout.setProperty("maxNumberOfTimes", String.valueOf(maxNumberOfTimes));
+		try(OutputStream output = Files.newOutputStream(directory.resolve(LAYOUT_FILE))) {
+			layout.store(output, "Layout of the scenario result store");
+		}
+		return new ScenarioResultStore(directory, capacity, maxNumberOfTimes, true);
+	}
+
+	/**
+	 * Open an existing store.
+	 *
+	 * @param directory The directory of the store.
+	 * @return The store.
+	 * @throws IOException Thrown if the files cannot be read.
+	 */
+	public static ScenarioResultStore open(Path directory) throws IOException {
+		final Properties layout = new Properties();
+		try(InputStream input = Files.newInputStream(directory.resolve(LAYOUT_FILE))) {
+			layout.load(input);
+		}
+		return new ScenarioResultStore(directory,
+				Integer.parseInt(layout.getProperty("capacity")),
+				Integer.parseInt(layout.getProperty("maxNumberOfTimes")),
+				false);
+	}
+
+	/**
+	 * Store the trajectories of a scenario.
+	 *
+	 * The scenario becomes visible (e.g. to {@link #contains(String)}) only after its data has been written. If writing fails,
+	 * the key is released (it may be stored again), its slot is not reused.
+	 *
+	 * @param key The key of the scenario.
+	 * @param time The times.
+	 * @param trajectories The trajectories in the order of {@link ScenarioResult#TRAJECTORY_NAMES}, each with one value per time.
+	 * @throws IOException Thrown if the index cannot be written.
+	 * @throws IllegalStateException Thrown if the key already exists or the store is full.
+	 */
+	public void put(String key, double[] time, double[][] trajectories) throws IOException {
+		if(time.length > maxNumberOfTimes) {
+			throw new IllegalArgumentException("Trajectory has " + time.length + " times, the store supports " + maxNumberOfTimes + ".");
+		}
+		if(trajectories.length != columns.size()-1) {
+			throw new IllegalArgumentException("Expected " + (columns.size()-1) + " trajectories, got " + trajectories.length + ".");
+		}
+		for(int column=0; column<trajectories.length; column++) {
+			if(trajectories[column] == null || trajectories[column].length != time.length) {
+				throw new IllegalArgumentException("Trajectory " + ScenarioResult.TRAJECTORY_NAMES.get(column) + " does not have " + time.length + " values.");
+			}
+		}
+		if(key.contains("\n") || key.contains("\r")) {
+			throw new IllegalArgumentException("Key must not contain line breaks.");
+		}
+
+		final int slot;
+		synchronized (index) {
+			if(index.containsKey(key) || reservedKeys.contains(key)) {
+				throw new IllegalStateException("Scenario " + key + " already stored.");
+			}
+			if(nextSlot >= capacity) {
+				throw new IllegalStateException("Store is full (capacity " + capacity + ").");
+			}
+			slot = nextSlot++;
+			// Reserve the key, the entry is published to the index after the data has been written.
+			reservedKeys.add(key);
+		}
+
+		try {
+			final int segment = slot / slotsPerSegment;
+			final int offset = (slot % slotsPerSegment) * maxNumberOfTimes;
+			columns.get(0)[segment].put(offset, time);
+			for(int column=0; column<trajectories.length; column++) {
+				columns.get(column+1)[segment].put(offset, trajectories[column]);
+			}
+
+			synchronized (index) {
+				indexWriter.write(slot + "," + time.length + "," + key + System.lineSeparator());
+				index.put(key, new Entry(slot, time.length));
+			}
+		}
+		finally {
+			synchronized (index) {
+				reservedKeys.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Store the trajectories of a scenario result, using the scenario index as key.
+	 * Failed evaluations are stored with zero times.
+	 */
+	@Override
+	public void write(ScenarioResult result) throws IOException {
+		put(String.valueOf(result.scenario().index()), result.time(), result.trajectories());
+	}
+
+	public boolean contains(String key) {
+		synchronized (index) {
+			return index.containsKey(key);
+		}
+	}
+
+	public Set<String> getKeys() {
+		synchronized (index) {
+			return Collections.unmodifiableSet(new LinkedHashSet<>(index.keySet()));
+		}
+	}
+
+	public int getNumberOfScenarios() {
+		synchronized (index) {
+			return index.size();
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getNumberOfTimes(String key) {
+		return getEntry(key).numberOfTimes();
+	}
+
+	/**
+	 * Get a view on the times of a scenario.
+	 *
+	 * @param key The key of the scenario.
+	 * @return A read-only view on the mapped file.
+	 */
+	public DoubleBuffer getTime(String key) {
+		return getColumn(key, 0);
+	}
+
+	/**
+	 * Get a view on a trajectory of a scenario.
+	 *
+	 * @param key The key of the scenario.
+	 * @param trajectoryIndex The index of the trajectory, e.g. {@link ScenarioResult#TEMPERATURE}.
+	 * @return A read-only view on the mapped file.
+	 */
+	public DoubleBuffer getTrajectory(String key, int trajectoryIndex) {
+		return getColumn(key, trajectoryIndex+1);
+	}
+
+	/**
+	 * Write the mapped data and the index to disk.
+	 *
+	 * @throws IOException Thrown if the index cannot be written.
+	 */
+	public void force() throws IOException {
+		for(final FileChannel channel : channels) {
+			channel.force(false);
+		}
+		synchronized (index) {
+			indexWriter.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		force();
+		indexWriter.close();
+		for(final FileChannel channel : channels) {
+			channel.close();
+		}
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	private DoubleBuffer getColumn(String key, int column) {
+		final Entry entry = getEntry(key);
+		final int segment = entry.slot() / slotsPerSegment;
+		final int offset = (entry.slot() % slotsPerSegment) * maxNumberOfTimes;
+		return columns.get(column)[segment].slice(offset, entry.numberOfTimes()).asReadOnlyBuffer();
+	}
+
+	private Entry getEntry(String key) {
+		final Entry entry;
+		synchronized (index) {
+			entry = index.get(key);
+		}
+		if(entry == null) {
+			throw new IllegalArgumentException("Scenario " + key + " not found.");
+		}
+		return entry;
+	}
+}
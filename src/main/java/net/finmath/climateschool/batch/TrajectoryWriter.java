@@ -0,0 +1,17 @@
+package net.finmath.climateschool.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A sink for the trajectories of the scenarios of a batch run.
+ *
+ * The results arrive in the order of completion, not in the order of the scenario index.
+ * The methods are called from a single thread.
+ *
+ * @author Christian Fries
+ */
+public interface TrajectoryWriter extends Closeable {
+
+	void write(ScenarioResult result) throws IOException;
+}
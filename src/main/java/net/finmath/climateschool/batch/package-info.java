@@ -0,0 +1,6 @@
+/**
+ * Headless (batch) evaluation of DICE scenarios.
+ * 
+ * @author Christian Fries
+ */
+package net.finmath.climateschool.batch;
@@ -1,10 +1,18 @@
 package net.finmath.climateschool.begin;
 
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.DoubleStream;
 
+import net.finmath.climateschool.utilities.StreamingHistogram;
 import net.finmath.functions.NormalDistribution;
-import net.finmath.plots.Plots;
+import net.finmath.plots.GraphStyle;
+import net.finmath.plots.Plot2D;
+import net.finmath.plots.PlotablePoints2D;
+import net.finmath.plots.Point2D;
 import net.finmath.randomnumbers.MersenneTwister;
 import net.finmath.randomnumbers.RandomNumberGenerator1D;
 
@@ -18,35 +26,43 @@ public class Test3 {
 	public static void main(String[] args) throws Exception {
 
 		System.out.println("\n\tThis test should show two plots of the density of samples of a normal distribution.");
-		
+
 		long numberOfSamples = 1000000;
 		plotNormalSamples(numberOfSamples, 0.0 /* mean */, 0.1 /* standard deviation */);
 		plotNormalSamples(numberOfSamples, 0.0 /* mean */, 1.0 /* standard deviation */);
 	}
 
 	private static void plotNormalSamples(long numberOfSamples, double mean, double standardDeviation) throws Exception {
-		
-		List<Double> randomNumbersNormal = getNormalDistributedRandomNumbers(numberOfSamples, mean, standardDeviation);
-		plotDensity(randomNumbersNormal, "Normal with mean " + mean + " and std. dev. " + standardDeviation);
+
+		// The samples are counted in a histogram over mean +/- 4 standard deviations as they are generated (not stored)
+		StreamingHistogram histogram = StreamingHistogram.of(getNormalDistributedRandomNumbers(numberOfSamples, mean, standardDeviation),
+				mean - 4.0 * standardDeviation, mean + 4.0 * standardDeviation, 300);
+		plotDensity(histogram, "Normal with mean " + mean + " and std. dev. " + standardDeviation);
 	}
 
-	private static List<Double> getNormalDistributedRandomNumbers(long numberOfSamples, double mean, double standardDeviation) {
+	private static DoubleStream getNormalDistributedRandomNumbers(long numberOfSamples, double mean, double standardDeviation) {
 		RandomNumberGenerator1D randomNumberGenerator = new MersenneTwister(seed);
-		List<Double> valuesNormal = new ArrayList<>();
-		for(int i = 0; i<numberOfSamples; i++) {
+		return DoubleStream.generate(() -> {
 			double uniform = randomNumberGenerator.nextDouble();
 
-			double standardNormal = NormalDistribution.inverseCumulativeDistribution(uniform);;
+			double standardNormal = NormalDistribution.inverseCumulativeDistribution(uniform);
 
 			double normal = standardDeviation * standardNormal + mean;
 
-			valuesNormal.add(normal);
-		}
-		return valuesNormal;
+			return normal;
+		}).limit(numberOfSamples);
 	}
 
-	private static void plotDensity(List<Double> values, String title) throws Exception {
-		Plots.createDensity(values, 300, 4.0)
+	private static void plotDensity(StreamingHistogram histogram, String title) throws Exception {
+		double[] binCenters = histogram.getBinCenters();
+		double[] density = histogram.getDensity();
+		List<Point2D> points = new ArrayList<>();
+		for(int bin = 0; bin<binCenters.length; bin++) {
+			points.add(new Point2D(binCenters[bin], density[bin]));
+		}
+
+		new Plot2D(List.of(
+				new PlotablePoints2D("density", points, new GraphStyle(new Rectangle(2, 2), new BasicStroke(), Color.BLUE))))
 			.setTitle(title)
 			.setXRange(-4, 4)
 			.show();
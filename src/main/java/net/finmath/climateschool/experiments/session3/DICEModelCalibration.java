@@ -1,6 +1,7 @@
 package net.finmath.climateschool.experiments.session3;
 
 import java.util.Arrays;
+import java.util.function.Consumer;
 import java.util.function.UnaryOperator;
 
 import net.finmath.climate.models.CarbonConcentration;
@@ -52,17 +53,69 @@ public class DICEModelCalibration {
 		final UnaryOperator<Double> savingsRateFunction = time -> 0.26;
 
 
-		// Initial parameters for our abatement function
-		final double[] initialParameters = new double[timeDiscretization.getNumberOfTimes()];
-		Arrays.fill(initialParameters, -Math.log(-Math.log(0.8)));
-
 		// Create a plot of the abatement function (will be updated during iterations)
 		Plot2D plot = Plots
 				.createScatter(timeDiscretization.getAsDoubleArray(), timeDiscretization.getAsDoubleArray(), 0, 300, 3)
 				.setTitle("Abatement (r = " + String.format("%.2f%%", discountRate*100) + ")").setXAxisLabel("time (years)").setYAxisLabel("Abatement \u03bc");
 		plot.show();
 
-		final AdamOptimizerUsingFiniteDifferences optimizer = new AdamOptimizerUsingFiniteDifferences(initialParameters, 800, 0.1, GradientMethod.AVERAGE) {
+		final double[] abatementParameter = getCalibratedAbatement(timeDiscretization, savingsRateFunction, discountRate, 800,
+				climateModel -> Plots.updateScatter(plot, timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getAbatement()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3));
+		System.out.println(Arrays.toString(abatementParameter));
+
+		/*
+		 * Create our abatement model
+		 */
+		final UnaryOperator<Double> abatementFunction = time -> abatementParameter[(int)Math.round(time/timeStep)];
+
+		/*
+		 * Create the DICE model
+		 */
+		final ClimateModel climateModel = new DICEModel(timeDiscretization, abatementFunction, savingsRateFunction, discountRate);
+
+
+		/*
+		 * Plot
+		 */
+
+		Plots
+		.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getTemperature()).mapToDouble(Temperature::getExpectedTemperatureOfAtmosphere).toArray(), 0, 300, 3)
+		.setTitle("Temperature (T(\u03BC=1) =" + ", r = " + discountRate + ")").setXAxisLabel("time (years)").setYAxisLabel("Temperature [°C]").show();
+
+		Plots
+		.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getCarbonConcentration()).mapToDouble(CarbonConcentration::getExpectedCarbonConcentrationInAtmosphere).toArray(), 0, 300, 3)
+		.setTitle("Carbon Concentration (T(\u03BC=1) =" + ", r = " + discountRate + ")").setXAxisLabel("time (years)").setYAxisLabel("Carbon concentration [GtC]").show();
+
+		Plots
+		.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getEmission()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
+		.setTitle("Emission (T(\u03BC=1) =" + ", r = " + discountRate + ")").setXAxisLabel("time (years)").setYAxisLabel("Emission [GtCO2/yr]").show();
+
+		Plots
+		.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getGDP()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
+		.setTitle("Output (T(\u03BC=1) =" + ", r = " + discountRate + ")").setXAxisLabel("time (years)").setYAxisLabel(" Output [Tr$2005]").show();
+
+		Plots
+		.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getAbatement()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
+		.setTitle("Abatement t ⟼ 𝜇(t) (r = " + String.format("%.0f%%", discountRate*100) + ")").setXAxisLabel("time t (years)").setYAxisLabel("Abatement 𝜇").show();
+	}
+
+	/**
+	 * Calibrates the piecewise constant abatement function (one parameter per time step) using the ADAM optimizer.
+	 *
+	 * @param timeDiscretization The time discretization of the DICE model.
+	 * @param savingsRateFunction The savings rate function.
+	 * @param discountRate The discount rate.
+	 * @param numberOfIterations The number of iterations of the optimizer.
+	 * @param progressListener Receives the model of the current iteration every 200 iterations (may be null).
+	 * @return The calibrated abatement (one value per time index).
+	 */
+	public static double[] getCalibratedAbatement(TimeDiscretization timeDiscretization, UnaryOperator<Double> savingsRateFunction, double discountRate, int numberOfIterations, Consumer<ClimateModel> progressListener) {
+
+		// Initial parameters for our abatement function
+		final double[] initialParameters = new double[timeDiscretization.getNumberOfTimes()];
+		Arrays.fill(initialParameters, -Math.log(-Math.log(0.8)));
+
+		final AdamOptimizerUsingFiniteDifferences optimizer = new AdamOptimizerUsingFiniteDifferences(initialParameters, numberOfIterations, 0.1, GradientMethod.AVERAGE) {
 			private int iteration = 0;
 			@Override
 			public RandomVariable setValue(RandomVariable[] parameters) {
@@ -92,8 +145,8 @@ public class DICEModelCalibration {
 				roughness *= 0.1;
 
 				// Update the plot every 200 iterations
-				if(iteration%200 == 0) {
-					Plots.updateScatter(plot, timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getAbatement()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3);
+				if(iteration%200 == 0 && progressListener != null) {
+					progressListener.accept(climateModel);
 				}
 				iteration++;
 
@@ -107,41 +160,7 @@ public class DICEModelCalibration {
 		final RandomVariable[] bestParameters = optimizer.getBestFitParameters();
 		double[] abatementParameter = Arrays.stream(bestParameters).mapToDouble(RandomVariable::getAverage).map(x -> Math.exp(-Math.exp(-x))).toArray();
 		abatementParameter[0] = 0.03;
-		System.out.println(Arrays.toString(abatementParameter));
 
-		/*
-		 * Create our abatement model
-		 */
-		final UnaryOperator<Double> abatementFunction = time -> abatementParameter[(int)Math.round(time/timeStep)];
-
-		/*
-		 * Create the DICE model
-		 */
-		final ClimateModel climateModel = new DICEModel(timeDiscretization, abatementFunction, savingsRateFunction, discountRate);
-
-
-		/*
-		 * Plot
-		 */
-
-		Plots
-		.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getTemperature()).mapToDouble(Temperature::getExpectedTemperatureOfAtmosphere).toArray(), 0, 300, 3)
-		.setTitle("Temperature (T(\u03BC=1) =" + ", r = " + discountRate + ")").setXAxisLabel("time (years)").setYAxisLabel("Temperature [°C]").show();
-
-		Plots
-		.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getCarbonConcentration()).mapToDouble(CarbonConcentration::getExpectedCarbonConcentrationInAtmosphere).toArray(), 0, 300, 3)
-		.setTitle("Carbon Concentration (T(\u03BC=1) =" + ", r = " + discountRate + ")").setXAxisLabel("time (years)").setYAxisLabel("Carbon concentration [GtC]").show();
-
-		Plots
-		.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getEmission()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
-		.setTitle("Emission (T(\u03BC=1) =" + ", r = " + discountRate + ")").setXAxisLabel("time (years)").setYAxisLabel("Emission [GtCO2/yr]").show();
-
-		Plots
-		.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getGDP()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
-		.setTitle("Output (T(\u03BC=1) =" + ", r = " + discountRate + ")").setXAxisLabel("time (years)").setYAxisLabel(" Output [Tr$2005]").show();
-
-		Plots
-		.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getAbatement()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
-		.setTitle("Abatement t ⟼ 𝜇(t) (r = " + String.format("%.0f%%", discountRate*100) + ")").setXAxisLabel("time t (years)").setYAxisLabel("Abatement 𝜇").show();
+		return abatementParameter;
 	}
 }
@@ -0,0 +1,104 @@
+package net.finmath.climateschool.experiments.session3;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import net.finmath.climate.models.ClimateModel;
+import net.finmath.climate.models.dice.DICEModel;
+import net.finmath.climateschool.utilities.DICEModelDynamics;
+import net.finmath.climateschool.utilities.Downsampling;
+import net.finmath.climateschool.utilities.DynamicProgrammingAbatementSolver;
+import net.finmath.plots.GraphStyle;
+import net.finmath.plots.Plot2D;
+import net.finmath.plots.PlotablePoints2D;
+import net.finmath.plots.Point2D;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Experiment related to the DICE model.
+ *
+ * Calculates the optimal abatement path by dynamic programming (treating the abatement as a control of the
+ * state carbon, temperature and capital) and compares it with the calibration of the 500 parameters of the
+ * piecewise constant abatement function using the ADAM optimizer (see {@link DICEModelCalibration}).
+ *
+ * Both abatement paths are valued with the same <code>DICEModel</code>, such that the values are comparable.
+ *
+ * Suggestion: Change the discount rate and compare the calculation times and values.
+ *
+ * @author Christian Fries
+ */
+public class DICEModelDynamicProgramming {
+
+	private static final double timeStep = 1.0;
+	private static final double timeHorizon = 500.0;
+
+	public static void main(String[] args) {
+
+		/*
+		 * Discount rate
+		 */
+		final double discountRate = 0.015;
+
+		/*
+		 * Create a time discretization
+		 */
+		final int numberOfTimeSteps = (int)Math.round(timeHorizon / timeStep);
+		final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, timeStep);
+
+		/*
+		 * Create our savings rate model: a constant
+		 */
+		final UnaryOperator<Double> savingsRateFunction = time -> 0.26;
+
+		/*
+		 * Dynamic programming
+		 */
+		final long timeStartDynamicProgramming = System.currentTimeMillis();
+		final DynamicProgrammingAbatementSolver.Result result = new DynamicProgrammingAbatementSolver(new DICEModelDynamics(timeDiscretization), savingsRateFunction, discountRate).solve();
+		final long timeEndDynamicProgramming = System.currentTimeMillis();
+		final double[] abatementDynamicProgramming = result.abatement();
+
+		/*
+		 * Calibration using the ADAM optimizer
+		 */
+		final long timeStartOptimizer = System.currentTimeMillis();
+		final double[] abatementOptimizer = DICEModelCalibration.getCalibratedAbatement(timeDiscretization, savingsRateFunction, discountRate, 800, null);
+		final long timeEndOptimizer = System.currentTimeMillis();
+
+		final double valueDynamicProgramming = getValue(timeDiscretization, abatementDynamicProgramming, savingsRateFunction, discountRate);
+		final double valueOptimizer = getValue(timeDiscretization, abatementOptimizer, savingsRateFunction, discountRate);
+
+		System.out.println("Method                 \t Time [s] \t Value");
+		System.out.println("_".repeat(79));
+		System.out.println(String.format("Dynamic Programming    \t %8.3f \t %12.4f", (timeEndDynamicProgramming-timeStartDynamicProgramming)/1000.0, valueDynamicProgramming));
+		System.out.println(String.format("ADAM (800 iterations)  \t %8.3f \t %12.4f", (timeEndOptimizer-timeStartOptimizer)/1000.0, valueOptimizer));
+		System.out.println("_".repeat(79));
+
+		/*
+		 * Plot
+		 */
+		final List<Point2D> seriesDynamicProgramming = Downsampling.getPoints(timeDiscretization.getAsDoubleArray(), abatementDynamicProgramming);
+		final List<Point2D> seriesOptimizer = Downsampling.getPoints(timeDiscretization.getAsDoubleArray(), abatementOptimizer);
+
+		new Plot2D(
+				List.of(
+						new PlotablePoints2D("dynamic programming", seriesDynamicProgramming, new GraphStyle(new Rectangle(3, 3), new BasicStroke(), Color.BLUE)),
+						new PlotablePoints2D("ADAM", seriesOptimizer, new GraphStyle(new Rectangle(3, 3), new BasicStroke(), Color.RED))))
+		.setXAxisLabel("time t (years)")
+		.setYAxisLabel("Abatement μ")
+		.setXRange(0, 300)
+		.setIsLegendVisible(true)
+		.setTitle("Abatement (r = " + String.format("%.2f%%", discountRate*100) + ")")
+		.show();
+	}
+
+	private static double getValue(TimeDiscretization timeDiscretization, double[] abatement, UnaryOperator<Double> savingsRateFunction, double discountRate) {
+		final UnaryOperator<Double> abatementFunction = time -> abatement[(int)Math.round(time/timeStep)];
+		final ClimateModel climateModel = new DICEModel(timeDiscretization, abatementFunction, savingsRateFunction, discountRate);
+		return climateModel.getValue().expectation().doubleValue();
+	}
+}
@@ -0,0 +1,120 @@
+package net.finmath.climateschool.experiments.session3;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+import net.finmath.climate.models.ClimateModel;
+import net.finmath.climate.models.Temperature;
+import net.finmath.climate.models.dice.DICEModel;
+import net.finmath.climateschool.utilities.AdamOptimizerWithBlockParallelGradient;
+import net.finmath.climateschool.utilities.PiecewiseLinearBasis;
+import net.finmath.plots.Plots;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Experiment related to the DICE model.
+ *
+ * Calibrates the abatement function and the savings rate function jointly. Both functions are
+ * represented in the same basis of piecewise linear functions (with knots every <code>knotSpacing</code> years).
+ * The gradients with respect to the two blocks of parameters (abatement and savings rate) are calculated concurrently.
+ *
+ * With <code>knotSpacing = 1.0</code> each path has one parameter per time step, i.e., the problem has
+ * 1002 parameters. Larger knot spacings reduce the number of parameters (and the calculation time) considerably.
+ *
+ * Suggestion: Compare the optimal savings rate with the constant 0.26 used in the other experiments.
+ * Try <code>isBlockCoordinateUpdate = true</code>.
+ *
+ * @author Christian Fries
+ */
+public class DICEModelJointCalibration {
+
+	private static final double timeStep = 1.0;
+	private static final double timeHorizon = 500.0;
+
+	private static final double knotSpacing = 5.0;
+	private static final boolean isBlockCoordinateUpdate = false;
+
+	// The savings rate is mapped to (savingsRateMin, savingsRateMax)
+	private static final double savingsRateMin = 0.10;
+	private static final double savingsRateMax = 0.50;
+
+	public static void main(String[] args) {
+
+		/*
+		 * Discount rate
+		 */
+		final double discountRate = 0.015;
+
+		/*
+		 * Create a time discretization
+		 */
+		final int numberOfTimeSteps = (int)Math.round(timeHorizon / timeStep);
+		final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, timeStep);
+
+		/*
+		 * The basis shared by the abatement and the savings rate
+		 */
+		final PiecewiseLinearBasis basis = PiecewiseLinearBasis.withUniformKnots(timeDiscretization, knotSpacing);
+		final int numberOfBasisFunctions = basis.getNumberOfBasisFunctions();
+
+		// Initial parameters: abatement 0.8, savings rate 0.26
+		final double[] initialParameters = new double[2 * numberOfBasisFunctions];
+		Arrays.fill(initialParameters, 0, numberOfBasisFunctions, -Math.log(-Math.log(0.8)));
+		Arrays.fill(initialParameters, numberOfBasisFunctions, 2 * numberOfBasisFunctions, -Math.log((savingsRateMax-savingsRateMin)/(0.26-savingsRateMin) - 1));
+
+		final AdamOptimizerWithBlockParallelGradient optimizer = new AdamOptimizerWithBlockParallelGradient(
+				initialParameters, new int[] { numberOfBasisFunctions, numberOfBasisFunctions }, 800, 0.1, isBlockCoordinateUpdate) {
+			@Override
+			public double setValue(double[] parameters) {
+				return -getClimateModel(timeDiscretization, basis, parameters, discountRate).getValue().expectation().doubleValue();
+			}
+		};
+
+		final long timeStart = System.currentTimeMillis();
+		optimizer.run();
+		final long timeEnd = System.currentTimeMillis();
+
+		System.out.println("Number of parameters.....: " + initialParameters.length);
+		System.out.println("Calculation time [s].....: " + (timeEnd-timeStart)/1000.0);
+		System.out.println("Value....................: " + -optimizer.getBestValue());
+
+		/*
+		 * Plot
+		 */
+		final ClimateModel climateModel = getClimateModel(timeDiscretization, basis, optimizer.getBestFitParameters(), discountRate);
+		final double[] times = timeDiscretization.getAsDoubleArray();
+
+		Plots
+		.createScatter(times, getAbatement(basis, optimizer.getBestFitParameters()), 0, 300, 3)
+		.setTitle("Abatement (r = " + String.format("%.2f%%", discountRate*100) + ")").setXAxisLabel("time t (years)").setYAxisLabel("Abatement μ").show();
+
+		Plots
+		.createScatter(times, getSavingsRate(basis, optimizer.getBestFitParameters()), 0, 300, 3)
+		.setTitle("Savings Rate (r = " + String.format("%.2f%%", discountRate*100) + ")").setXAxisLabel("time t (years)").setYAxisLabel("Savings rate s").show();
+
+		Plots
+		.createScatter(times, Arrays.stream(climateModel.getTemperature()).mapToDouble(Temperature::getExpectedTemperatureOfAtmosphere).toArray(), 0, 300, 3)
+		.setTitle("Temperature (r = " + String.format("%.2f%%", discountRate*100) + ")").setXAxisLabel("time (years)").setYAxisLabel("Temperature [°C]").show();
+	}
+
+	private static ClimateModel getClimateModel(TimeDiscretization timeDiscretization, PiecewiseLinearBasis basis, double[] parameters, double discountRate) {
+		final double[] abatement = getAbatement(basis, parameters);
+		final double[] savingsRate = getSavingsRate(basis, parameters);
+
+		final UnaryOperator<Double> abatementFunction = time -> abatement[(int)Math.round(time/timeStep)];
+		final UnaryOperator<Double> savingsRateFunction = time -> savingsRate[(int)Math.round(time/timeStep)];
+
+		return new DICEModel(timeDiscretization, abatementFunction, savingsRateFunction, discountRate);
+	}
+
+	private static double[] getAbatement(PiecewiseLinearBasis basis, double[] parameters) {
+		final double[] abatement = Arrays.stream(basis.getValues(parameters, 0)).map(x -> Math.exp(-Math.exp(-x))).toArray();
+		abatement[0] = 0.03;
+		return abatement;
+	}
+
+	private static double[] getSavingsRate(PiecewiseLinearBasis basis, double[] parameters) {
+		return Arrays.stream(basis.getValues(parameters, basis.getNumberOfBasisFunctions())).map(x -> savingsRateMin + (savingsRateMax-savingsRateMin) / (1 + Math.exp(-x))).toArray();
+	}
+}
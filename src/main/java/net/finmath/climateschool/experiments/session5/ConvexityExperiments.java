@@ -1,8 +1,12 @@
 package net.finmath.climateschool.experiments.session5;
 
-import java.util.List;
 import java.util.Random;
-import java.util.function.Function;
+import java.util.SplittableRandom;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.DoubleStream;
+
+import net.finmath.climateschool.utilities.JensenGap;
+import net.finmath.climateschool.utilities.StreamingStatistics;
 
 public class ConvexityExperiments {
 
@@ -12,26 +16,27 @@ public class ConvexityExperiments {
 		double sigma = 0.01;
 		
 		long numberOfSamples = 1000;
-		List<Double> randomNumbers = getRandomNumbers(numberOfSamples, mu, sigma);
 
-		// 
-		double mean = getMean(randomNumbers);
+		// Mean and variance in a single pass over the samples (the samples are not stored)
+		StreamingStatistics statistics = StreamingStatistics.of(getRandomNumbers(numberOfSamples, mu, sigma));
+
+		double mean = statistics.getMean();
+
+		double variance = statistics.getVariance();
 
-		double variance = getVariance(randomNumbers);
-		
 		System.out.println("mean of the samples X.... = " + mean);
 		System.out.println("variance of the samples X = " + variance);
 
 		/*
 		 * Explore a linear transformation
 		 */
-		Function<Double,Double> functionLinear = x -> 6 * x - 4;
-		
-		List<Double> transformed = randomNumbers.stream().map(functionLinear).toList();
-		
-		double transformedMean = getMean(transformed);
+		DoubleUnaryOperator functionLinear = x -> 6 * x - 4;
+
+		StreamingStatistics transformed = StreamingStatistics.of(getRandomNumbers(numberOfSamples, mu, sigma).map(functionLinear));
 
-		double transformedVariance = getVariance(transformed);
+		double transformedMean = transformed.getMean();
+
+		double transformedVariance = transformed.getVariance();
 
 		System.out.println("mean of the samples X.... = " + transformedMean);
 		System.out.println("variance of the samples X = " + transformedVariance);
@@ -39,40 +44,27 @@ public class ConvexityExperiments {
 		/*
 		 * Explore a non-linear transformation
 		 */
-		Function<Double,Double> functionNonLinear = x -> x*x*x;
-		
-		List<Double> transformedNonLinear = randomNumbers.stream().map(functionNonLinear).toList();
-		
-		double transformedNonLinearMean = getMean(transformedNonLinear);
+		DoubleUnaryOperator functionNonLinear = x -> x*x*x;
+
+		StreamingStatistics transformedNonLinear = StreamingStatistics.of(getRandomNumbers(numberOfSamples, mu, sigma).map(functionNonLinear));
 
-		double transformedNonLinearVariance = getVariance(transformedNonLinear);
+		double transformedNonLinearMean = transformedNonLinear.getMean();
+
+		double transformedNonLinearVariance = transformedNonLinear.getVariance();
 
 		System.out.println("mean of the samples X.... = " + transformedNonLinearMean);
 		System.out.println("variance of the samples X = " + transformedNonLinearVariance);
-	}
-
-	
-	private static double getVariance(List<Double> randomNumbers) {
-		double mean = getMean(randomNumbers);
 
-		double sumSquared = 0.0;
-		for(int i=0; i<randomNumbers.size(); i++) {
-			sumSquared += (randomNumbers.get(i) - mean) * (randomNumbers.get(i) - mean);
-		}
-		double variance = sumSquared / randomNumbers.size();
-		
-		return variance;
-	}
+		/*
+		 * Jensen gap E(f(X)) - f(E(X)) of the non-linear transformation (for x^3 it is 3 mu sigma^2 + E((X-mu)^3)).
+		 * Using a parallel stream and constant memory, this works for large numbers of samples (e.g. 10^9, try it).
+		 */
+		long numberOfSamplesLarge = 100000000;
 
+		JensenGap jensenGap = JensenGap.of(getRandomNumbersForParallelStream(numberOfSamplesLarge, mu, sigma).parallel(), functionNonLinear);
 
-	private static double getMean(List<Double> randomNumbers) {
-		double sum = 0.0;
-		for(int i=0; i<randomNumbers.size(); i++) {
-			sum += randomNumbers.get(i);
-		}
-		double mean = sum / randomNumbers.size();
-		
-		return mean;
+		System.out.println("Jensen gap E(f(X)) - f(E(X)) = " + jensenGap.getGap() + " ± " + jensenGap.getStandardError() + " (" + numberOfSamplesLarge + " samples)");
+		System.out.println("3 mu sigma^2............... = " + 3 * mu * sigma * sigma);
 	}
 
 
@@ -94,10 +86,24 @@ public class ConvexityExperiments {
 	 * @param sigma The desired standard deviation
 	 * @return
 	 */
-	private static List<Double> getRandomNumbers(long numberOfSamples, double mu, double sigma) {
+	private static DoubleStream getRandomNumbers(long numberOfSamples, double mu, double sigma) {
 		long seed = 3141;
 		Random random = new Random(seed);		
-		List<Double> randomNumbers = random.doubles().limit(numberOfSamples ).map(x -> mu + sigma * Math.sqrt(12) * (x-0.5)).boxed().toList();
-		return randomNumbers;
+		return random.doubles().limit(numberOfSamples ).map(x -> mu + sigma * Math.sqrt(12) * (x-0.5));
+	}
+
+	/**
+	 * Helper function that generates uniform distributed random numbers as a stream which can be split
+	 * (processed in parallel, reproducible for the given seed).
+	 *
+	 * @param numberOfSamples
+	 * @param mu The desired mean
+	 * @param sigma The desired standard deviation
+	 * @return
+	 */
+	private static DoubleStream getRandomNumbersForParallelStream(long numberOfSamples, double mu, double sigma) {
+		long seed = 3141;
+		SplittableRandom random = new SplittableRandom(seed);
+		return random.doubles(numberOfSamples).map(x -> mu + sigma * Math.sqrt(12) * (x-0.5));
 	}
 }
@@ -0,0 +1,143 @@
+package net.finmath.climateschool.experiments.session6;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import net.finmath.climateschool.utilities.CancellationToken;
+import net.finmath.climateschool.utilities.DICEMonteCarloEngine;
+import net.finmath.climateschool.utilities.Downsampling;
+import net.finmath.climateschool.utilities.RandomOperators;
+import net.finmath.climateschool.utilities.RiskMeasureBundle;
+import net.finmath.plots.GraphStyle;
+import net.finmath.plots.Plot2D;
+import net.finmath.plots.PlotablePoints2D;
+import net.finmath.plots.Point2D;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Experiment related to the DICE model with uncertain parameters.
+ *
+ * Simulates the DICE model with random equilibrium climate sensitivity, damage coefficient and
+ * productivity growth, for a given (one parametric) abatement function, and reports expectation,
+ * value at risk and expected shortfall of welfare, temperature and social cost of carbon.
+ *
+ * The risk measures are also estimated with importance sampling (the draws of climate sensitivity and damage are shifted
+ * toward the tail) using a tenth of the paths.
+ *
+ * Suggestion: Change abatementMaxTime and observe the effect on the tail of the temperature distribution.
+ *
+ * @author Christian Fries
+ */
+public class DICEModelMonteCarlo {
+
+	private static final double timeStep = 1.0;
+	private static final double timeHorizon = 500.0;
+
+	public static void main(String[] args) {
+
+		final double discountRate = 0.03;
+
+		final int numberOfPaths = 10000;
+		final long seed = 3141;
+
+		/*
+		 * Parameters for the abatement model
+		 */
+		final double abatementInitial = 0.03;
+		final double abatementMax = 1.00;
+		final double abatementMaxTime = 50.0;
+
+		final int numberOfTimeSteps = (int)Math.round(timeHorizon / timeStep);
+		final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, timeStep);
+
+		final UnaryOperator<Double> abatementFunction = time -> Math.min(abatementInitial + (abatementMax-abatementInitial)/abatementMaxTime * time, abatementMax);
+		final UnaryOperator<Double> savingsRateFunction = time -> 0.26;
+
+		final DICEMonteCarloEngine engine = new DICEMonteCarloEngine(timeDiscretization, abatementFunction, savingsRateFunction, discountRate, 100.0);
+
+		final long timeStart = System.currentTimeMillis();
+		final DICEMonteCarloEngine.Result result = engine.simulate(numberOfPaths, seed);
+		final long timeEnd = System.currentTimeMillis();
+
+		System.out.println("Simulation of " + numberOfPaths + " paths took " + (timeEnd-timeStart)/1000.0 + " s.");
+		System.out.println();
+		System.out.println("Quantity                 \t Expectation \t VaR 95% \t ES 95%");
+		System.out.println("_".repeat(79));
+		printRiskMeasures("Welfare (left tail)      ", result.welfare(), false);
+		printRiskMeasures("Temperature in 100 years ", result.temperature(), true);
+		printRiskMeasures("Temperature maximum      ", result.temperatureMaximum(), true);
+		printRiskMeasures("Social cost of carbon    ", result.socialCostOfCarbon(), true);
+		System.out.println("_".repeat(79));
+
+		/*
+		 * Importance sampling: shift climate sensitivity and damage toward the tail, use a tenth of the paths
+		 */
+		final int numberOfPathsImportanceSampling = numberOfPaths / 10;
+		final double[] drift = new double[] { 1.0, 1.0, 0.0 };
+		final DICEMonteCarloEngine.Result resultImportanceSampling = engine.simulate(numberOfPathsImportanceSampling, seed, drift, new CancellationToken());
+
+		System.out.println();
+		System.out.println("Importance sampling with " + numberOfPathsImportanceSampling + " paths (drift " + Arrays.toString(drift) + ")");
+		System.out.println("_".repeat(79));
+		final RandomVariable likelihoodRatio = resultImportanceSampling.likelihoodRatio();
+		printWeightedRiskMeasures("Welfare (left tail)      ", resultImportanceSampling.welfare(), likelihoodRatio, false);
+		printWeightedRiskMeasures("Temperature in 100 years ", resultImportanceSampling.temperature(), likelihoodRatio, true);
+		printWeightedRiskMeasures("Temperature maximum      ", resultImportanceSampling.temperatureMaximum(), likelihoodRatio, true);
+		printWeightedRiskMeasures("Social cost of carbon    ", resultImportanceSampling.socialCostOfCarbon(), likelihoodRatio, true);
+		System.out.println("_".repeat(79));
+
+		/*
+		 * Plot expected temperature with +/- two standard deviations
+		 */
+		final double[] times = timeDiscretization.getAsDoubleArray();
+		final double[] upper = new double[times.length];
+		final double[] lower = new double[times.length];
+		for(int i=0; i<times.length; i++) {
+			upper[i] = result.temperatureMean()[i] + 2 * result.temperatureStandardDeviation()[i];
+			lower[i] = result.temperatureMean()[i] - 2 * result.temperatureStandardDeviation()[i];
+		}
+		final List<Point2D> temperatureMean = Downsampling.getPoints(times, result.temperatureMean());
+		final List<Point2D> temperatureUpper = Downsampling.getPoints(times, upper);
+		final List<Point2D> temperatureLower = Downsampling.getPoints(times, lower);
+
+		new Plot2D(
+				List.of(
+						new PlotablePoints2D("expectation", temperatureMean, new GraphStyle(new Rectangle(3, 3), new BasicStroke(), Color.BLUE)),
+						new PlotablePoints2D("+2 std. dev.", temperatureUpper, new GraphStyle(new Rectangle(2, 2), new BasicStroke(), Color.RED)),
+						new PlotablePoints2D("-2 std. dev.", temperatureLower, new GraphStyle(new Rectangle(2, 2), new BasicStroke(), Color.GREEN))))
+		.setXAxisLabel("time (years)")
+		.setYAxisLabel("Temperature [°C]")
+		.setXRange(0, 300)
+		.setIsLegendVisible(true)
+		.setTitle("Temperature (T(μ=1) =" + abatementMaxTime + ", r = " + discountRate + ", " + numberOfPaths + " paths)")
+		.show();
+	}
+
+	private static void printRiskMeasures(String name, RandomVariable value, boolean isRightTail) {
+		// Expectation, VaR and ES from a single sort of the paths
+		final RiskMeasureBundle riskMeasures = RiskMeasureBundle.of(value);
+		final double expectation = riskMeasures.getMean();
+		final double valueAtRisk = riskMeasures.getValueAtRisk(isRightTail ? 0.95 : 0.05);
+		final double expectedShortFall = isRightTail ?
+				riskMeasures.getRightTailExpectedShortFall(0.95) :
+					riskMeasures.getLeftTailExpectedShortFall(0.05);
+
+		System.out.println(String.format("%s \t %11.4f \t %8.4f \t %8.4f", name, expectation, valueAtRisk, expectedShortFall));
+	}
+
+	private static void printWeightedRiskMeasures(String name, RandomVariable value, RandomVariable likelihoodRatio, boolean isRightTail) {
+		final double expectation = value.mult(likelihoodRatio).getAverage();
+		final double valueAtRisk = RandomOperators.weightedValueAtRisk(value, likelihoodRatio, isRightTail ? 0.95 : 0.05);
+		final double expectedShortFall = isRightTail ?
+				RandomOperators.weightedRightTailExpectedShortFall(value, likelihoodRatio, 0.95) :
+					RandomOperators.weightedLeftTailExpectedShortFall(value, likelihoodRatio, 0.05);
+
+		System.out.println(String.format("%s \t %11.4f \t %8.4f \t %8.4f", name, expectation, valueAtRisk, expectedShortFall));
+	}
+}
@@ -4,13 +4,17 @@ import java.text.DecimalFormat;
 import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 
+import net.finmath.climateschool.utilities.BrownianMotionWithDrift;
 import net.finmath.climateschool.utilities.ModelFactory;
 import net.finmath.climateschool.utilities.RandomOperators;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
 import net.finmath.montecarlo.interestrate.TermStructureMonteCarloSimulationModel;
 import net.finmath.plots.DoubleToRandomVariableFunction;
 import net.finmath.plots.Plot;
 import net.finmath.plots.PlotProcess2D;
 import net.finmath.stochastic.RandomOperator;
+import net.finmath.stochastic.RandomVariable;
 import net.finmath.time.TimeDiscretization;
 import net.finmath.time.TimeDiscretizationFromArray;
 
@@ -19,6 +23,9 @@ import net.finmath.time.TimeDiscretizationFromArray;
  * 
  * It is possible to play with the parameters volatility and mean reversion.
  *
+ * In addition, the expected shortfall of the highest discount factors (the tail of low rates) is estimated
+ * with and without importance sampling (see {@link BrownianMotionWithDrift}).
+ *
  * @author Christian Fries
  */
 public class StochasticRatesExperiment {
@@ -28,6 +35,47 @@ public class StochasticRatesExperiment {
 		(new StochasticRatesExperiment()).plotInterestRatesForVolAndMR(0.001, 0.005);
 		(new StochasticRatesExperiment()).plotInterestRatesForVolAndMR(0.0030, 0.01);
 		(new StochasticRatesExperiment()).plotInterestRatesForVolAndMR(0.0040, 0.02);
+
+		(new StochasticRatesExperiment()).printDiscountFactorTail(0.001, 0.005, 100.0);
+		(new StochasticRatesExperiment()).printDiscountFactorTail(0.0030, 0.01, 100.0);
+		(new StochasticRatesExperiment()).printDiscountFactorTail(0.0040, 0.02, 100.0);
+	}
+
+	/*
+	 * ES of the 1% highest discount factors for the given maturity, estimated from the plain simulation
+	 * and from a simulation shifted toward low rates, weighted with the likelihood ratio.
+	 */
+	private void printDiscountFactorTail(double shortRateVolatility, double shortRateMeanreversion, double maturity) throws Exception {
+
+		final double level = 0.99;
+		final int numberOfPaths = 10000;
+
+		final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, (int)Math.round(maturity), 1);
+		final BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(timeDiscretization, 2 /* numberOfFactors */, numberOfPaths, 3141 /* seed */);
+
+		// Shift W(T) of the (Hull-White) factor by the 1% quantile, i.e., toward low rates
+		final BrownianMotionWithDrift brownianMotionWithDrift = new BrownianMotionWithDrift(brownianMotion, new double[] { -2.33 / Math.sqrt(maturity), 0.0 });
+
+		final TermStructureMonteCarloSimulationModel interestRateModel = ModelFactory.getInterestRateModel(
+				timeDiscretization,
+				timeDiscretization,
+				new double[] { 0.0, 500.0 }, new double[] { 0.02, 0.02 },
+				shortRateVolatility, shortRateMeanreversion, brownianMotion);
+
+		final TermStructureMonteCarloSimulationModel interestRateModelShifted = ModelFactory.getInterestRateModel(
+				timeDiscretization,
+				timeDiscretization,
+				new double[] { 0.0, 500.0 }, new double[] { 0.02, 0.02 },
+				shortRateVolatility, shortRateMeanreversion, brownianMotionWithDrift);
+
+		final RandomVariable discountFactor = interestRateModel.getNumeraire(maturity).invert();
+		final RandomVariable discountFactorShifted = interestRateModelShifted.getNumeraire(maturity).invert();
+
+		final double expectedShortFall = RandomOperators.rightTailExpectedShortFall(level).apply(discountFactor).getAverage();
+		final double expectedShortFallImportanceSampling = RandomOperators.weightedRightTailExpectedShortFall(discountFactorShifted, brownianMotionWithDrift.getLikelihoodRatio(), level);
+
+		System.out.println(String.format("\u03c3=%5.3f%%, a=%5.3f%%: ES %4.1f%% of the discount factor P(%3.0f) \t Monte-Carlo: %8.5f \t importance sampling: %8.5f",
+				shortRateVolatility*100, shortRateMeanreversion*100, (1-level)*100, maturity, expectedShortFall, expectedShortFallImportanceSampling));
 	}
 
 	private void plotInterestRatesForVolAndMR(double shortRateVolatility, double shortRateMeanreversion) throws Exception {
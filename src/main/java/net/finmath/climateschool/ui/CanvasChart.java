@@ -0,0 +1,521 @@
+package net.finmath.climateschool.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.animation.AnimationTimer;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
+import net.finmath.climateschool.utilities.Downsampling;
+
+/**
+ * A light weight chart rendering many series from primitive <code>double[]</code> buffers on a JavaFX {@link Canvas}.
+ *
+ * The data of a series is set via {@link #setData(int, double[], double[], int)}, which may be called from any thread.
+ * It copies the values into a buffer of the series (re-used across updates) and marks the series as dirty.
+ * The chart is rendered on the JavaFX application thread by an animation timer, at most {@link #setMaxFramesPerSecond(int)}
+ * times per second and only if something has changed. If only some series changed and the axes are unchanged, only the
+ * region covered by these series (before and after the update) is redrawn.
+ *
+ * The chart is a {@link Pane} and can be embedded in the content of an {@link ExperimentUI} (see {@link ExperimentUI#createChart()}).
+ *
+ * @author Christian Fries
+ */
+public class CanvasChart extends Pane {
+
+	public enum Style {
+		LINE,
+		DOTS
+	}
+
+	private static final double marginLeft = 60;
+	private static final double marginRight = 16;
+	private static final double marginTop = 28;
+	private static final double marginBottom = 36;
+
+	private static final Color backgroundColor = Color.WHITE;
+	private static final Color gridColor = Color.rgb(230, 230, 230);
+	private static final Color axisColor = Color.rgb(90, 90, 90);
+
+	private static class Series {
+		private final Color color;
+		private final Style style;
+		private final double width;
+
+		// Written by producers, guarded by the chart
+		private double[] pendingX = new double[0];
+		private double[] pendingY = new double[0];
+		private int pendingLength;
+		private boolean isPending;
+
+		// Owned by the render thread
+		private double[] x = new double[0];
+		private double[] y = new double[0];
+		private int length;
+		private boolean isChanged;
+		private double minX, maxX, minY, maxY;
+		private final double[] pixelBounds = { Double.NaN, Double.NaN, Double.NaN, Double.NaN };
+
+		Series(Color color, Style style, double width) {
+			this.color = color;
+			this.style = style;
+			this.width = width;
+		}
+	}
+
+	private final Canvas canvas = new Canvas();
+	private final List<Series> series = new ArrayList<>();
+
+	// Axes and title (guarded by the chart)
+	private double xRangeMin = Double.NaN, xRangeMax = Double.NaN;
+	private double yRangeMin = Double.NaN, yRangeMax = Double.NaN;
+	private String title = "";
+	private String xAxisLabel = "";
+	private String yAxisLabel = "";
+	private boolean isLayoutDirty = true;
+
+	private volatile long minFrameIntervalNanos = 1_000_000_000L / 60;
+	private long lastFrameNanos;
+
+	// Axes of the last frame (render thread)
+	private double xMin, xMax, yMin, yMax;
+	private double plotLeft, plotTop, plotWidth, plotHeight;
+
+	// Pixel buffers re-used across frames (render thread)
+	private double[] pixelX = new double[0];
+	private double[] pixelY = new double[0];
+	private int[] indices = new int[0];
+
+	private final AnimationTimer timer = new AnimationTimer() {
+		@Override
+		public void handle(long now) {
+			if(now - lastFrameNanos >= minFrameIntervalNanos) {
+				if(render()) {
+					lastFrameNanos = now;
+				}
+			}
+		}
+	};
+
+	public CanvasChart() {
+		getChildren().add(canvas);
+		setMinHeight(200);
+		setPrefHeight(320);
+
+		// Render only while the chart is part of a scene
+		sceneProperty().addListener((observable, oldScene, newScene) -> {
+			if(newScene != null) {
+				timer.start();
+			}
+			else {
+				timer.stop();
+			}
+		});
+	}
+
+	/**
+	 * Add a series.
+	 *
+	 * @param color The color.
+	 * @param style The style (line or dots).
+	 * @param width The line width or dot size.
+	 * @return The index of the series.
+	 */
+	public synchronized int addSeries(Color color, Style style, double width) {
+		series.add(new Series(color, style, width));
+		return series.size()-1;
+	}
+
+	public synchronized int getNumberOfSeries() {
+		return series.size();
+	}
+
+	/**
+	 * Set the data of a series. May be called from any thread. The values are copied.
+	 *
+	 * @param seriesIndex The index of the series.
+	 * @param x The x values.
+	 * @param y The y values.
+	 * @param length The number of values to use.
+	 */
+	public synchronized void setData(int seriesIndex, double[] x, double[] y, int length) {
+		final Series s = series.get(seriesIndex);
+		if(s.pendingX.length < length) {
+			s.pendingX = new double[length];
+			s.pendingY = new double[length];
+		}
+		System.arraycopy(x, 0, s.pendingX, 0, length);
+		System.arraycopy(y, 0, s.pendingY, 0, length);
+		s.pendingLength = length;
+		s.isPending = true;
+	}
+
+	public void setData(int seriesIndex, double[] x, double[] y) {
+		setData(seriesIndex, x, y, Math.min(x.length, y.length));
+	}
+
+	/**
+	 * Set the range of the x-axis. If NaN is passed, the range is determined from the data.
+	 */
+	public synchronized CanvasChart setXRange(double min, double max) {
+		xRangeMin = min;
+		xRangeMax = max;
+		isLayoutDirty = true;
+		return this;
+	}
+
+	/**
+	 * Set the range of the y-axis. If NaN is passed, the range is determined from the data.
+	 */
+	public synchronized CanvasChart setYRange(double min, double max) {
+		yRangeMin = min;
+		yRangeMax = max;
+		isLayoutDirty = true;
+		return this;
+	}
+
+	public synchronized CanvasChart setTitle(String title) {
+		if(!title.equals(this.title)) {
+			this.title = title;
+			isLayoutDirty = true;
+		}
+		return this;
+	}
+
+	public synchronized CanvasChart setXAxisLabel(String xAxisLabel) {
+		this.xAxisLabel = xAxisLabel;
+		isLayoutDirty = true;
+		return this;
+	}
+
+	public synchronized CanvasChart setYAxisLabel(String yAxisLabel) {
+		this.yAxisLabel = yAxisLabel;
+		isLayoutDirty = true;
+		return this;
+	}
+
+	public CanvasChart setMaxFramesPerSecond(int maxFramesPerSecond) {
+		minFrameIntervalNanos = 1_000_000_000L / Math.max(1, maxFramesPerSecond);
+		return this;
+	}
+
+	@Override
+	protected void layoutChildren() {
+		if(canvas.getWidth() != getWidth() || canvas.getHeight() != getHeight()) {
+			canvas.setWidth(getWidth());
+			canvas.setHeight(getHeight());
+			synchronized (this) {
+				isLayoutDirty = true;
+			}
+		}
+	}
+
+	/*
+	 * Render the chart (on the JavaFX application thread). Returns true if something has been drawn.
+	 */
+	private boolean render() {
+		final double width = canvas.getWidth();
+		final double height = canvas.getHeight();
+		if(width <= marginLeft + marginRight || height <= marginTop + marginBottom) {
+			return false;
+		}
+
+		boolean isFullRedraw;
+		boolean isAnyChanged = false;
+		final double xRangeMinOfFrame, xRangeMaxOfFrame, yRangeMinOfFrame, yRangeMaxOfFrame;
+		final String titleOfFrame, xAxisLabelOfFrame, yAxisLabelOfFrame;
+		synchronized (this) {
+			for(final Series s : series) {
+				if(s.isPending) {
+					if(s.x.length < s.pendingLength) {
+						s.x = new double[s.pendingX.length];
+						s.y = new double[s.pendingY.length];
+					}
+					System.arraycopy(s.pendingX, 0, s.x, 0, s.pendingLength);
+					System.arraycopy(s.pendingY, 0, s.y, 0, s.pendingLength);
+					s.length = s.pendingLength;
+					s.isPending = false;
+					s.isChanged = true;
+					isAnyChanged = true;
+				}
+			}
+			isFullRedraw = isLayoutDirty;
+			isLayoutDirty = false;
+			xRangeMinOfFrame = xRangeMin;
+			xRangeMaxOfFrame = xRangeMax;
+			yRangeMinOfFrame = yRangeMin;
+			yRangeMaxOfFrame = yRangeMax;
+			titleOfFrame = title;
+			xAxisLabelOfFrame = xAxisLabel;
+			yAxisLabelOfFrame = yAxisLabel;
+		}
+
+		if(!isAnyChanged && !isFullRedraw) {
+			return false;
+		}
+
+		/*
+		 * Determine the axes (data bounds of changed series are updated)
+		 */
+		double dataMinX = Double.POSITIVE_INFINITY, dataMaxX = Double.NEGATIVE_INFINITY;
+		double dataMinY = Double.POSITIVE_INFINITY, dataMaxY = Double.NEGATIVE_INFINITY;
+		for(final Series s : series) {
+			if(s.isChanged) {
+				updateDataBounds(s);
+			}
+			if(s.length > 0) {
+				dataMinX = Math.min(dataMinX, s.minX);
+				dataMaxX = Math.max(dataMaxX, s.maxX);
+				dataMinY = Math.min(dataMinY, s.minY);
+				dataMaxY = Math.max(dataMaxY, s.maxY);
+			}
+		}
+		final double[] rangeX = getRange(xRangeMinOfFrame, xRangeMaxOfFrame, dataMinX, dataMaxX);
+		final double[] rangeY = getRange(yRangeMinOfFrame, yRangeMaxOfFrame, dataMinY, dataMaxY);
+
+		final double newPlotWidth = width - marginLeft - marginRight;
+		final double newPlotHeight = height - marginTop - marginBottom;
+		if(rangeX[0] != xMin || rangeX[1] != xMax || rangeY[0] != yMin || rangeY[1] != yMax || newPlotWidth != plotWidth || newPlotHeight != plotHeight) {
+			isFullRedraw = true;
+		}
+		xMin = rangeX[0];
+		xMax = rangeX[1];
+		yMin = rangeY[0];
+		yMax = rangeY[1];
+		plotLeft = marginLeft;
+		plotTop = marginTop;
+		plotWidth = newPlotWidth;
+		plotHeight = newPlotHeight;
+
+		final GraphicsContext gc = canvas.getGraphicsContext2D();
+		if(isFullRedraw) {
+			gc.setFill(backgroundColor);
+			gc.fillRect(0, 0, width, height);
+			drawAxes(gc, titleOfFrame, xAxisLabelOfFrame, yAxisLabelOfFrame);
+			gc.save();
+			clip(gc, plotLeft, plotTop, plotWidth, plotHeight);
+			drawGrid(gc);
+			for(final Series s : series) {
+				drawSeries(gc, s);
+			}
+			gc.restore();
+		}
+		else {
+			/*
+			 * Dirty region: union of the old and the new pixel bounds of the changed series.
+			 */
+			double dirtyLeft = Double.POSITIVE_INFINITY, dirtyTop = Double.POSITIVE_INFINITY;
+			double dirtyRight = Double.NEGATIVE_INFINITY, dirtyBottom = Double.NEGATIVE_INFINITY;
+			for(final Series s : series) {
+				if(s.isChanged) {
+					for(final double[] bounds : new double[][] { s.pixelBounds, getPixelBounds(s) }) {
+						if(!Double.isNaN(bounds[0])) {
+							dirtyLeft = Math.min(dirtyLeft, bounds[0]);
+							dirtyTop = Math.min(dirtyTop, bounds[1]);
+							dirtyRight = Math.max(dirtyRight, bounds[2]);
+							dirtyBottom = Math.max(dirtyBottom, bounds[3]);
+						}
+					}
+				}
+			}
+			// Pad by the maximum line width and clip to the plot area
+			final double padding = 2 + series.stream().mapToDouble(s -> s.width).max().orElse(1.0);
+			dirtyLeft = Math.max(plotLeft, dirtyLeft - padding);
+			dirtyTop = Math.max(plotTop, dirtyTop - padding);
+			dirtyRight = Math.min(plotLeft + plotWidth, dirtyRight + padding);
+			dirtyBottom = Math.min(plotTop + plotHeight, dirtyBottom + padding);
+
+			if(dirtyRight > dirtyLeft && dirtyBottom > dirtyTop) {
+				gc.save();
+				clip(gc, dirtyLeft, dirtyTop, dirtyRight-dirtyLeft, dirtyBottom-dirtyTop);
+				gc.setFill(backgroundColor);
+				gc.fillRect(dirtyLeft, dirtyTop, dirtyRight-dirtyLeft, dirtyBottom-dirtyTop);
+				drawGrid(gc);
+				for(final Series s : series) {
+					if(intersects(s.isChanged ? getPixelBounds(s) : s.pixelBounds, dirtyLeft, dirtyTop, dirtyRight, dirtyBottom)) {
+						drawSeries(gc, s);
+					}
+				}
+				gc.restore();
+			}
+		}
+
+		for(final Series s : series) {
+			if(s.isChanged || isFullRedraw) {
+				final double[] bounds = getPixelBounds(s);
+				System.arraycopy(bounds, 0, s.pixelBounds, 0, 4);
+			}
+			s.isChanged = false;
+		}
+
+		return true;
+	}
+
+	private static void updateDataBounds(Series s) {
+		s.minX = Double.POSITIVE_INFINITY;
+		s.maxX = Double.NEGATIVE_INFINITY;
+		s.minY = Double.POSITIVE_INFINITY;
+		s.maxY = Double.NEGATIVE_INFINITY;
+		for(int i=0; i<s.length; i++) {
+			if(Double.isFinite(s.x[i]) && Double.isFinite(s.y[i])) {
+				s.minX = Math.min(s.minX, s.x[i]);
+				s.maxX = Math.max(s.maxX, s.x[i]);
+				s.minY = Math.min(s.minY, s.y[i]);
+				s.maxY = Math.max(s.maxY, s.y[i]);
+			}
+		}
+	}
+
+	private static double[] getRange(double fixedMin, double fixedMax, double dataMin, double dataMax) {
+		double min = Double.isNaN(fixedMin) ? dataMin : fixedMin;
+		double max = Double.isNaN(fixedMax) ? dataMax : fixedMax;
+		if(!Double.isFinite(min) || !Double.isFinite(max)) {
+			return new double[] { 0.0, 1.0 };
+		}
+		if(max <= min) {
+			final double delta = Math.max(Math.abs(min) * 0.05, 1E-10);
+			min -= delta;
+			max += delta;
+		}
+		return new double[] { min, max };
+	}
+
+	private double[] getPixelBounds(Series s) {
+		if(s.length == 0 || !Double.isFinite(s.minX)) {
+			return new double[] { Double.NaN, Double.NaN, Double.NaN, Double.NaN };
+		}
+		return new double[] { toPixelX(s.minX), toPixelY(s.maxY), toPixelX(s.maxX), toPixelY(s.minY) };
+	}
+
+	private static boolean intersects(double[] bounds, double left, double top, double right, double bottom) {
+		return !Double.isNaN(bounds[0]) && bounds[0] <= right && bounds[2] >= left && bounds[1] <= bottom && bounds[3] >= top;
+	}
+
+	private double toPixelX(double x) {
+		return plotLeft + (x - xMin) / (xMax - xMin) * plotWidth;
+	}
+
+	private double toPixelY(double y) {
+		return plotTop + plotHeight - (y - yMin) / (yMax - yMin) * plotHeight;
+	}
+
+	private static void clip(GraphicsContext gc, double left, double top, double width, double height) {
+		gc.beginPath();
+		gc.rect(left, top, width, height);
+		gc.clip();
+	}
+
+	/*
+	 * Draw a series. If the series has more points than the plot has pixel columns, lines are reduced to the
+	 * first, minimum, maximum and last point per pixel column and dots are drawn once per pixel,
+	 * such that the render cost does not grow with the length of the series.
+	 */
+	private void drawSeries(GraphicsContext gc, Series s) {
+		if(pixelX.length < s.length) {
+			pixelX = new double[s.length];
+			pixelY = new double[s.length];
+			indices = new int[s.length];
+		}
+		final int numberOfColumns = (int)Math.ceil(plotWidth);
+
+		if(s.style == Style.DOTS) {
+			gc.setFill(s.color);
+			final double halfSize = s.width / 2;
+			final boolean isDownsampling = s.length > numberOfColumns;
+			long previousPixel = Long.MIN_VALUE;
+			for(int i=0; i<s.length; i++) {
+				if(Double.isFinite(s.x[i]) && Double.isFinite(s.y[i])) {
+					final double x = toPixelX(s.x[i]);
+					final double y = toPixelY(s.y[i]);
+					if(isDownsampling) {
+						// Skip dots covering the same pixel as the previous one
+						final long pixel = (Math.round(x) << 32) ^ (Math.round(y) & 0xFFFFFFFFL);
+						if(pixel == previousPixel) {
+							continue;
+						}
+						previousPixel = pixel;
+					}
+					gc.fillRect(x - halfSize, y - halfSize, s.width, s.width);
+				}
+			}
+		}
+		else {
+			gc.setStroke(s.color);
+			gc.setLineWidth(s.width);
+			// Draw the runs of finite values as polylines
+			int start = 0;
+			for(int i=0; i<=s.length; i++) {
+				if(i < s.length && Double.isFinite(s.x[i]) && Double.isFinite(s.y[i])) {
+					continue;
+				}
+				if(i - start > 1) {
+					final int numberOfPoints = Downsampling.getIndicesM4(s.x, s.y, start, i, xMin, xMax, numberOfColumns, indices);
+					for(int k=0; k<numberOfPoints; k++) {
+						pixelX[k] = toPixelX(s.x[indices[k]]);
+						pixelY[k] = toPixelY(s.y[indices[k]]);
+					}
+					gc.strokePolyline(pixelX, pixelY, numberOfPoints);
+				}
+				start = i+1;
+			}
+		}
+	}
+
+	private void drawGrid(GraphicsContext gc) {
+		gc.setStroke(gridColor);
+		gc.setLineWidth(1.0);
+		final double stepX = getTickStep(xMax - xMin);
+		for(double x = Math.ceil(xMin / stepX) * stepX; x <= xMax; x += stepX) {
+			gc.strokeLine(toPixelX(x), plotTop, toPixelX(x), plotTop + plotHeight);
+		}
+		final double stepY = getTickStep(yMax - yMin);
+		for(double y = Math.ceil(yMin / stepY) * stepY; y <= yMax; y += stepY) {
+			gc.strokeLine(plotLeft, toPixelY(y), plotLeft + plotWidth, toPixelY(y));
+		}
+	}
+
+	private void drawAxes(GraphicsContext gc, String title, String xAxisLabel, String yAxisLabel) {
+		gc.setStroke(axisColor);
+		gc.setLineWidth(1.0);
+		gc.strokeRect(plotLeft, plotTop, plotWidth, plotHeight);
+
+		gc.setFill(axisColor);
+		gc.setTextBaseline(VPos.TOP);
+		gc.setTextAlign(TextAlignment.CENTER);
+		final double stepX = getTickStep(xMax - xMin);
+		for(double x = Math.ceil(xMin / stepX) * stepX; x <= xMax; x += stepX) {
+			gc.fillText(formatTick(x, stepX), toPixelX(x), plotTop + plotHeight + 4);
+		}
+		gc.fillText(xAxisLabel, plotLeft + plotWidth / 2, plotTop + plotHeight + 18);
+
+		gc.setTextBaseline(VPos.CENTER);
+		gc.setTextAlign(TextAlignment.RIGHT);
+		final double stepY = getTickStep(yMax - yMin);
+		for(double y = Math.ceil(yMin / stepY) * stepY; y <= yMax; y += stepY) {
+			gc.fillText(formatTick(y, stepY), plotLeft - 4, toPixelY(y));
+		}
+
+		gc.setTextBaseline(VPos.TOP);
+		gc.setTextAlign(TextAlignment.LEFT);
+		gc.fillText(yAxisLabel.isEmpty() ? title : title + " - " + yAxisLabel, plotLeft, 6);
+	}
+
+	/*
+	 * A "nice" tick step (1, 2 or 5 times a power of 10) giving about 5 ticks.
+	 */
+	private static double getTickStep(double range) {
+		final double roughStep = range / 5.0;
+		final double magnitude = Math.pow(10, Math.floor(Math.log10(roughStep)));
+		final double normalized = roughStep / magnitude;
+		return (normalized < 1.5 ? 1 : normalized < 3.5 ? 2 : normalized < 7.5 ? 5 : 10) * magnitude;
+	}
+
+	private static String formatTick(double value, double step) {
+		final int digits = Math.max(0, (int)-Math.floor(Math.log10(step)));
+		return String.format("%." + digits + "f", Math.abs(value) < step * 1E-6 ? 0.0 : value);
+	}
+}
@@ -0,0 +1,215 @@
+package net.finmath.climateschool.ui;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import net.finmath.climateschool.utilities.CancellationToken;
+
+/**
+ * Application wide scheduler for the calculations of all experiments.
+ *
+ * The scheduler runs the tasks on a bounded pool of worker threads (one per core). Queued tasks are ordered by their
+ * {@link Priority} (and in submission order within a priority). A task carries the cancellation condition of the
+ * experiment (its epoch); a task which has been cancelled while queued is skipped.
+ *
+ * The scheduler records per priority the number of submitted, completed and skipped tasks, the queue length and the
+ * time tasks waited in the queue (latency) and ran. If the cancellation condition is a {@link CancellationToken},
+ * it also records the time a running task needed to stop after its cancellation (time-to-cancel).
+ *
+ * @author Christian Fries
+ */
+public class ComputeScheduler {
+
+	public enum Priority {
+		/** The calculation of the result shown to the user. */
+		VISIBLE,
+		/** The refinement of a result in the background. */
+		REFINEMENT,
+		/** Speculative calculations (e.g. of neighbouring parameter values). */
+		SPECULATION
+	}
+
+	/**
+	 * Statistics of the tasks of one priority.
+	 *
+	 * @param priority The priority.
+	 * @param submitted The number of submitted tasks.
+	 * @param completed The number of completed tasks.
+	 * @param skipped The number of tasks skipped, because they were cancelled before they started.
+	 * @param queued The number of tasks currently queued.
+	 * @param averageWaitMillis The average time a task waited in the queue (milliseconds).
+	 * @param maxWaitMillis The maximum time a task waited in the queue (milliseconds).
+	 * @param averageRunMillis The average run time of a task (milliseconds).
+	 * @param cancelled The number of tasks cancelled while running.
+	 * @param averageTimeToCancelMillis The average time from the cancellation to the end of a running task (milliseconds).
+	 * @param maxTimeToCancelMillis The maximum time from the cancellation to the end of a running task (milliseconds).
+	 */
+	public record Statistics(Priority priority, long submitted, long completed, long skipped, int queued,
+			double averageWaitMillis, double maxWaitMillis, double averageRunMillis,
+			long cancelled, double averageTimeToCancelMillis, double maxTimeToCancelMillis) {}
+
+	private static final ComputeScheduler instance = new ComputeScheduler(Runtime.getRuntime().availableProcessors());
+
+	private final ThreadPoolExecutor executor;
+	private final AtomicLong sequence = new AtomicLong(0);
+
+	private final Map<Priority, Counters> counters = new EnumMap<>(Priority.class);
+
+	private static class Counters {
+		private final LongAdder submitted = new LongAdder();
+		private final LongAdder completed = new LongAdder();
+		private final LongAdder skipped = new LongAdder();
+		private final AtomicInteger queued = new AtomicInteger();
+		private final LongAdder waitNanos = new LongAdder();
+		private final AtomicLong maxWaitNanos = new AtomicLong();
+		private final LongAdder runNanos = new LongAdder();
+		private final LongAdder cancelled = new LongAdder();
+		private final LongAdder timeToCancelNanos = new LongAdder();
+		private final AtomicLong maxTimeToCancelNanos = new AtomicLong();
+	}
+
+	/*
+	 * A task ordered by priority and submission sequence.
+	 */
+	private class PrioritizedTask<T> extends FutureTask<T> implements Comparable<PrioritizedTask<?>> {
+		private final Priority priority;
+		private final long sequenceNumber;
+		private final long submitNanos;
+		private final BooleanSupplier isCancelled;
+
+		PrioritizedTask(Priority priority, BooleanSupplier isCancelled, Callable<T> callable) {
+			super(callable);
+			this.priority = priority;
+			this.sequenceNumber = sequence.getAndIncrement();
+			this.submitNanos = System.nanoTime();
+			this.isCancelled = isCancelled;
+		}
+
+		@Override
+		public void run() {
+			final Counters countersOfPriority = counters.get(priority);
+			countersOfPriority.queued.decrementAndGet();
+			if(isCancelled.getAsBoolean() || isCancelled()) {
+				countersOfPriority.skipped.increment();
+				cancel(false);
+				return;
+			}
+
+			final long startNanos = System.nanoTime();
+			countersOfPriority.waitNanos.add(startNanos - submitNanos);
+			countersOfPriority.maxWaitNanos.accumulateAndGet(startNanos - submitNanos, Math::max);
+
+			final Thread thread = Thread.currentThread();
+			thread.setPriority(priority == Priority.SPECULATION ? Thread.MIN_PRIORITY : Thread.NORM_PRIORITY);
+			try {
+				super.run();
+			}
+			finally {
+				thread.setPriority(Thread.NORM_PRIORITY);
+				countersOfPriority.runNanos.add(System.nanoTime() - startNanos);
+				countersOfPriority.completed.increment();
+				if(isCancelled instanceof CancellationToken cancellationToken && cancellationToken.getNanosSinceCancellation() >= 0) {
+					final long timeToCancelNanos = cancellationToken.getNanosSinceCancellation();
+					countersOfPriority.cancelled.increment();
+					countersOfPriority.timeToCancelNanos.add(timeToCancelNanos);
+					countersOfPriority.maxTimeToCancelNanos.accumulateAndGet(timeToCancelNanos, Math::max);
+				}
+				// Clear a pending interrupt of a cancelled task before the worker takes the next one
+				Thread.interrupted();
+			}
+		}
+
+		@Override
+		public int compareTo(PrioritizedTask<?> other) {
+			final int comparePriority = priority.compareTo(other.priority);
+			return comparePriority != 0 ? comparePriority : Long.compare(sequenceNumber, other.sequenceNumber);
+		}
+	}
+
+	private ComputeScheduler(int numberOfThreads) {
+		final AtomicInteger threadNumber = new AtomicInteger(0);
+		executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), r -> {
+			Thread t = new Thread(r, "compute-thread-" + threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		executor.allowCoreThreadTimeOut(true);
+		for(final Priority priority : Priority.values()) {
+			counters.put(priority, new Counters());
+		}
+	}
+
+	/**
+	 * @return The application wide scheduler.
+	 */
+	public static ComputeScheduler getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Submit a task.
+	 *
+	 * @param priority The priority of the task.
+	 * @param isCancelled Returns true if the task has been superseded (e.g. the epoch of the experiment has changed); such a task is skipped if it has not started.
+	 * @param task The task.
+	 * @return The future of the task (may be used to interrupt a running task).
+	 */
+	public Future<?> submit(Priority priority, BooleanSupplier isCancelled, Runnable task) {
+		final PrioritizedTask<Object> prioritizedTask = new PrioritizedTask<>(priority, isCancelled, () -> { task.run(); return null; });
+		final Counters countersOfPriority = counters.get(priority);
+		countersOfPriority.submitted.increment();
+		countersOfPriority.queued.incrementAndGet();
+		executor.execute(prioritizedTask);
+		return prioritizedTask;
+	}
+
+	/**
+	 * @param priority The priority.
+	 * @return The statistics of the tasks of the given priority.
+	 */
+	public Statistics getStatistics(Priority priority) {
+		final Counters countersOfPriority = counters.get(priority);
+		final long started = countersOfPriority.completed.sum();
+		final long cancelled = countersOfPriority.cancelled.sum();
+		return new Statistics(priority,
+				countersOfPriority.submitted.sum(),
+				started,
+				countersOfPriority.skipped.sum(),
+				countersOfPriority.queued.get(),
+				started > 0 ? countersOfPriority.waitNanos.sum() / 1E6 / started : 0.0,
+				countersOfPriority.maxWaitNanos.get() / 1E6,
+				started > 0 ? countersOfPriority.runNanos.sum() / 1E6 / started : 0.0,
+				cancelled,
+				cancelled > 0 ? countersOfPriority.timeToCancelNanos.sum() / 1E6 / cancelled : 0.0,
+				countersOfPriority.maxTimeToCancelNanos.get() / 1E6);
+	}
+
+	/**
+	 * @return The number of worker threads.
+	 */
+	public int getNumberOfThreads() {
+		return executor.getMaximumPoolSize();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder statistics = new StringBuilder("ComputeScheduler [threads=" + getNumberOfThreads() + "]");
+		for(final Priority priority : Priority.values()) {
+			final Statistics s = getStatistics(priority);
+			statistics.append(String.format("%n  %-11s submitted=%d completed=%d skipped=%d queued=%d wait(avg/max)=%.1f/%.1f ms run(avg)=%.1f ms cancelled=%d time-to-cancel(avg/max)=%.1f/%.1f ms",
+					priority, s.submitted(), s.completed(), s.skipped(), s.queued(), s.averageWaitMillis(), s.maxWaitMillis(), s.averageRunMillis(),
+					s.cancelled(), s.averageTimeToCancelMillis(), s.maxTimeToCancelMillis()));
+		}
+		return statistics.toString();
+	}
+}
@@ -5,12 +5,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.BooleanSupplier;
 import java.util.function.UnaryOperator;
-import java.util.stream.Collectors;
 
-import net.finmath.climate.models.ClimateModel;
 import net.finmath.climate.models.dice.DICEModel;
 import net.finmath.climateschool.ui.parameter.BooleanParameter;
 import net.finmath.climateschool.ui.parameter.DoubleParameter;
+import net.finmath.climateschool.ui.parameter.PipelineStage;
+import net.finmath.climateschool.utilities.ClimateModelSnapshot;
 import net.finmath.climateschool.utilities.DICEModelPlots;
 import net.finmath.time.TimeDiscretization;
 import net.finmath.time.TimeDiscretizationFromArray;
@@ -18,32 +18,63 @@ import net.finmath.time.TimeDiscretizationFromArray;
 public class DICEAbatementTimeExperimentUI extends ExperimentUI {
 
 	private static final double timeStep = 1.0;
+	private static final double timeStepCoarse = 10.0;
 	private static final double timeHorizon = 500.0;
 
 	private final DecimalFormat numberDigit3 = new DecimalFormat("#.000");
 	private final DecimalFormat numberPercent2 = new DecimalFormat("#.00%");
 
 	private final DICEModelPlots plots = new DICEModelPlots();
+	private final RenderScheduler<PlotSnapshot> renderScheduler = new RenderScheduler<>("render-thread", snapshot -> snapshot.plot(plots), 10);
 
 	public DICEAbatementTimeExperimentUI() {
 		super(List.of(
 				new DoubleParameter("Discount Rate", 0.03, 0.01, 0.05),
 				new DoubleParameter("Abatement Max Time", 50.0, 10.0, 200.0),
-				new BooleanParameter("Show Cost", false)
+				new BooleanParameter("Show Cost", false, PipelineStage.PRESENTATION)
 				));
 	}
 
 
 	public String getTitle() { return "DICE Model - One Parametric Abatement Model - NOT CALIBRATED"; }
 
-	public void runCalculation(BooleanSupplier isCancelled) {
-		Map<String, Object> currentParameterSet = getExperimentParameters().stream().collect(Collectors.toMap(p -> p.getBindableValue().getName(), p -> p.getBindableValue().getValue()));
+	public void runCalculation(Map<String, Object> currentParameterSet, BooleanSupplier isCancelled) {
+		runCalculation(currentParameterSet, Refinement.FINAL, isCancelled);
+	}
+
+	@Override
+	public void runCalculation(Map<String, Object> currentParameterSet, Refinement refinement, BooleanSupplier isCancelled) {
+		System.out.println("Calculation with Parameters: " + currentParameterSet + " (" + refinement + ")");
 
-		System.out.println("Calculation with Parameters: " + currentParameterSet);
+		final double discountRate = (Double)currentParameterSet.get("Discount Rate");
+		final double abatementMaxTime = (Double)currentParameterSet.get("Abatement Max Time");
 
 		/*
-		 * Discount rate
+		 * The DICE model (re-used if only the presentation changed or if pre-fetched)
 		 */
+		final ClimateModelSnapshot climateModel = getClimateModel(currentParameterSet, refinement, isCancelled);
+
+		/*
+		 * Plots
+		 */
+
+		if(!Thread.currentThread().isInterrupted() && !isCancelled.getAsBoolean()) {
+			final String spec = "T(\u03BC=1) =" + numberDigit3.format(abatementMaxTime) + ", r = " + numberPercent2.format(discountRate)
+					+ (refinement == Refinement.COARSE ? " (preview)" : "");
+			final boolean isShowCost = (boolean)getPresentationValue(currentParameterSet, "Show Cost");
+			publish(new PlotSnapshot(climateModel, discountRate, spec, isShowCost));
+		}
+	}
+
+	@Override
+	protected void prefetch(Map<String, Object> currentParameterSet, BooleanSupplier isCancelled) {
+		getClimateModel(currentParameterSet, Refinement.FINAL, isCancelled);
+	}
+
+	/*
+	 * The DICE model for the given parameters (memoized).
+	 */
+	private ClimateModelSnapshot getClimateModel(Map<String, Object> currentParameterSet, Refinement refinement, BooleanSupplier isCancelled) {
 		final double discountRate = (Double)currentParameterSet.get("Discount Rate");
 
 		/*
@@ -54,10 +85,11 @@ public class DICEAbatementTimeExperimentUI extends ExperimentUI {
 		final double abatementMaxTime = (Double)currentParameterSet.get("Abatement Max Time");
 
 		/*
-		 * Create a time discretization
+		 * Create a time discretization (the coarse preview uses a 10 year grid)
 		 */
-		final int numberOfTimeSteps = (int)Math.round(timeHorizon / timeStep);
-		final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, timeStep);
+		final double timeStepOfRefinement = refinement == Refinement.COARSE ? timeStepCoarse : timeStep;
+		final int numberOfTimeSteps = (int)Math.round(timeHorizon / timeStepOfRefinement);
+		final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, timeStepOfRefinement);
 
 		/*
 		 * Create our abatement model: it is a piecewise linear funtion: starting in abatementInitial, then reaching abatementMax in abatementMaxTime years, then staying at abatementMax.
@@ -70,38 +102,37 @@ public class DICEAbatementTimeExperimentUI extends ExperimentUI {
 		final UnaryOperator<Double> savingsRateFunction = time -> 0.26;
 
 		/*
-		 * Create the DICE model from the given parameters.
+		 * Create the DICE model from the given parameters (re-used if only the presentation changed).
 		 */
-		final ClimateModel climateModel = new DICEModel(timeDiscretization, abatementFunction, savingsRateFunction, discountRate);
+		return memoize(PipelineStage.MODEL, refinement, currentParameterSet, isCancelled,
+				() -> {
+					// The model is also created by the speculation (prefetch), which does not count
+					if(isVisibleCalculation()) getMetrics().recordEvaluation();
+					return ClimateModelSnapshot.of(new DICEModel(timeDiscretization, abatementFunction, savingsRateFunction, discountRate));
+				});
+	}
 
-		/*
-		 * Plots
-		 */
+	@Override
+	public long getEstimatedRetainedSize() {
+		return super.getEstimatedRetainedSize() + plots.getEstimatedRetainedSize();
+	}
 
-		if(!Thread.currentThread().isInterrupted() && !isCancelled.getAsBoolean()) {
-			synchronized(this) {
-			String spec = "T(\u03BC=1) =" + numberDigit3.format(abatementMaxTime) + ", r = " + numberPercent2.format(discountRate);		
-
-			plots.plot(climateModel, spec);
-
-			boolean showCost = (boolean)currentParameterSet.get("Show Cost");
-			if(showCost) {
-				plots.plotCost(climateModel, discountRate, spec);
-			}
-			else {
-				plots.closeCost();
-			}
-			}
-		}
+	@Override
+	protected void render(Object result) {
+		renderScheduler.publish((PlotSnapshot)result);
 	}
 
+	@Override
+	public void releaseMemory() {
+		super.releaseMemory();
+
+		renderScheduler.stop(plots::close);
+	}
 
 	@Override
 	protected void onClose() {
-		synchronized(this) {
 		super.onClose();
 
-		if(plots != null) plots.close();
-		}
+		renderScheduler.close(plots::close);
 	}
 }
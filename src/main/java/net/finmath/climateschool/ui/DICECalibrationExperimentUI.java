@@ -6,14 +6,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.BooleanSupplier;
 import java.util.function.UnaryOperator;
-import java.util.stream.Collectors;
 
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
 import net.finmath.climate.models.ClimateModel;
 import net.finmath.climate.models.dice.DICEModel;
 import net.finmath.climateschool.ui.parameter.BooleanParameter;
 import net.finmath.climateschool.ui.parameter.DoubleParameter;
+import net.finmath.climateschool.ui.parameter.PipelineStage;
 import net.finmath.climateschool.utilities.AdamOptimizerUsingFiniteDifferences;
 import net.finmath.climateschool.utilities.AdamOptimizerUsingFiniteDifferences.GradientMethod;
+import net.finmath.climateschool.utilities.CancellationToken;
+import net.finmath.climateschool.utilities.ClimateModelSnapshot;
 import net.finmath.climateschool.utilities.DICEModelPlots;
 import net.finmath.stochastic.RandomVariable;
 import net.finmath.stochastic.Scalar;
@@ -31,20 +35,31 @@ public class DICECalibrationExperimentUI extends ExperimentUI {
 	double[] initialParameters;
 
 	private final DICEModelPlots plots = new DICEModelPlots();
+	private final RenderScheduler<PlotSnapshot> renderScheduler = new RenderScheduler<>("render-thread", snapshot -> snapshot.plot(plots), 10);
+
+	// Live view of the abatement during the calibration
+	private volatile CanvasChart chart = null;
 
 	public DICECalibrationExperimentUI() {
 		super(List.of(
 				new DoubleParameter("Discount Rate", 0.03, 0.01, 0.05),
-				new BooleanParameter("Show Cost", false)
+				new BooleanParameter("Show Cost", false, PipelineStage.PRESENTATION)
 				//				new Parameter("Abatement Max Time", 50.0, 10.0, 200.0)
 				));
 	}
 
 	public String getTitle() { return "DICE Model - Full Abatement Model - Optimized Emisison Path (Calibration)"; }
 
-	public void runCalculation(BooleanSupplier isCancelled) {
-		Map<String, Object> currentParameterSet = getExperimentParameters().stream().collect(Collectors.toMap(p -> p.getBindableValue().getName(), p -> p.getBindableValue().getValue()));
+	@Override
+	protected Node createChart() {
+		final CanvasChart chart = new CanvasChart();
+		chart.addSeries(Color.BLUE, CanvasChart.Style.LINE, 2.0);
+		chart.setXRange(0, 300).setYRange(0, 1.05).setXAxisLabel("time (years)").setYAxisLabel("Abatement \u03bc").setTitle("Abatement (calibration)");
+		this.chart = chart;
+		return chart;
+	}
 
+	public void runCalculation(Map<String, Object> currentParameterSet, BooleanSupplier isCancelled) {
 		System.out.println("Calculation with Parameters: " + currentParameterSet);
 
 		/*
@@ -63,20 +78,42 @@ public class DICECalibrationExperimentUI extends ExperimentUI {
 		 */
 		final double discountRate = (Double)currentParameterSet.get("Discount Rate");
 
+		/*
+		 * Calibration (re-used if only the presentation changed)
+		 */
+		final ClimateModelSnapshot climateModel = memoize(PipelineStage.CALIBRATION, currentParameterSet, isCancelled,
+				() -> calibrate(timeDiscretization, savingsRateFunction, discountRate, currentParameterSet, isCancelled));
+
+		/*
+		 * Plots
+		 */
+
+		if(!Thread.currentThread().isInterrupted() && !isCancelled.getAsBoolean()) {
+			final String spec = "r = " + numberPercent2.format(discountRate);
+			final boolean isShowCost = (boolean)getPresentationValue(currentParameterSet, "Show Cost");
+			publish(new PlotSnapshot(climateModel, discountRate, spec, isShowCost));
+		}
+	}
+
+	/*
+	 * Calibrate the abatement parameters (one per time step) and create the DICE model for the optimal abatement.
+	 * Intermediate results are shown in the chart and the plots. Returns null if the calibration has been cancelled.
+	 */
+	private ClimateModelSnapshot calibrate(TimeDiscretization timeDiscretization, UnaryOperator<Double> savingsRateFunction, double discountRate, Map<String, Object> currentParameterSet, BooleanSupplier isCancelled) {
 		// Initial parameters for our abatement function
 		if(initialParameters == null) {
 			initialParameters = new double[timeDiscretization.getNumberOfTimes()];
 			Arrays.fill(initialParameters, -Math.log(-Math.log(0.8)));
 		}
 
-		final AdamOptimizerUsingFiniteDifferences optimizer = new AdamOptimizerUsingFiniteDifferences(initialParameters, 800, 0.05, GradientMethod.AVERAGE) {
+		final double[] times = timeDiscretization.getAsDoubleArray();
+		final CanvasChart chart = this.chart;
+		final int numberOfIterations = 800;
+
+		final AdamOptimizerUsingFiniteDifferences optimizer = new AdamOptimizerUsingFiniteDifferences(initialParameters, numberOfIterations, 0.05, GradientMethod.AVERAGE) {
 			private int iteration = 0;
 			@Override
 			public RandomVariable setValue(RandomVariable[] parameters) {
-				if(Thread.currentThread().isInterrupted()) {
-					this.stop();
-				}
-
 				double[] abatementParameter = Arrays.stream(parameters).mapToDouble(RandomVariable::getAverage).map(x -> Math.exp(-Math.exp(-x))).toArray();
 				abatementParameter[0] = 0.03;
 				initialParameters = Arrays.stream(parameters).mapToDouble(RandomVariable::getAverage).toArray();
@@ -102,28 +139,37 @@ public class DICECalibrationExperimentUI extends ExperimentUI {
 				roughness /= abatementParameter.length;
 				roughness *= 0.1;
 
-				// Update the plot every 200 iterations
-				if(iteration%200 == 0 && !Thread.currentThread().isInterrupted()) {
-					String spec = "r = " + numberPercent2.format(discountRate) + "; value = " + numberDigit3.format(value);
-					plots.plot(climateModel, spec);
-					boolean showCost = (boolean)currentParameterSet.get("Show Cost");
-					if(showCost) {
-						plots.plotCost(climateModel, discountRate, spec);
-					}
-					else {
-						plots.closeCost();
+				// Live view and plot data once per optimizer iteration, i.e., for the unshifted evaluation (not for the evaluations of the gradient).
+				// The chart and the render thread limit the frame rate, only the newest data is shown.
+				if(iteration % (parameters.length + 1) == 0 && !isCancelled.getAsBoolean()) {
+					if(chart != null) {
+						chart.setData(0, times, abatementParameter);
 					}
+					final String spec = "r = " + numberPercent2.format(discountRate) + "; value = " + numberDigit3.format(value);
+					// The presentation parameter is read when publishing (the calibration continues if it changes)
+					final boolean isShowCost = (boolean)getPresentationValue(currentParameterSet, "Show Cost");
+					publish(new PlotSnapshot(ClimateModelSnapshot.of(climateModel), discountRate, spec, isShowCost));
 				}
 				iteration++;
 
+				// Each iteration of the optimizer evaluates the value and the gradient (one evaluation per parameter)
+				if(isVisibleCalculation()) {
+					getMetrics().recordEvaluation();
+					getMetrics().setProgress((double)iteration / (numberOfIterations * (parameters.length + 1)));
+				}
+
 				return Scalar.of(-value);// + roughness);
 			}
 		};
 
+		// The optimizer polls the cancellation before each evaluation of the DICE model
+		optimizer.setCancellationToken(CancellationToken.of(isCancelled));
 		optimizer.run();
 
 		System.out.println("Optimizer finished.");
 
+		if(isCancelled.getAsBoolean()) return null;
+
 		// Get optimal value
 		final RandomVariable[] bestParameters = optimizer.getBestFitParameters();
 		double[] abatementParameter = Arrays.stream(bestParameters).mapToDouble(RandomVariable::getAverage).map(x -> Math.exp(-Math.exp(-x))).toArray();
@@ -140,32 +186,30 @@ public class DICECalibrationExperimentUI extends ExperimentUI {
 		 */
 		final ClimateModel climateModel = new DICEModel(timeDiscretization, abatementFunction, savingsRateFunction, discountRate);
 
-		/*
-		 * Plots
-		 */
+		return ClimateModelSnapshot.of(climateModel);
+	}
 
-		if(!Thread.currentThread().isInterrupted() && !isCancelled.getAsBoolean()) {
-			synchronized(this) {
-			String spec = "r = " + numberPercent2.format(discountRate);		
-			plots.plot(climateModel, spec);
+	@Override
+	public long getEstimatedRetainedSize() {
+		return super.getEstimatedRetainedSize() + plots.getEstimatedRetainedSize() + (initialParameters != null ? initialParameters.length * 8L : 0);
+	}
 
-			boolean showCost = (boolean)currentParameterSet.get("Show Cost");
-			if(showCost) {
-				plots.plotCost(climateModel, discountRate, spec);
-			}
-			else {
-				plots.closeCost();
-			}
-			}
-		}
+	@Override
+	protected void render(Object result) {
+		renderScheduler.publish((PlotSnapshot)result);
+	}
+
+	@Override
+	public void releaseMemory() {
+		super.releaseMemory();
+
+		renderScheduler.stop(plots::close);
 	}
 
 	@Override
 	protected void onClose() {
-		synchronized(this) {
 		super.onClose();
 
-		if(plots != null) plots.close();
-		}
+		renderScheduler.close(plots::close);
 	}
 }
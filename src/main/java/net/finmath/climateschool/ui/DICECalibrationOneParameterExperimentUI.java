@@ -5,12 +5,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.BooleanSupplier;
 import java.util.function.UnaryOperator;
-import java.util.stream.Collectors;
 
 import net.finmath.climate.models.ClimateModel;
 import net.finmath.climate.models.dice.DICEModel;
 import net.finmath.climateschool.ui.parameter.BooleanParameter;
 import net.finmath.climateschool.ui.parameter.DoubleParameter;
+import net.finmath.climateschool.ui.parameter.PipelineStage;
+import net.finmath.climateschool.utilities.ClimateModelSnapshot;
 import net.finmath.climateschool.utilities.DICEModelPlots;
 import net.finmath.optimizer.GoldenSectionSearch;
 import net.finmath.time.TimeDiscretization;
@@ -19,17 +20,27 @@ import net.finmath.time.TimeDiscretizationFromArray;
 public class DICECalibrationOneParameterExperimentUI extends ExperimentUI {
 
 	private static final double timeStep = 1.0;
+	private static final double timeStepCoarse = 10.0;
 	private static final double timeHorizon = 500.0;
 
+	private static final double accuracy = 1E-5;
+	private static final double accuracyCoarse = 1E-2;
+
 	private final DecimalFormat numberDigit3 = new DecimalFormat("#.000");
 	private final DecimalFormat numberPercent2 = new DecimalFormat("#.00%");
 
 	private final DICEModelPlots plots = new DICEModelPlots();
+	private final RenderScheduler<PlotSnapshot> renderScheduler = new RenderScheduler<>("render-thread", snapshot -> snapshot.plot(plots), 10);
+
+	/*
+	 * Result of the calibration stage
+	 */
+	private record Calibration(double abatementMaxTime, ClimateModelSnapshot model) {}
 
 	public DICECalibrationOneParameterExperimentUI() {
 		super(List.of(
 				new DoubleParameter("Discount Rate", 0.03, 0.01, 0.05),
-				new BooleanParameter("Show Cost", false)
+				new BooleanParameter("Show Cost", false, PipelineStage.PRESENTATION)
 				//				new Parameter("Abatement Max Time", 50.0, 10.0, 200.0)
 				));
 	}
@@ -37,16 +48,51 @@ public class DICECalibrationOneParameterExperimentUI extends ExperimentUI {
 
 	public String getTitle() { return "DICE Model - One Parametric Abatement Model - Optimized Emisison Path (Calibration)"; }
 
-	public void runCalculation(BooleanSupplier isCancelled) {
-		Map<String, Object> currentParameterSet = getExperimentParameters().stream().collect(Collectors.toMap(p -> p.getBindableValue().getName(), p -> p.getBindableValue().getValue()));
+	public void runCalculation(Map<String, Object> currentParameterSet, BooleanSupplier isCancelled) {
+		runCalculation(currentParameterSet, Refinement.FINAL, isCancelled);
+	}
+
+	@Override
+	public void runCalculation(Map<String, Object> currentParameterSet, Refinement refinement, BooleanSupplier isCancelled) {
+		System.out.println("Calculation with Parameters: " + currentParameterSet + " (" + refinement + ")");
+
+		final double discountRate = (Double)currentParameterSet.get("Discount Rate");
+
+		/*
+		 * Calibration (re-used if only the presentation changed or if pre-fetched)
+		 */
+		final Calibration calibration = getCalibration(currentParameterSet, refinement, isCancelled);
+		if(calibration == null) return;		// cancelled
+		final double abatementMaxTime = calibration.abatementMaxTime();
+
+		/*
+		 * Plots
+		 */
+
+		if(!Thread.currentThread().isInterrupted() && !isCancelled.getAsBoolean()) {
+			final String spec = "T(\u03BC=1) =" + numberDigit3.format(abatementMaxTime) + ", r = " + numberPercent2.format(discountRate)
+					+ (refinement == Refinement.COARSE ? " (preview)" : "");
+			final boolean isShowCost = (boolean)getPresentationValue(currentParameterSet, "Show Cost");
+			publish(new PlotSnapshot(calibration.model(), discountRate, spec, isShowCost));
+		}
+	}
 
-		System.out.println("Calculation with Parameters: " + currentParameterSet);
+	@Override
+	protected void prefetch(Map<String, Object> currentParameterSet, BooleanSupplier isCancelled) {
+		getCalibration(currentParameterSet, Refinement.FINAL, isCancelled);
+	}
 
+	/*
+	 * The calibration for the given parameters (memoized).
+	 */
+	private Calibration getCalibration(Map<String, Object> currentParameterSet, Refinement refinement, BooleanSupplier isCancelled) {
 		/*
-		 * Create a time discretization
+		 * Create a time discretization (the coarse preview uses a 10 year grid and a looser tolerance of the optimizer)
 		 */
-		final int numberOfTimeSteps = (int)Math.round(timeHorizon / timeStep);
-		final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, timeStep);
+		final double timeStepOfRefinement = refinement == Refinement.COARSE ? timeStepCoarse : timeStep;
+		final double accuracyOfRefinement = refinement == Refinement.COARSE ? accuracyCoarse : accuracy;
+		final int numberOfTimeSteps = (int)Math.round(timeHorizon / timeStepOfRefinement);
+		final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, timeStepOfRefinement);
 
 		/*
 		 * Create our savings rate model: a constant.
@@ -58,6 +104,14 @@ public class DICECalibrationOneParameterExperimentUI extends ExperimentUI {
 		 */
 		final double discountRate = (Double)currentParameterSet.get("Discount Rate");
 
+		return memoize(PipelineStage.CALIBRATION, refinement, currentParameterSet, isCancelled,
+				() -> calibrate(timeDiscretization, savingsRateFunction, discountRate, accuracyOfRefinement, isCancelled));
+	}
+
+	/*
+	 * Search for the optimal value of abatementMaxTime and create the DICE model for it (null if cancelled).
+	 */
+	private Calibration calibrate(TimeDiscretization timeDiscretization, UnaryOperator<Double> savingsRateFunction, double discountRate, double accuracyOfOptimizer, BooleanSupplier isCancelled) {
 		/*
 		 * Parameters for the abatement model (abatement = fraction of industrial CO2 reduction; 1.00 ~ 100 % reduction ~ carbon neutral).
 		 */
@@ -71,7 +125,7 @@ public class DICECalibrationOneParameterExperimentUI extends ExperimentUI {
 		double searchIntervallLowerBound = 10.0;
 		double searchIntervallUpperBound = 300.0;		
 		GoldenSectionSearch optimizer = new GoldenSectionSearch(searchIntervallLowerBound, searchIntervallUpperBound);
-		while(optimizer.getAccuracy() > 1E-5 && !optimizer.isDone()) {
+		while(optimizer.getAccuracy() > accuracyOfOptimizer && !optimizer.isDone() && !isCancelled.getAsBoolean()) {
 
 			final double abatementMaxTime = optimizer.getNextPoint();	// Free parameter
 
@@ -91,8 +145,17 @@ public class DICECalibrationOneParameterExperimentUI extends ExperimentUI {
 
 			// Note: The GoldenSectionSearch optimizer is a minimizer. But we like to maximize the value. Hence we pass -value to the optimzer.
 			optimizer.setValue(-value);
+
+			// The accuracy shrinks geometrically (the speculation, see prefetch, does not update the metrics)
+			if(isVisibleCalculation()) {
+				getMetrics().recordEvaluation();
+				getMetrics().setProgress(Math.min(Math.log((searchIntervallUpperBound-searchIntervallLowerBound)/optimizer.getAccuracy())
+						/ Math.log((searchIntervallUpperBound-searchIntervallLowerBound)/accuracyOfOptimizer), 1.0));
+			}
 		}
 
+		if(isCancelled.getAsBoolean()) return null;
+
 		// Get optimal value
 		final double abatementMaxTime = optimizer.getBestPoint();
 
@@ -106,29 +169,30 @@ public class DICECalibrationOneParameterExperimentUI extends ExperimentUI {
 		 */
 		final ClimateModel climateModel = new DICEModel(timeDiscretization, abatementFunction, savingsRateFunction, discountRate);
 
-		/*
-		 * Plots
-		 */
+		return new Calibration(abatementMaxTime, ClimateModelSnapshot.of(climateModel));
+	}
 
-		if(!Thread.currentThread().isInterrupted() && !isCancelled.getAsBoolean()) {
-			String spec = "T(\u03BC=1) =" + numberDigit3.format(abatementMaxTime) + ", r = " + numberPercent2.format(discountRate);		
+	@Override
+	public long getEstimatedRetainedSize() {
+		return super.getEstimatedRetainedSize() + plots.getEstimatedRetainedSize();
+	}
 
-			plots.plot(climateModel, spec);
+	@Override
+	protected void render(Object result) {
+		renderScheduler.publish((PlotSnapshot)result);
+	}
 
-			boolean showCost = (boolean)currentParameterSet.get("Show Cost");
-			if(showCost) {
-				plots.plotCost(climateModel, discountRate, spec);
-			}
-			else {
-				plots.closeCost();
-			}
-		}
+	@Override
+	public void releaseMemory() {
+		super.releaseMemory();
+
+		renderScheduler.stop(plots::close);
 	}
 
 	@Override
 	protected void onClose() {
 		super.onClose();
 
-		if(plots != null) plots.close();
+		renderScheduler.close(plots::close);
 	}
 }
@@ -0,0 +1,203 @@
+package net.finmath.climateschool.ui;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of the experiments of the {@link ExperimentsTree}, weighted by memory.
+ *
+ * Each {@link ExperimentUI} reports an estimate of its retained memory and of the cost to recompute its result.
+ * The experiments are held strongly as long as their total estimated memory is within the memory budget.
+ * If the budget is exceeded, the experiment with the lowest recomputation cost per byte (excluding the most recently used one)
+ * is evicted and disposed. Under memory pressure (heap usage after the last garbage collection above a threshold) all but the most recently used experiment
+ * release their recomputable memory, close their plot windows and stop their background threads (see {@link ExperimentUI#releaseMemory()})
+ * and are moved to soft references, such that the garbage collector may reclaim them (they hold nothing which requires disposing).
+ * An experiment which is requested again is moved back from its soft reference and recalculated.
+ *
+ * The cache counts hits (strong and soft), misses, evictions, demotions to soft references and experiments reclaimed by
+ * the garbage collector.
+ *
+ * @author Christian Fries
+ */
+public class ExperimentCache {
+
+	private static final double memoryPressureThreshold = 0.75;
+
+	private final long memoryBudget;
+
+	// Strongly held experiments in access order
+	private final LinkedHashMap<String, ExperimentUI> experiments = new LinkedHashMap<>(16, 0.75f, true);
+	// Experiments moved to soft references
+	private final Map<String, SoftReference<ExperimentUI>> softExperiments = new LinkedHashMap<>();
+
+	private long hits;
+	private long softHits;
+	private long misses;
+	private long evictions;
+	private long demotions;
+	private long reclaimed;
+
+	/**
+	 * Create the cache.
+	 *
+	 * @param memoryBudget The budget for the total estimated retained memory of the strongly held experiments (in bytes).
+	 */
+	public ExperimentCache(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Create the cache with a budget of a quarter of the maximum heap size, but at most 512 MB.
+	 */
+	public ExperimentCache() {
+		this(Math.min(Runtime.getRuntime().maxMemory() / 4, 512L << 20));
+	}
+
+	public synchronized ExperimentUI get(String name) {
+		ExperimentUI experiment = experiments.get(name);
+		if(experiment != null) {
+			hits++;
+			trim(name);
+			return experiment;
+		}
+
+		final SoftReference<ExperimentUI> reference = softExperiments.remove(name);
+		experiment = reference != null ? reference.get() : null;
+		if(experiment != null) {
+			softHits++;
+			experiments.put(name, experiment);
+			trim(name);
+			// Re-create the released results and plot windows
+			experiment.runCalculationAsync();
+			return experiment;
+		}
+
+		if(reference != null) reclaimed++;
+		misses++;
+		return null;
+	}
+
+	public synchronized void put(String name, ExperimentUI experiment) {
+		final ExperimentUI previous = experiments.put(name, experiment);
+		if(previous != null && previous != experiment) close(previous);
+		final SoftReference<ExperimentUI> reference = softExperiments.remove(name);
+		if(reference != null && reference.get() != null && reference.get() != experiment) close(reference.get());
+		trim(name);
+	}
+
+	public synchronized void remove(String name) {
+		close(experiments.remove(name));
+		final SoftReference<ExperimentUI> reference = softExperiments.remove(name);
+		if(reference != null) close(reference.get());
+	}
+
+	public synchronized void clear() {
+		for(final ExperimentUI experiment : experiments.values()) close(experiment);
+		for(final SoftReference<ExperimentUI> reference : softExperiments.values()) close(reference.get());
+		experiments.clear();
+		softExperiments.clear();
+	}
+
+	/**
+	 * @return The number of strongly held experiments.
+	 */
+	public synchronized int size() {
+		return experiments.size();
+	}
+
+	/**
+	 * @return The total estimated retained memory of the strongly held experiments (in bytes).
+	 */
+	public synchronized long getEstimatedRetainedSize() {
+		long size = 0;
+		for(final ExperimentUI experiment : experiments.values()) {
+			size += experiment.getEstimatedRetainedSize();
+		}
+		return size;
+	}
+
+	public synchronized String getStatistics() {
+		return "ExperimentCache [size=" + experiments.size() + ", soft=" + softExperiments.size()
+		+ ", retained=" + (getEstimatedRetainedSize() >> 20) + " MB of " + (memoryBudget >> 20) + " MB"
+		+ ", hits=" + hits + ", softHits=" + softHits + ", misses=" + misses
+		+ ", evictions=" + evictions + ", demotions=" + demotions + ", reclaimed=" + reclaimed + "]";
+	}
+
+	@Override
+	public String toString() {
+		return getStatistics();
+	}
+
+	/*
+	 * Enforce the memory budget and react on memory pressure, keeping the experiment with the given name.
+	 */
+	private void trim(String nameToKeep) {
+		// Evict the experiments with the lowest recomputation cost per byte until the budget is met
+		long size = getEstimatedRetainedSize();
+		while(size > memoryBudget && experiments.size() > 1) {
+			String victim = null;
+			double victimCostPerByte = Double.MAX_VALUE;
+			for(final Map.Entry<String, ExperimentUI> entry : experiments.entrySet()) {
+				if(entry.getKey().equals(nameToKeep)) continue;
+				final double costPerByte = entry.getValue().getEstimatedRecomputationCost() / Math.max(1, entry.getValue().getEstimatedRetainedSize());
+				if(costPerByte < victimCostPerByte) {
+					victim = entry.getKey();
+					victimCostPerByte = costPerByte;
+				}
+			}
+			if(victim == null) break;
+			final ExperimentUI experiment = experiments.remove(victim);
+			size -= experiment.getEstimatedRetainedSize();
+			close(experiment);
+			evictions++;
+		}
+
+		// Under memory pressure move the experiments to soft references
+		if(getHeapUsageAfterCollection() > memoryPressureThreshold) {
+			final List<String> names = new ArrayList<>(experiments.keySet());
+			for(final String name : names) {
+				if(name.equals(nameToKeep)) continue;
+				final ExperimentUI experiment = experiments.remove(name);
+				experiment.releaseMemory();
+				softExperiments.put(name, new SoftReference<>(experiment));
+				demotions++;
+			}
+		}
+
+		softExperiments.values().removeIf(reference -> {
+			if(reference.get() == null) {
+				reclaimed++;
+				return true;
+			}
+			return false;
+		});
+	}
+
+	/*
+	 * The fraction of the maximum heap which is used after the last garbage collection (live data, not counting garbage
+	 * which has not been collected yet). Zero if no collection has happened so far.
+	 */
+	private static double getHeapUsageAfterCollection() {
+		long used = 0;
+		for(final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() != MemoryType.HEAP) continue;
+			final MemoryUsage collectionUsage = pool.getCollectionUsage();
+			if(collectionUsage != null) used += collectionUsage.getUsed();
+		}
+		return (double)used / Runtime.getRuntime().maxMemory();
+	}
+
+	private static void close(ExperimentUI experiment) {
+		if (experiment == null) return;
+		try {
+			experiment.dispose();
+		} catch (Exception ignore) { /* no-op */ }
+	}
+}
@@ -1,25 +1,33 @@
 package net.finmath.climateschool.ui;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BooleanSupplier;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import javafx.animation.PauseTransition;
 import javafx.application.Application;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
-import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
@@ -32,8 +40,10 @@ import javafx.scene.control.Tooltip;
 import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.stage.Window;
 import javafx.stage.WindowEvent;
 import javafx.util.Duration;
 import javafx.util.StringConverter;
@@ -41,24 +51,64 @@ import javafx.util.converter.NumberStringConverter;
 import net.finmath.climateschool.ui.parameter.BooleanParameter;
 import net.finmath.climateschool.ui.parameter.DoubleParameter;
 import net.finmath.climateschool.ui.parameter.Parameter;
+import net.finmath.climateschool.ui.parameter.PipelineStage;
+import net.finmath.climateschool.utilities.CancellationToken;
 
 public abstract class ExperimentUI extends Application {
 
 	// The parameters
 	private final List<Parameter> parameters;
 
-	private final ExecutorService pool = Executors.newSingleThreadExecutor(r -> {
-		Thread t = new Thread(r, "compute-thread");
-		t.setDaemon(true);
-		return t;
-	});
+	// The calculations run on the application wide scheduler
+	private final ComputeScheduler scheduler = ComputeScheduler.getInstance();
+	private final Object jobLock = new Object();		// guards currentJob, currentCancellationToken, currentParameterValues and currentRequest
+	private final Object runLock = new Object();		// serializes the calculations of this experiment
 	private Future<?> currentJob;
-	private final AtomicLong currentEpoch = new AtomicLong(0);
+	private CancellationToken currentCancellationToken = new CancellationToken();
+	private Map<String, Object> currentParameterValues;
+	private long currentRequest = 0;
 
-	private final PauseTransition debounce = new PauseTransition(Duration.millis(300));
+	// The parameter values of the most recent request (presentation parameters are read from here when publishing)
+	private volatile Map<String, Object> latestParameterValues;
+
+	// Speculative calculations of neighbouring parameter values (guarded by speculations)
+	private record Speculation(Map<String, Object> parameterValues, CancellationToken cancellationToken, Future<?> future) {}
+	private final List<Speculation> speculations = new ArrayList<>();
+
+	// Memoized results of the pipeline stages (LRU)
+	private static final int maxNumberOfMemoizedResults = 16;
+	private final Map<List<Object>, Object> memoizedResults = new LinkedHashMap<List<Object>, Object>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+			return size() > maxNumberOfMemoizedResults;
+		}
+	};
+	// Running calculations of memoized stages by key (guarded by memoizedResults), completed when the calculation ends
+	private final Map<List<Object>, CompletableFuture<Void>> runningCalculations = new HashMap<>();
+	private static final long joinPollingMillis = 20;
+
+	private PauseTransition debounce;		// created with the content (requires the JavaFX toolkit)
 	private final DecimalFormat df = new DecimalFormat("#.####");
 
 	private Parent content;
+	private Node chart;
+
+	// Estimates of the retained memory (see getEstimatedRetainedSize)
+	private static final long estimatedSizeOfContent = 1L << 20;
+	private static final long estimatedSizeOfMemoizedResult = 64L << 10;
+
+	// Wall time of the last final calculation (see getEstimatedRecomputationCost)
+	private volatile long calculationTimeMillis = 0;
+
+	// Receives the results instead of render(Object) if set (headless execution)
+	private volatile PlotSink plotSink = null;
+
+	// Metrics of the calculations (shown in the performance panel)
+	private final MetricsRegistry metrics = new MetricsRegistry();
+	private MetricsPanel metricsPanel;
+	private volatile Thread calculationThread;		// the thread running the current (visible) calculation
 
 	public ExperimentUI(List<Parameter> parameters) {
 		this.parameters = parameters;
@@ -69,45 +119,465 @@ public abstract class ExperimentUI extends Application {
 	 */
 	abstract public String getTitle();
 
-	abstract public void runCalculation(BooleanSupplier isCancelled);
+	/**
+	 * Run the calculation for the given parameters (called on the compute thread).
+	 *
+	 * Stages of the calculation which depend only on some of the parameters may use
+	 * {@link #memoize(PipelineStage, Map, BooleanSupplier, Supplier)} to re-use their results.
+	 *
+	 * @param parameterValues The values of the parameters (name to value), taken when the calculation was started.
+	 * @param isCancelled Returns true if the calculation has been superseded.
+	 */
+	abstract public void runCalculation(Map<String, Object> parameterValues, BooleanSupplier isCancelled);
+
+	/**
+	 * Run the calculation for the given parameters at the given refinement (called on the compute thread).
+	 *
+	 * The calculation is first run with {@link Refinement#COARSE}, then with {@link Refinement#FINAL},
+	 * unless it has been cancelled in between (i.e., a parameter has changed).
+	 * The default implementation skips the coarse calculation and calls {@link #runCalculation(Map, BooleanSupplier)}.
+	 * Override to provide a fast preview.
+	 *
+	 * @param parameterValues The values of the parameters (name to value), taken when the calculation was started.
+	 * @param refinement The refinement of the calculation.
+	 * @param isCancelled Returns true if the calculation has been superseded.
+	 */
+	public void runCalculation(Map<String, Object> parameterValues, Refinement refinement, BooleanSupplier isCancelled) {
+		if(refinement == Refinement.FINAL) {
+			runCalculation(parameterValues, isCancelled);
+		}
+	}
+
+	/**
+	 * Override to embed a chart (e.g. a {@link CanvasChart}) in the content, below the parameters.
+	 * Called once, when the content is created.
+	 *
+	 * @return The chart or null (default) if the experiment does not embed a chart.
+	 */
+	protected Node createChart() {
+		return null;
+	}
+
+	/**
+	 * Override to pre-calculate (and memoize) the expensive stages of the calculation for the given parameters,
+	 * without presenting the result. Called with {@link ComputeScheduler.Priority#SPECULATION} for the neighbouring values of the current parameters.
+	 * The default implementation does nothing.
+	 *
+	 * @param parameterValues The values of the parameters (name to value).
+	 * @param isCancelled Returns true if the speculation has been cancelled.
+	 */
+	protected void prefetch(Map<String, Object> parameterValues, BooleanSupplier isCancelled) {
+	}
+
+	/**
+	 * Override to render a result published by the calculation via {@link #publish(Object)} (e.g., update the plots or the chart).
+	 * Not called if a {@link PlotSink} has been set. The default implementation does nothing.
+	 *
+	 * @param result The result.
+	 */
+	protected void render(Object result) {
+	}
+
+	/**
+	 * Publish a result of the calculation: it is passed to the plot sink, if set, otherwise to {@link #render(Object)}.
+	 *
+	 * @param result The result (must not be modified after publishing).
+	 */
+	protected final void publish(Object result) {
+		final PlotSink plotSink = this.plotSink;
+		if(plotSink != null) {
+			plotSink.accept(result);
+		}
+		else {
+			render(result);
+		}
+	}
+
+	/**
+	 * Set a plot sink receiving the results instead of the plots and charts of this experiment (e.g., to run it without a display).
+	 *
+	 * @param plotSink The plot sink or null to render the results (default).
+	 */
+	public void setPlotSink(PlotSink plotSink) {
+		this.plotSink = plotSink;
+	}
+
+	/**
+	 * @return The metrics of the calculations of this experiment. Experiments record their objective evaluations and progress here.
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns true if called from the thread running the current (visible) calculation. Calculations which may also
+	 * be run by the speculation (see {@link #prefetch(Map, BooleanSupplier)}) should update the metrics only if this is true.
+	 *
+	 * @return True if the current thread runs the visible calculation.
+	 */
+	protected boolean isVisibleCalculation() {
+		return Thread.currentThread() == calculationThread;
+	}
 
 	protected void onClose() {
-		debounce.stop();
-		currentEpoch.incrementAndGet();
-		if (currentJob != null && !currentJob.isDone()) {
-			currentJob.cancel(true);
+		if(debounce != null) debounce.stop();
+		if(metricsPanel != null) metricsPanel.stop();
+		cancelSpeculation();
+		synchronized (jobLock) {
+			currentCancellationToken.cancel();
+			if (currentJob != null && !currentJob.isDone()) {
+				currentJob.cancel(true);
+			}
+		}
+		synchronized (memoizedResults) {
+			memoizedResults.clear();
+		}
+	}
+
+	/**
+	 * Returns the result of a stage of the calculation. The result is re-used as long as none of the parameters
+	 * of this stage or an upstream stage (see {@link PipelineStage}) has changed.
+	 * Results of cancelled calculations and null results are not stored.
+	 *
+	 * @param <T> The type of the result.
+	 * @param stage The stage calculated by <code>calculation</code>.
+	 * @param parameterValues The values of the parameters.
+	 * @param isCancelled Returns true if the calculation has been superseded.
+	 * @param calculation The calculation of the stage.
+	 * @return The (memoized) result of the stage.
+	 */
+	protected <T> T memoize(PipelineStage stage, Map<String, Object> parameterValues, BooleanSupplier isCancelled, Supplier<T> calculation) {
+		return memoize(stage, Refinement.FINAL, parameterValues, isCancelled, calculation);
+	}
+
+	/**
+	 * Returns the result of a stage of the calculation at the given refinement. The result is re-used as long as none of the parameters
+	 * of this stage or an upstream stage (see {@link PipelineStage}) has changed.
+	 * Results of cancelled calculations and null results are not stored.
+	 * If the same result is being calculated by another thread (e.g. a speculation), this method waits for that calculation
+	 * (and calculates the result itself if the other calculation did not store it).
+	 *
+	 * @param <T> The type of the result.
+	 * @param stage The stage calculated by <code>calculation</code>.
+	 * @param refinement The refinement of the calculation.
+	 * @param parameterValues The values of the parameters.
+	 * @param isCancelled Returns true if the calculation has been superseded.
+	 * @param calculation The calculation of the stage.
+	 * @return The (memoized) result of the stage.
+	 * @throws CancellationException Thrown if the calculation is cancelled while waiting for the calculation of another thread.
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> T memoize(PipelineStage stage, Refinement refinement, Map<String, Object> parameterValues, BooleanSupplier isCancelled, Supplier<T> calculation) {
+		final List<Object> key = new ArrayList<>();
+		key.add(stage);
+		key.add(refinement);
+		for(final Parameter parameter : parameters) {
+			if(parameter.getStage().compareTo(stage) <= 0) {
+				key.add(parameterValues.get(parameter.getBindableValue().getName()));
+			}
+		}
+
+		if(isVisibleCalculation()) {
+			metrics.setStage(refinement + " / " + stage);
+		}
+
+		while(true) {
+			final CompletableFuture<Void> runningCalculation;
+			final CompletableFuture<Void> calculationOfKey;
+			synchronized (memoizedResults) {
+				final Object result = memoizedResults.get(key);
+				if(result != null) {
+					return (T)result;
+				}
+				runningCalculation = runningCalculations.get(key);
+				calculationOfKey = runningCalculation == null ? new CompletableFuture<>() : null;
+				if(calculationOfKey != null) {
+					runningCalculations.put(key, calculationOfKey);
+				}
+			}
+
+			if(runningCalculation != null) {
+				awaitCalculation(runningCalculation, isCancelled);
+				continue;
+			}
+
+			try {
+				final T result = calculation.get();
+				if(result != null && !isCancelled.getAsBoolean() && !Thread.currentThread().isInterrupted()) {
+					synchronized (memoizedResults) {
+						memoizedResults.put(key, result);
+					}
+				}
+				return result;
+			}
+			finally {
+				synchronized (memoizedResults) {
+					runningCalculations.remove(key);
+				}
+				calculationOfKey.complete(null);
+			}
+		}
+	}
+
+	/*
+	 * Wait for the calculation of another thread, polling the cancellation.
+	 */
+	private static void awaitCalculation(Future<?> calculation, BooleanSupplier isCancelled) {
+		while(true) {
+			if(isCancelled.getAsBoolean()) {
+				throw new CancellationException("Calculation cancelled.");
+			}
+			try {
+				calculation.get(joinPollingMillis, TimeUnit.MILLISECONDS);
+				return;
+			}
+			catch(final TimeoutException e) {
+				// Poll the cancellation again
+			}
+			catch(final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException("Calculation interrupted.");
+			}
+			catch(final ExecutionException e) {
+				return;
+			}
 		}
-		pool.shutdownNow();
 	}
 
 	public void runCalculationAsync() {
 		System.out.println("Starting calculation.");
 
-		long taskEpoch = currentEpoch.incrementAndGet();
-		
-		// cancel running calculation
-		if (currentJob != null && !currentJob.isDone()) {
-			System.out.println("Cancel previous calculation.");
-			currentJob.cancel(true);
+		final Map<String, Object> parameterValues = getParameterValues();
+		final long requestNanos = System.nanoTime();
+
+		// real work arrived: a speculation for the requested values keeps running, the calculation joins it (see memoize)
+		cancelSpeculation(parameterValues);
+
+		synchronized (jobLock) {
+			latestParameterValues = parameterValues;
+
+			if(currentJob != null && !currentJob.isDone() && currentParameterValues != null && isSameCalculation(currentParameterValues, parameterValues)) {
+				/*
+				 * Only presentation parameters changed: the running calculation is not cancelled (it reads the presentation
+				 * parameters when publishing). The new calculation shares its token, waits for it and re-uses its memoized stages.
+				 */
+				System.out.println("Presentation changed, continue previous calculation.");
+			}
+			else {
+				// cancel running calculation (the calculation polls the token, the interrupt stops blocking calls)
+				currentCancellationToken.cancel();
+				if (currentJob != null && !currentJob.isDone()) {
+					System.out.println("Cancel previous calculation.");
+					currentJob.cancel(true);
+				}
+				currentCancellationToken = new CancellationToken();
+			}
+
+			final CancellationToken cancellationToken = currentCancellationToken;
+			final long request = ++currentRequest;
+			currentParameterValues = parameterValues;
+
+			currentJob = scheduler.submit(ComputeScheduler.Priority.VISIBLE, cancellationToken, () -> runRefinement(parameterValues, 0, requestNanos, cancellationToken, request));
 		}
+	}
 
-		BooleanSupplier isCancelled = () -> taskEpoch < currentEpoch.get();
-		
-		Task<Double> task = new Task<>() {
-			@Override
-			protected Double call() throws Exception {
-				runCalculation(isCancelled);
-				return 0.0;
+	/*
+	 * Run the calculation at the given refinement, then submit the next refinement (at lower priority) or,
+	 * after the final one, the speculation, unless a newer request has been made. The calculations of an experiment do not overlap
+	 * (a cancelled calculation may still be finishing when the next one starts).
+	 */
+	private void runRefinement(Map<String, Object> parameterValues, int refinementIndex, long requestNanos, CancellationToken isCancelled, long request) {
+		synchronized (runLock) {
+			if(isCancelled.getAsBoolean()) return;
+			final Refinement refinement = Refinement.values()[refinementIndex];
+			calculationThread = Thread.currentThread();
+			metrics.setStage(refinement.toString());
+			metrics.setProgress(0.0);
+			final long timeStart = System.currentTimeMillis();
+			try {
+				runCalculation(parameterValues, refinement, isCancelled);
+			}
+			catch(final CancellationException e) {
+				// Thrown by a calculation polling the token
+			}
+			finally {
+				calculationThread = null;
+			}
+			final long timeEnd = System.currentTimeMillis();
+			if(!isCancelled.getAsBoolean()) {
+				System.out.println("Calculation (" + refinement + ") took " + (timeEnd - timeStart) + " ms.");
+				if(refinement == Refinement.FINAL) {
+					calculationTimeMillis = timeEnd - timeStart;
+					metrics.recordCompleted(System.nanoTime() - requestNanos);
+					metrics.setStage("idle");
+					metrics.setProgress(1.0);
+				}
+			}
+			else {
+				metrics.recordCancelled();
+				if(isCancelled.getNanosSinceCancellation() >= 0) {
+					System.out.println("Calculation (" + refinement + ") cancelled; stopped "
+							+ isCancelled.getNanosSinceCancellation() / 1_000_000 + " ms after the cancellation.");
+				}
+			}
+		}
+
+		if(isCancelled.getAsBoolean() || Thread.currentThread().isInterrupted()) return;
+
+		synchronized (jobLock) {
+			if(isCancelled.getAsBoolean() || request != currentRequest) return;
+			if(refinementIndex+1 < Refinement.values().length) {
+				currentJob = scheduler.submit(ComputeScheduler.Priority.REFINEMENT, isCancelled, () -> runRefinement(parameterValues, refinementIndex+1, requestNanos, isCancelled, request));
+				return;
 			}
-		};
+		}
+		speculate(parameterValues);
+	}
+
+	/*
+	 * Submit the pre-calculation of the neighbouring values (one slider step up and down) of each parameter
+	 * which is not a presentation parameter.
+	 */
+	private void speculate(Map<String, Object> parameterValues) {
+		synchronized (speculations) {
+			speculations.removeIf(speculation -> speculation.future().isDone());
+			for(final Parameter parameter : parameters) {
+				if(parameter instanceof DoubleParameter p && p.getStage() != PipelineStage.PRESENTATION) {
+					final String name = p.getBindableValue().getName();
+					final double value = (Double)parameterValues.get(name);
+					final double lo = Math.min(p.getSpec().min(), p.getSpec().max());
+					final double hi = Math.max(p.getSpec().min(), p.getSpec().max());
+					// The values of the arrow keys (the slider clamps value +/- step) and of a drag by one step (see snapToStep)
+					for(final double neighbour : new double[] { clamp(value - getStep(p), lo, hi), clamp(value + getStep(p), lo, hi) }) {
+						if(neighbour == value) continue;
+						final Map<String, Object> neighbourValues = new LinkedHashMap<>(parameterValues);
+						neighbourValues.put(name, neighbour);
+						final CancellationToken isCancelled = new CancellationToken();
+						speculations.add(new Speculation(neighbourValues, isCancelled,
+								scheduler.submit(ComputeScheduler.Priority.SPECULATION, isCancelled, () -> prefetch(neighbourValues, isCancelled))));
+					}
+				}
+			}
+		}
+	}
+
+	private void cancelSpeculation() {
+		cancelSpeculation(null);
+	}
+
+	/*
+	 * Cancel the speculations, except the one for the given parameter values (null to cancel all).
+	 * Presentation parameters are ignored in the comparison.
+	 */
+	private void cancelSpeculation(Map<String, Object> parameterValuesToKeep) {
+		synchronized (speculations) {
+			speculations.removeIf(speculation -> {
+				if(speculation.future().isDone()) return true;
+				if(parameterValuesToKeep != null && isSameCalculation(speculation.parameterValues(), parameterValuesToKeep)) return false;
+				speculation.cancellationToken().cancel();
+				speculation.future().cancel(true);
+				return true;
+			});
+		}
+	}
+
+	private boolean isSameCalculation(Map<String, Object> parameterValues, Map<String, Object> otherParameterValues) {
+		for(final Parameter parameter : parameters) {
+			final String name = parameter.getBindableValue().getName();
+			if(parameter.getStage() != PipelineStage.PRESENTATION && !Objects.equals(parameterValues.get(name), otherParameterValues.get(name))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * The slider step of a parameter (the block increment used by the keyboard).
+	 */
+	private static double getStep(DoubleParameter parameter) {
+		return Math.abs(parameter.getSpec().max() - parameter.getSpec().min()) / 100.0;
+	}
+
+	/*
+	 * The value rounded to the slider steps from the given anchor (the value at the start of a drag), such that dragging
+	 * by one step gives the value of the speculation (anchor +/- step).
+	 */
+	private static double snapToStep(DoubleParameter parameter, double value, double anchor) {
+		final double lo = Math.min(parameter.getSpec().min(), parameter.getSpec().max());
+		final double hi = Math.max(parameter.getSpec().min(), parameter.getSpec().max());
+		final double step = getStep(parameter);
+		if(step == 0) return value;
+		return clamp(anchor + Math.round((value - anchor) / step) * step, lo, hi);
+	}
+
+	/**
+	 * Returns an estimate of the memory retained by this experiment (its content, chart and memoized results).
+	 * Override to add the memory retained by the experiment itself (e.g. its plot windows).
+	 *
+	 * @return Estimate of the retained memory in bytes.
+	 */
+	public long getEstimatedRetainedSize() {
+		long size = content != null ? estimatedSizeOfContent : 0;
+		if(chart instanceof CanvasChart canvasChart) {
+			size += (long)(canvasChart.getWidth() * canvasChart.getHeight()) * 4;
+		}
+		synchronized (memoizedResults) {
+			size += memoizedResults.size() * estimatedSizeOfMemoizedResult;
+		}
+		return size;
+	}
 
-		currentJob = pool.submit(task);
+	/**
+	 * Returns an estimate of the cost to re-create this experiment's result, i.e. the wall time of its last final calculation.
+	 *
+	 * @return Estimate of the recomputation cost in milliseconds.
+	 */
+	public double getEstimatedRecomputationCost() {
+		return calculationTimeMillis;
+	}
+
+	/**
+	 * Release memory which can be recomputed (the memoized results) and stop the background activity of the experiment
+	 * (speculations, refresh of the performance panel). Called if the experiment is no longer shown and memory is scarce;
+	 * afterwards the experiment must not be reachable from running threads, such that the garbage collector may reclaim it
+	 * without {@link #dispose()}. Override to release the plot windows and stop the rendering (re-created by the next calculation).
+	 */
+	public void releaseMemory() {
+		cancelSpeculation();
+		if(metricsPanel != null) metricsPanel.setExpanded(false);
+		synchronized (memoizedResults) {
+			memoizedResults.clear();
+		}
 	}
 
 	public List<Parameter> getExperimentParameters() {
 		return parameters;
 	}
 
+	/**
+	 * @return The current values of the parameters (name to value, in the order of the parameters).
+	 */
+	public Map<String, Object> getParameterValues() {
+		final Map<String, Object> parameterValues = new LinkedHashMap<>();
+		for(final Parameter parameter : parameters) {
+			parameterValues.put(parameter.getBindableValue().getName(), parameter.getBindableValue().getValue());
+		}
+		return parameterValues;
+	}
+
+	/**
+	 * Returns the value of a presentation parameter to be used when publishing a result: the value of the most recent request,
+	 * since a running calculation is not restarted if only presentation parameters change.
+	 *
+	 * @param parameterValues The values of the parameters of the calculation (used if there has been no request, e.g. headless).
+	 * @param name The name of the parameter.
+	 * @return The value of the parameter.
+	 */
+	protected Object getPresentationValue(Map<String, Object> parameterValues, String name) {
+		final Map<String, Object> latestParameterValues = this.latestParameterValues;
+		return latestParameterValues != null && latestParameterValues.containsKey(name) ? latestParameterValues.get(name) : parameterValues.get(name);
+	}
+
 	/*
 	 * UI Part
 	 */
@@ -144,6 +614,10 @@ public abstract class ExperimentUI extends Application {
 		grid.setVgap(10);
 		grid.setPadding(new Insets(16));
 
+		// Berechnungs-Trigger (entprellt auf 300 ms nach letzter Änderung)
+		debounce = new PauseTransition(Duration.millis(300));
+		debounce.setOnFinished(e -> runCalculationAsync());
+
 		// Headder
 		addHeader(grid);
 
@@ -152,9 +626,6 @@ public abstract class ExperimentUI extends Application {
 			addParameterRow(grid, parameterIndex+1, parameters.get(parameterIndex));
 		}
 
-		// Berechnungs-Trigger (entprellt auf 300 ms nach letzter Änderung)
-		debounce.setOnFinished(e -> runCalculationAsync());
-
 		// Buttons
 		HBox buttons = new HBox(10);
 		Button btnReset = new Button("Reset");
@@ -167,14 +638,65 @@ public abstract class ExperimentUI extends Application {
 		VBox vbox = new VBox(12, grid, buttons);
 		vbox.setPadding(new Insets(14));
 
-		TitledPane content = new TitledPane(getTitle(), vbox);
-		content.setCollapsible(false);
-		content.setAnimated(false);
-		content.setMaxWidth(Double.MAX_VALUE);
+		// Performance panel (collapsed)
+		metricsPanel = new MetricsPanel(metrics);
+		vbox.getChildren().add(metricsPanel);
+
+		// Embedded chart (optional)
+		chart = createChart();
+		if(chart != null) {
+			vbox.getChildren().add(chart);
+			VBox.setVgrow(chart, Priority.ALWAYS);
+		}
+
+		TitledPane titledPane = new TitledPane(getTitle(), vbox);
+		titledPane.setCollapsible(false);
+		titledPane.setAnimated(false);
+		titledPane.setMaxWidth(Double.MAX_VALUE);
 
+		// First calculation once the content is visible
+		new FirstCalculation(titledPane);
+
+		content = titledPane;
 		return content;
 	}
 
+	/*
+	 * Runs the first calculation once the content is showing, i.e., it is part of a scene whose window is showing.
+	 * Follows the scene and the window of the content until then.
+	 */
+	private final class FirstCalculation implements InvalidationListener {
+		private final Node node;
+		private Scene scene;
+		private Window window;
+
+		FirstCalculation(Node node) {
+			this.node = node;
+			node.sceneProperty().addListener(this);
+			invalidated(null);
+		}
+
+		@Override
+		public void invalidated(Observable observable) {
+			if(scene != null) scene.windowProperty().removeListener(this);
+			if(window != null) window.showingProperty().removeListener(this);
+
+			scene = node.getScene();
+			window = scene != null ? scene.getWindow() : null;
+
+			if(window != null && window.isShowing()) {
+				node.sceneProperty().removeListener(this);
+				scene = null;
+				window = null;
+				runCalculationAsync();
+				return;
+			}
+
+			if(scene != null) scene.windowProperty().addListener(this);
+			if(window != null) window.showingProperty().addListener(this);
+		}
+	}
+
 	/**
 	 * Add a header row to the grid
 	 * 
@@ -224,7 +746,7 @@ public abstract class ExperimentUI extends Application {
 			slider.setShowTickMarks(true);
 			slider.setMajorTickUnit((hi - lo) / 4.0);
 			slider.setMinorTickCount(4);
-			slider.setBlockIncrement((hi - lo) / 100.0);
+			slider.setBlockIncrement(getStep(p));
 
 			TextField valueField = new TextField(df.format(value.get()));
 			valueField.setPrefColumnCount(8);
@@ -241,6 +763,18 @@ public abstract class ExperimentUI extends Application {
 			// Property <-> Slider (bleibt Quelle der Wahrheit)
 			value.bindBidirectional(slider.valueProperty());
 
+			// Beim Ziehen auf Schritte ab dem Startwert runden (typed values and arrow keys are not changed), see snapToStep
+			final double[] dragStart = { value.get() };
+			slider.valueChangingProperty().addListener((obs, wasChanging, isChanging) -> {
+				if(isChanging) dragStart[0] = slider.getValue();
+			});
+			slider.valueProperty().addListener((obs, oldV, newV) -> {
+				if(slider.isValueChanging()) {
+					final double snapped = snapToStep(p, newV.doubleValue(), dragStart[0]);
+					if(snapped != newV.doubleValue()) slider.setValue(snapped);
+				}
+			});
+
 			// Änderungen entprellt berechnen
 			slider.valueProperty().addListener((obs, oldV, newV) -> debounce.playFromStart());
 			valueField.setOnAction(e -> debounce.playFromStart());
@@ -38,74 +38,15 @@ public class ExperimentsTree extends Application {
 	 */
 	class ExperimentApplication {
 
-		private static final int maxCacheDepth = 9;
-
 		/**
-		 * LRU-Cache (accessOrder=true)
+		 * Cache weighted by the estimated memory of the experiments
 		 */
-		private static final LinkedHashMap<String, ExperimentUI> cache =
-				new LinkedHashMap<String, ExperimentUI>(16, 0.75f, true) {
-			private static final long serialVersionUID = 1L;
-
-			private void close(ExperimentUI experimentUI) {
-				if (experimentUI == null) return;
-				try {
-					experimentUI.dispose(); 
-				} catch (Exception ignore) { /* no-op */ }
-			}
-
-			@Override
-			protected boolean removeEldestEntry(Map.Entry<String, ExperimentUI> eldest) {
-				if (size() > maxCacheDepth) {
-					close(eldest.getValue());
-					return true;
-				}
-				return false;
-			}
-
-			@Override
-			public ExperimentUI remove(Object key) {
-				ExperimentUI prev = super.remove(key);
-				close(prev);
-				return prev;
-			}
-
-			@Override
-			public boolean remove(Object key, Object value) {
-				boolean removed = super.remove(key, value);
-				if (removed && value instanceof ExperimentUI ui) close(ui);
-				return removed;
-			}
-
-			@Override
-			public void clear() {
-				// alle noch vorhandenen schließen
-				for (ExperimentUI ui : values()) close(ui);
-				super.clear();
-			}
-
-			@Override
-			public ExperimentUI put(String key, ExperimentUI value) {
-				// Ersatz eines bestehenden Eintrags -> alten schließen
-				ExperimentUI old = super.put(key, value);
-				if (old != null && old != value) close(old);
-				return old;
-			}
-
-			@Override
-			public void putAll(Map<? extends String, ? extends ExperimentUI> m) {
-				// optional: sauberes Schließen bei Ersetzungen in bulk
-				for (Map.Entry<? extends String, ? extends ExperimentUI> e : m.entrySet()) {
-					ExperimentUI old = super.put(e.getKey(), e.getValue());
-					if (old != null && old != e.getValue()) close(old);
-				}
-			}
-		};
+		private static final ExperimentCache cache = new ExperimentCache();
 
 		/** Factory */
 		private final Supplier<ExperimentUI> factory;
 
-		/** Cache weight - currently only 0 = no caching and > 0 caching */
+		/** Cache weight - 0 = no caching and > 0 caching (bounded by the memory budget of the cache) */
 		private final int cacheDepth;
 
 		public ExperimentApplication(Supplier<ExperimentUI> factory, int cacheDepth) {
@@ -117,7 +58,7 @@ public class ExperimentsTree extends Application {
 			ExperimentUI experiment = cache.get(name);
 			if (experiment == null) {
 				experiment = factory.get();
-				if (cacheDepth > 0) cache.put(name, experiment); // kann Eviction triggern -> dispose() passiert oben
+				if (cacheDepth > 0) cache.put(name, experiment); // kann Eviction triggern -> dispose() im Cache
 			}
 			return experiment.getContent();
 		}
@@ -168,6 +109,15 @@ public class ExperimentsTree extends Application {
 		return m;
 	}
 
+	/*
+	 * Startup timing (time since class initialisation)
+	 */
+	private static final long timeStartNanos = System.nanoTime();
+
+	private static void logPhase(String phase) {
+		System.out.println(String.format("Startup: %-32s %6d ms", phase, (System.nanoTime() - timeStartNanos) / 1_000_000));
+	}
+
 	private final BorderPane root = new BorderPane();
 	private final StackPane contentPane = new StackPane(new Label("Main Content"));
 
@@ -176,6 +126,8 @@ public class ExperimentsTree extends Application {
 
 	@Override
 	public void start(Stage stage) {
+		logPhase("toolkit started");
+
 		// Tree links
 		TreeItem<Entry> rootItem = toTree("ROOT", model);
 		TreeView<Entry> tree = new TreeView<>(rootItem);
@@ -198,15 +150,22 @@ public class ExperimentsTree extends Application {
 		tree.setMinWidth(300);
 		tree.setMaxWidth(600);
 
-		// Select default (first child)
+		// Select the experiment of the last session (if any), otherwise the default (first child)
 		javafx.application.Platform.runLater(() -> {
+			TreeItem<Entry> restoredItem = findItem(rootItem, prefs.get("selection.path", null));
 			TreeItem<Entry> defaultItem = rootItem.getChildren().isEmpty() ? null : rootItem.getChildren().get(0);
-			while(!defaultItem.getChildren().isEmpty()) defaultItem = defaultItem.getChildren().get(0);
+			while(defaultItem != null && !defaultItem.getChildren().isEmpty()) defaultItem = defaultItem.getChildren().get(0);
+			if(restoredItem != null) defaultItem = restoredItem;
 			if (defaultItem != null) {
 				tree.getSelectionModel().select(defaultItem);
 				tree.getFocusModel().focus(tree.getRow(defaultItem));
 				tree.scrollTo(tree.getRow(defaultItem));
 			}
+			if(restoredItem != null) {
+				// The first calculation starts once the content is showing
+				runIfLeaf(restoredItem, stage);
+				logPhase("restored " + pathFor(restoredItem));
+			}
 		});		
 
 		SplitPane splitPane = new SplitPane(tree, contentPane);
@@ -227,12 +186,20 @@ public class ExperimentsTree extends Application {
 		stage.setScene(scene);
 		stage.setTitle("finmath Numerical Experiments");
 
+		logPhase("scene created");
+
 		stage.show();
+		logPhase("stage shown");
+
+		// Let the JIT compile the models and optimizers while the user looks at the tree
+		WarmUp.start(ComputeScheduler.getInstance());
 	}
 
 	@Override
 	public void stop() {
+		System.out.println(ExperimentApplication.cache.getStatistics());
 		ExperimentApplication.cache.clear();
+		System.out.println(ComputeScheduler.getInstance());
 	}
 
 	/**
@@ -256,6 +223,7 @@ public class ExperimentsTree extends Application {
 				String key = pathFor(item);				// unique name of the experiment
 				Parent content = exp.getView(key);		// take content from cache or build it
 				showInCenter(content);
+				Preferences.userNodeForPackage(ExperimentsTree.class).put("selection.path", key);
 			}
 			else if (payload instanceof Supplier<?> s) {
 				Object obj = s.get();
@@ -296,6 +264,16 @@ public class ExperimentsTree extends Application {
 		return String.join("/", parts);
 	}
 
+	private TreeItem<Entry> findItem(TreeItem<Entry> item, String path) {
+		if(path == null) return null;
+		if(item.getChildren().isEmpty()) return path.equals(pathFor(item)) ? item : null;
+		for(TreeItem<Entry> child : item.getChildren()) {
+			TreeItem<Entry> found = findItem(child, path);
+			if(found != null) return found;
+		}
+		return null;
+	}
+
 	private void showInCenter(Parent content) {
 		contentPane.getChildren().setAll(content);
 		StackPane.setMargin(content, new javafx.geometry.Insets(8));
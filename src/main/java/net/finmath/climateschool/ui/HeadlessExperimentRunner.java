@@ -0,0 +1,157 @@
+package net.finmath.climateschool.ui;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.finmath.climateschool.ui.parameter.BooleanParameter;
+import net.finmath.climateschool.ui.parameter.DoubleParameter;
+import net.finmath.climateschool.ui.parameter.Parameter;
+
+/**
+ * Runs the calculation of an {@link ExperimentUI} without JavaFX toolkit and windows, e.g. to benchmark or load-test
+ * the calculations of the experiments on machines without display.
+ *
+ * The calculation is run on the calling thread, for each {@link Refinement} (as in the UI),
+ * and the results are passed to a {@link PlotSink} instead of the plots.
+ *
+ * Usage:
+ * <pre>
+ * java net.finmath.climateschool.ui.HeadlessExperimentRunner DICEAbatementTimeExperimentUI "Abatement Max Time=80" --repetitions=5
+ * </pre>
+ *
+ * @author Christian Fries
+ */
+public class HeadlessExperimentRunner {
+
+	/**
+	 * Report of a headless run.
+	 *
+	 * @param title The title of the experiment.
+	 * @param parameterValues The values of the parameters used.
+	 * @param wallTimeMillis The wall time of the calculation for each refinement (in milliseconds).
+	 * @param numberOfResults The number of results published to the plot sink.
+	 */
+	public record Report(String title, Map<String, Object> parameterValues, Map<Refinement, Long> wallTimeMillis, int numberOfResults) {
+
+		/**
+		 * @return The total wall time (in milliseconds).
+		 */
+		public long totalWallTimeMillis() {
+			return wallTimeMillis.values().stream().mapToLong(Long::longValue).sum();
+		}
+
+		@Override
+		public String toString() {
+			return title + " " + parameterValues + ": " + wallTimeMillis + " ms (total " + totalWallTimeMillis() + " ms), " + numberOfResults + " results.";
+		}
+	}
+
+	private HeadlessExperimentRunner() {}
+
+	/**
+	 * Run the calculation of the experiment for the given parameters.
+	 * Parameters not given use the initial values of the experiment. Memoized results of previous runs are re-used
+	 * (call {@link ExperimentUI#releaseMemory()} to measure a cold calculation).
+	 *
+	 * @param experiment The experiment.
+	 * @param parameterValues The values of the parameters (name to value); may be a subset of the experiment parameters.
+	 * @param plotSink The plot sink receiving the results.
+	 * @return The report.
+	 * @throws IllegalArgumentException Thrown if a parameter is not a parameter of the experiment.
+	 */
+	public static Report run(ExperimentUI experiment, Map<String, Object> parameterValues, PlotSink plotSink) {
+		final Map<String, Object> values = experiment.getParameterValues();
+		for(final Map.Entry<String, Object> entry : parameterValues.entrySet()) {
+			if(!values.containsKey(entry.getKey())) {
+				throw new IllegalArgumentException("Unknown parameter '" + entry.getKey() + "'. Parameters are " + values.keySet() + ".");
+			}
+			values.put(entry.getKey(), entry.getValue());
+		}
+
+		final int[] numberOfResults = new int[1];
+		experiment.setPlotSink(result -> {
+			synchronized (numberOfResults) {
+				numberOfResults[0]++;
+			}
+			plotSink.accept(result);
+		});
+
+		final Map<Refinement, Long> wallTimeMillis = new EnumMap<>(Refinement.class);
+		try {
+			for(final Refinement refinement : Refinement.values()) {
+				final long timeStart = System.nanoTime();
+				experiment.runCalculation(values, refinement, () -> false);
+				final long timeEnd = System.nanoTime();
+				wallTimeMillis.put(refinement, (timeEnd - timeStart) / 1_000_000);
+			}
+		}
+		finally {
+			experiment.setPlotSink(null);
+		}
+
+		synchronized (numberOfResults) {
+			return new Report(experiment.getTitle(), values, wallTimeMillis, numberOfResults[0]);
+		}
+	}
+
+	/**
+	 * Run an experiment from the command line.
+	 *
+	 * @param args The class name of the experiment (simple name for the experiments of this package), followed by
+	 * 		parameters given as <code>name=value</code> and the option <code>--repetitions=n</code> (default 1).
+	 * @throws Exception Thrown if the experiment cannot be created.
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length < 1) {
+			System.out.println("Usage: HeadlessExperimentRunner <experiment class> [name=value ...] [--repetitions=n]");
+			return;
+		}
+
+		System.setProperty("java.awt.headless", "true");
+
+		final String className = args[0].contains(".") ? args[0] : HeadlessExperimentRunner.class.getPackageName() + "." + args[0];
+		final ExperimentUI experiment = (ExperimentUI)Class.forName(className).getDeclaredConstructor().newInstance();
+
+		int numberOfRepetitions = 1;
+		final Map<String, Object> parameterValues = new LinkedHashMap<>();
+		for(final String argument : Arrays.asList(args).subList(1, args.length)) {
+			if(argument.startsWith("--repetitions=")) {
+				numberOfRepetitions = Integer.parseInt(argument.substring("--repetitions=".length()));
+				continue;
+			}
+			final int separator = argument.indexOf('=');
+			if(separator < 0) {
+				throw new IllegalArgumentException("Expected name=value, got '" + argument + "'.");
+			}
+			final String name = argument.substring(0, separator).trim();
+			parameterValues.put(name, parseValue(experiment.getExperimentParameters(), name, argument.substring(separator+1).trim()));
+		}
+
+		final RecordingPlotSink plotSink = new RecordingPlotSink();
+		try {
+			for(int repetition=0; repetition<numberOfRepetitions; repetition++) {
+				experiment.releaseMemory();
+				plotSink.clear();
+				System.out.println("Run " + (repetition+1) + ": " + run(experiment, parameterValues, plotSink));
+			}
+			final Object result = plotSink.getLastResult();
+			System.out.println("Last result: " + (result != null ? result.getClass().getSimpleName() : "none"));
+		}
+		finally {
+			experiment.dispose();
+		}
+	}
+
+	private static Object parseValue(List<Parameter> parameters, String name, String value) {
+		for(final Parameter parameter : parameters) {
+			if(parameter.getBindableValue().getName().equals(name)) {
+				if(parameter instanceof DoubleParameter) return Double.valueOf(value);
+				if(parameter instanceof BooleanParameter) return Boolean.valueOf(value);
+			}
+		}
+		throw new IllegalArgumentException("Unknown parameter '" + name + "'.");
+	}
+}
@@ -1,7 +1,5 @@
 package net.finmath.climateschool.ui;
 
-import java.awt.BasicStroke;
-import java.awt.Rectangle;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -11,18 +9,14 @@ import java.util.function.BooleanSupplier;
 import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
 import net.finmath.climateschool.utilities.ModelFactory;
 import net.finmath.climateschool.utilities.RandomOperators;
 import net.finmath.climateschool.ui.parameter.DoubleParameter;
 import net.finmath.montecarlo.interestrate.TermStructureMonteCarloSimulationModel;
 import net.finmath.plots.DoubleToRandomVariableFunction;
-import net.finmath.plots.GraphStyle;
-import net.finmath.plots.Plot2D;
-import net.finmath.plots.Plotable2D;
-import net.finmath.plots.PlotablePoints2D;
-import net.finmath.plots.Point2D;
 import net.finmath.stochastic.RandomOperator;
 import net.finmath.stochastic.RandomVariable;
 import net.finmath.stochastic.Scalar;
@@ -37,7 +31,18 @@ public class InterestRatesHullWhiteSimulationPathOfShortRate extends ExperimentU
 	private final DecimalFormat numberDigit3 = new DecimalFormat("#.000");
 	private final DecimalFormat numberPercent2 = new DecimalFormat("#.00%");
 
-	Plot2D plot = null;
+	private static final int numberOfPathsToShow = 50;
+
+	private volatile CanvasChart chart = null;
+
+	/**
+	 * The result of the calculation: the paths of the short rate shown in the chart.
+	 *
+	 * @param times The times.
+	 * @param values The values of the short rate (path, time index).
+	 * @param titleSpec The specification shown in the title of the chart.
+	 */
+	public record ShortRatePaths(double[] times, double[][] values, String titleSpec) {}
 
 	public InterestRatesHullWhiteSimulationPathOfShortRate() {
 		super(List.of(
@@ -51,9 +56,18 @@ public class InterestRatesHullWhiteSimulationPathOfShortRate extends ExperimentU
 
 	public String getTitle() { return "Hull White Model - Simulation of Interest Rate (Short Rate)"; }
 
-	public void runCalculation(BooleanSupplier isCancelled) {
-		Map<String, Object> currentParameterSet = getExperimentParameters().stream().collect(Collectors.toMap(p -> p.getBindableValue().getName(), p -> p.getBindableValue().getValue()));
+	@Override
+	protected Node createChart() {
+		final CanvasChart chart = new CanvasChart();
+		for(int i=0; i<numberOfPathsToShow; i++) {
+			chart.addSeries(Color.hsb(360.0 * i / numberOfPathsToShow, 0.8, 0.8), CanvasChart.Style.DOTS, 1.5);
+		}
+		chart.setYRange(-0.02, 0.10).setXAxisLabel("time (years)").setYAxisLabel("Short Rate (r)").setTitle("Short Rate");
+		this.chart = chart;
+		return chart;
+	}
 
+	public void runCalculation(Map<String, Object> currentParameterSet, BooleanSupplier isCancelled) {
 		System.out.println("Calculation with Parameters: " + currentParameterSet);
 
 		double shortRateInitialValue = (Double)currentParameterSet.get("Initial Value");
@@ -98,8 +112,7 @@ public class InterestRatesHullWhiteSimulationPathOfShortRate extends ExperimentU
 				+String.format("%-10.3f",shortRateMeanreversion*100).trim() + "%, "
 				+ "";
 
-		int dotSize = 1;
-		int numberOfPathsToShow = 50;
+		getMetrics().recordEvaluation();
 
 		List<RandomVariable> valueSlices = new ArrayList<RandomVariable>();
 		for(int j=0; j<timeDiscretization.getNumberOfTimes()-1; j++) {
@@ -111,40 +124,29 @@ public class InterestRatesHullWhiteSimulationPathOfShortRate extends ExperimentU
 			}
 		}
 
-		List<Plotable2D> plotables = new ArrayList<Plotable2D>();
-		for(int i=0; i<numberOfPathsToShow; i++) {
-			final List<Point2D> series = new ArrayList<Point2D>();
-			for(int j=0; j<timeDiscretization.getNumberOfTimes()-1; j++) {
-				double time = timeDiscretization.getTime(j);
-				series.add(new Point2D(time, valueSlices.get(j).get(i)));
+		if(!Thread.currentThread().isInterrupted() && !isCancelled.getAsBoolean()) {
+			final double[] times = new double[valueSlices.size()];
+			final double[][] values = new double[numberOfPathsToShow][valueSlices.size()];
+			for(int j=0; j<times.length; j++) {
+				times[j] = timeDiscretization.getTime(j);
 			}
-			plotables.add(new PlotablePoints2D("Scatter", series, new GraphStyle(new Rectangle(dotSize, dotSize), new BasicStroke(), null)));
-		}
-
-		synchronized(this) {
-			if(!Thread.currentThread().isInterrupted() && !isCancelled.getAsBoolean()) {
-				if(plot == null) {
-					plot = new Plot2D(plotables);
-					plot.setTitle("Short Rate (" + titleSpec + ")").setXAxisLabel("time (years)").setYAxisLabel("Short Rate (r)");
-					plot.setYRange(-0.02, 0.10);
-					plot.show();
-				}
-				else {
-					plot.update(plotables);
+			for(int i=0; i<numberOfPathsToShow; i++) {
+				for(int j=0; j<times.length; j++) {
+					values[i][j] = valueSlices.get(j).get(i);
 				}
 			}
+			publish(new ShortRatePaths(times, values, titleSpec));
 		}
 	}
 
 	@Override
-	protected void onClose() {
-		synchronized (this) {
-			super.onClose();
-			System.out.println("Closing plot");
-			if(plot != null) {
-				plot.close();
-				plot = null;
+	protected void render(Object result) {
+		final CanvasChart chart = this.chart;
+		if(chart != null && result instanceof ShortRatePaths paths) {
+			for(int i=0; i<paths.values().length; i++) {
+				chart.setData(i, paths.times(), paths.values()[i]);
 			}
+			chart.setTitle("Short Rate (" + paths.titleSpec() + ")");
 		}
 	}
 }
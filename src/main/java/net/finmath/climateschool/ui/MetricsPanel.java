@@ -0,0 +1,124 @@
+package net.finmath.climateschool.ui;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.TitledPane;
+import javafx.scene.layout.GridPane;
+import javafx.util.Duration;
+
+/**
+ * Panel showing the {@link MetricsRegistry} of an experiment: stage and progress of the calculation, evaluations per second,
+ * latency (last, p50, p99), completed and cancelled calculations, heap usage and allocation rate.
+ *
+ * The panel is a collapsible pane (collapsed by default). It refreshes twice per second while it is expanded;
+ * if it is collapsed, it does not poll the registry.
+ *
+ * @author Christian Fries
+ */
+public class MetricsPanel extends TitledPane {
+
+	private final MetricsRegistry metrics;
+	private final Timeline refresh;
+
+	private final Label stage = new Label();
+	private final ProgressBar progress = new ProgressBar(0);
+	private final Label evaluationsPerSecond = new Label();
+	private final Label latency = new Label();
+	private final Label runs = new Label();
+	private final Label heap = new Label();
+
+	// Values of the previous refresh (for the rates)
+	private long lastRefreshNanos = System.nanoTime();
+	private long lastNumberOfEvaluations;
+	private long lastAllocatedBytes = getAllocatedBytes();
+
+	public MetricsPanel(MetricsRegistry metrics) {
+		this.metrics = metrics;
+
+		final GridPane grid = new GridPane();
+		grid.setHgap(12);
+		grid.setVgap(4);
+		grid.addRow(0, new Label("Stage"), stage, progress);
+		grid.addRow(1, new Label("Evaluations"), evaluationsPerSecond);
+		grid.addRow(2, new Label("Latency"), latency);
+		grid.addRow(3, new Label("Runs"), runs);
+		grid.addRow(4, new Label("Heap"), heap);
+
+		setText("Performance");
+		setContent(grid);
+		setExpanded(false);
+
+		refresh = new Timeline(new KeyFrame(Duration.millis(500), e -> refresh()));
+		refresh.setCycleCount(Animation.INDEFINITE);
+		expandedProperty().addListener((obs, wasExpanded, isExpanded) -> {
+			if(isExpanded) {
+				lastRefreshNanos = System.nanoTime();
+				lastNumberOfEvaluations = metrics.getNumberOfEvaluations();
+				lastAllocatedBytes = getAllocatedBytes();
+				refresh();
+				refresh.play();
+			}
+			else {
+				refresh.stop();
+			}
+		});
+	}
+
+	/**
+	 * Stop refreshing (called when the experiment is closed).
+	 */
+	public void stop() {
+		refresh.stop();
+	}
+
+	private void refresh() {
+		final long now = System.nanoTime();
+		final double seconds = Math.max(now - lastRefreshNanos, 1) / 1E9;
+
+		stage.setText(metrics.getStage());
+		progress.setProgress(metrics.getProgress());
+
+		final long numberOfEvaluations = metrics.getNumberOfEvaluations();
+		evaluationsPerSecond.setText(String.format("%.1f / s (total %d)", (numberOfEvaluations - lastNumberOfEvaluations) / seconds, numberOfEvaluations));
+
+		latency.setText(String.format("last %s, p50 %s, p99 %s",
+				formatMillis(metrics.getLastLatencyNanos()), formatMillis(metrics.getLatencyQuantileNanos(0.50)), formatMillis(metrics.getLatencyQuantileNanos(0.99))));
+
+		runs.setText(String.format("%d completed, %d cancelled", metrics.getNumberOfCompleted(), metrics.getNumberOfCancelled()));
+
+		final MemoryUsage heapUsage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		final long allocatedBytes = getAllocatedBytes();
+		final String allocationRate = allocatedBytes >= 0 && lastAllocatedBytes >= 0 ?
+				String.format("%.1f MB/s", Math.max(allocatedBytes - lastAllocatedBytes, 0) / seconds / (1 << 20)) : "n/a";
+		heap.setText(String.format("%d / %d MB, allocation %s",
+				heapUsage.getUsed() >> 20, (heapUsage.getMax() > 0 ? heapUsage.getMax() : heapUsage.getCommitted()) >> 20, allocationRate));
+
+		lastRefreshNanos = now;
+		lastNumberOfEvaluations = numberOfEvaluations;
+		lastAllocatedBytes = allocatedBytes;
+	}
+
+	private static String formatMillis(long nanos) {
+		return nanos >= 0 ? String.format("%.0f ms", nanos / 1E6) : "-";
+	}
+
+	/*
+	 * The bytes allocated by all live threads (-1 if not supported by the JVM).
+	 */
+	private static long getAllocatedBytes() {
+		if(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadMXBean && threadMXBean.isThreadAllocatedMemoryEnabled()) {
+			long allocatedBytes = 0;
+			for(final long allocatedBytesOfThread : threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+				if(allocatedBytesOfThread > 0) allocatedBytes += allocatedBytesOfThread;
+			}
+			return allocatedBytes;
+		}
+		return -1;
+	}
+}
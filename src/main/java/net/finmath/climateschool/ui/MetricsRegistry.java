@@ -0,0 +1,142 @@
+package net.finmath.climateschool.ui;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the calculations of an experiment, shown by the {@link MetricsPanel}.
+ *
+ * The registry is lock-free: the calculation threads update counters ({@link LongAdder}), volatile fields and a
+ * logarithmic latency histogram, the panel reads them when it refreshes. Updating the registry is cheap enough to be
+ * done unconditionally (also if the panel is hidden).
+ *
+ * @author Christian Fries
+ */
+public class MetricsRegistry {
+
+	/*
+	 * Latency histogram: four linear sub-buckets per power of two (nanoseconds), i.e., a relative resolution of 25%.
+	 */
+	private static final int subBucketBits = 2;
+	private static final int numberOfSubBuckets = 1 << subBucketBits;
+	private final AtomicLongArray latencyHistogram = new AtomicLongArray(64 * numberOfSubBuckets);
+	private final LongAdder numberOfLatencies = new LongAdder();
+
+	private final LongAdder evaluations = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder cancelled = new LongAdder();
+
+	private volatile String stage = "idle";
+	private volatile double progress = 0.0;
+	private volatile long lastLatencyNanos = -1;
+
+	/**
+	 * Set the current stage of the calculation (e.g. "FINAL / CALIBRATION").
+	 *
+	 * @param stage The stage.
+	 */
+	public void setStage(String stage) {
+		this.stage = stage;
+	}
+
+	public String getStage() {
+		return stage;
+	}
+
+	/**
+	 * Set the progress of the current stage.
+	 *
+	 * @param progress The progress, a value in [0, 1].
+	 */
+	public void setProgress(double progress) {
+		this.progress = progress;
+	}
+
+	public double getProgress() {
+		return progress;
+	}
+
+	/**
+	 * Record an evaluation of the objective function (or the model).
+	 */
+	public void recordEvaluation() {
+		evaluations.increment();
+	}
+
+	/**
+	 * @return The number of evaluations recorded.
+	 */
+	public long getNumberOfEvaluations() {
+		return evaluations.sum();
+	}
+
+	/**
+	 * Record a completed calculation.
+	 *
+	 * @param latencyNanos The latency (time from the request to the result) in nanoseconds.
+	 */
+	public void recordCompleted(long latencyNanos) {
+		completed.increment();
+		lastLatencyNanos = latencyNanos;
+		latencyHistogram.incrementAndGet(getBucket(latencyNanos));
+		numberOfLatencies.increment();
+	}
+
+	/**
+	 * Record a cancelled calculation.
+	 */
+	public void recordCancelled() {
+		cancelled.increment();
+	}
+
+	public long getNumberOfCompleted() {
+		return completed.sum();
+	}
+
+	public long getNumberOfCancelled() {
+		return cancelled.sum();
+	}
+
+	/**
+	 * @return The latency of the last completed calculation in nanoseconds (-1 if there is none).
+	 */
+	public long getLastLatencyNanos() {
+		return lastLatencyNanos;
+	}
+
+	/**
+	 * Returns the quantile of the latencies of the completed calculations (with a relative resolution of 25%).
+	 *
+	 * @param quantile The quantile, a value in (0, 1).
+	 * @return The quantile of the latencies in nanoseconds (-1 if there is no completed calculation).
+	 */
+	public long getLatencyQuantileNanos(double quantile) {
+		final long count = numberOfLatencies.sum();
+		if(count == 0) return -1;
+
+		final long rank = Math.max(1, (long)Math.ceil(quantile * count));
+		long cumulated = 0;
+		for(int bucket=0; bucket<latencyHistogram.length(); bucket++) {
+			cumulated += latencyHistogram.get(bucket);
+			if(cumulated >= rank) {
+				return (getBucketLowerBound(bucket) + getBucketLowerBound(bucket+1)) / 2;
+			}
+		}
+		// Recorded concurrently with the scan
+		return lastLatencyNanos;
+	}
+
+	private static int getBucket(long nanos) {
+		if(nanos < numberOfSubBuckets) return (int)Math.max(nanos, 0);
+		final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		final int subBucket = (int)(nanos >>> (exponent - subBucketBits)) & (numberOfSubBuckets-1);
+		return (exponent - subBucketBits + 1) * numberOfSubBuckets + subBucket;
+	}
+
+	private static long getBucketLowerBound(int bucket) {
+		if(bucket < numberOfSubBuckets) return bucket;
+		final int exponent = bucket / numberOfSubBuckets + subBucketBits - 1;
+		final long subBucket = bucket % numberOfSubBuckets;
+		return (numberOfSubBuckets + subBucket) << (exponent - subBucketBits);
+	}
+}
@@ -0,0 +1,27 @@
+package net.finmath.climateschool.ui;
+
+/**
+ * Receives the results published by an {@link ExperimentUI} instead of its plots and charts,
+ * e.g., to run the experiment without a display (see {@link HeadlessExperimentRunner}).
+ *
+ * The results are immutable (e.g. a {@link PlotSnapshot}) and may be published from any thread.
+ *
+ * @author Christian Fries
+ */
+@FunctionalInterface
+public interface PlotSink {
+
+	/**
+	 * Accept a result published by the experiment.
+	 *
+	 * @param result The result (the data which would have been plotted).
+	 */
+	void accept(Object result);
+
+	/**
+	 * @return A plot sink which discards all results.
+	 */
+	static PlotSink none() {
+		return result -> {};
+	}
+}
@@ -0,0 +1,25 @@
+package net.finmath.climateschool.ui;
+
+import net.finmath.climateschool.utilities.ClimateModelSnapshot;
+import net.finmath.climateschool.utilities.DICEModelPlots;
+
+/**
+ * Immutable input of the {@link DICEModelPlots}, published by a calculation to a {@link RenderScheduler} (or a {@link PlotSink}).
+ *
+ * @param model The snapshot of the climate model.
+ * @param discountRate The discount rate (used for the cost plots).
+ * @param spec The specification shown in the titles of the plots.
+ * @param isShowCost If true, the cost plots are shown, otherwise they are closed.
+ */
+public record PlotSnapshot(ClimateModelSnapshot model, double discountRate, String spec, boolean isShowCost) {
+
+	void plot(DICEModelPlots plots) {
+		plots.plot(model, spec);
+		if(isShowCost) {
+			plots.plotCost(model, discountRate, spec);
+		}
+		else {
+			plots.closeCost();
+		}
+	}
+}
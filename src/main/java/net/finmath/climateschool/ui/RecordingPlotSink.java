@@ -0,0 +1,37 @@
+package net.finmath.climateschool.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link PlotSink} recording all results published by an experiment.
+ *
+ * @author Christian Fries
+ */
+public class RecordingPlotSink implements PlotSink {
+
+	private final List<Object> results = new ArrayList<>();
+
+	@Override
+	public synchronized void accept(Object result) {
+		results.add(result);
+	}
+
+	/**
+	 * @return The results in the order in which they have been published.
+	 */
+	public synchronized List<Object> getResults() {
+		return List.copyOf(results);
+	}
+
+	/**
+	 * @return The last result published or null if no result has been published.
+	 */
+	public synchronized Object getLastResult() {
+		return results.isEmpty() ? null : results.get(results.size()-1);
+	}
+
+	public synchronized void clear() {
+		results.clear();
+	}
+}
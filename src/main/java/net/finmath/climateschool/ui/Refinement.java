@@ -0,0 +1,14 @@
+package net.finmath.climateschool.ui;
+
+/**
+ * The refinement of an interactive calculation.
+ *
+ * An {@link ExperimentUI} first runs a coarse calculation (e.g. on a coarser time discretization or with a looser
+ * tolerance of the optimizer), shows its result and then refines it in the background.
+ */
+public enum Refinement {
+	/** A fast approximation, shown immediately. */
+	COARSE,
+	/** The final result. */
+	FINAL
+}
@@ -0,0 +1,129 @@
+package net.finmath.climateschool.ui;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Decouples the rendering of results from their calculation.
+ *
+ * The calculation publishes immutable snapshots via {@link #publish(Object)} into a single-slot mailbox.
+ * Publishing is lock-free and never blocks; a newer snapshot replaces an older one which has not been rendered yet
+ * (latest value wins). A dedicated render thread drains the mailbox at the given frame rate and passes the newest
+ * snapshot to the renderer. The render thread is started with the first snapshot. It may be stopped with {@link #stop(Runnable)}
+ * (e.g. while the experiment is not shown, such that it does not keep the renderer reachable) and is started again with the next snapshot.
+ *
+ * @author Christian Fries
+ *
+ * @param <T> The type of the snapshots.
+ */
+public class RenderScheduler<T> implements AutoCloseable {
+
+	private final AtomicReference<T> mailbox = new AtomicReference<>();
+	private final String name;
+	private final Consumer<T> renderer;
+	private final long frameIntervalMillis;
+
+	private ScheduledExecutorService executor;		// the render thread while started (guarded by this)
+	private final AtomicBoolean isStarted = new AtomicBoolean(false);
+	private volatile boolean isClosed = false;
+
+	/**
+	 * Create the render scheduler.
+	 *
+	 * @param name The name of the render thread.
+	 * @param renderer The renderer, called on the render thread with the newest snapshot.
+	 * @param maxFramesPerSecond The maximum number of snapshots rendered per second.
+	 */
+	public RenderScheduler(String name, Consumer<T> renderer, int maxFramesPerSecond) {
+		this.name = name;
+		this.renderer = renderer;
+		this.frameIntervalMillis = Math.max(1, 1000 / maxFramesPerSecond);
+	}
+
+	/**
+	 * Publish a snapshot to be rendered. May be called from any thread, does not block.
+	 *
+	 * @param snapshot The snapshot (must not be modified after publishing).
+	 */
+	public void publish(T snapshot) {
+		if(isClosed) return;
+
+		mailbox.set(snapshot);
+
+		if(!isStarted.get()) {
+			start();
+		}
+	}
+
+	/**
+	 * Stop the render thread. Snapshots not rendered yet are discarded. The render thread is started again with the next snapshot.
+	 *
+	 * @param onStopped Action run after the last rendering (on the render thread, if it was started) (may be null).
+	 */
+	public synchronized void stop(Runnable onStopped) {
+		mailbox.set(null);
+		if(executor == null) {
+			if(onStopped != null) {
+				onStopped.run();
+			}
+			return;
+		}
+
+		try {
+			if(onStopped != null) {
+				executor.execute(onStopped);
+			}
+		}
+		catch(final RejectedExecutionException e) {
+			// Already stopped
+		}
+		executor.shutdown();
+		executor = null;
+		isStarted.set(false);
+	}
+
+	/**
+	 * Stop rendering. Snapshots not rendered yet are discarded.
+	 *
+	 * @param onClosed Action run after the last rendering (on the render thread, if it was started) (may be null).
+	 */
+	public void close(Runnable onClosed) {
+		isClosed = true;
+		stop(onClosed);
+	}
+
+	@Override
+	public void close() {
+		close(null);
+	}
+
+	private synchronized void start() {
+		if(isClosed || isStarted.get()) return;
+
+		executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, name);
+			t.setDaemon(true);
+			return t;
+		});
+		executor.scheduleAtFixedRate(this::drain, 0, frameIntervalMillis, TimeUnit.MILLISECONDS);
+		isStarted.set(true);
+	}
+
+	private void drain() {
+		final T snapshot = mailbox.getAndSet(null);
+		if(snapshot != null && !isClosed) {
+			try {
+				renderer.accept(snapshot);
+			}
+			catch(final RuntimeException e) {
+				// Keep the render thread alive
+				System.out.println("Rendering failed: " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package net.finmath.climateschool.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
+
+import net.finmath.climate.models.ClimateModel;
+import net.finmath.climate.models.dice.DICEModel;
+import net.finmath.climateschool.utilities.AdamOptimizerUsingFiniteDifferences;
+import net.finmath.climateschool.utilities.AdamOptimizerUsingFiniteDifferences.GradientMethod;
+import net.finmath.climateschool.utilities.ClimateModelSnapshot;
+import net.finmath.climateschool.utilities.CostAnalytics;
+import net.finmath.optimizer.GoldenSectionSearch;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.stochastic.Scalar;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Background warm-up of the code paths used by the experiments (DICE model, snapshot, cost analytics and optimizers),
+ * such that the JIT compiler has compiled them when the user requests the first result.
+ *
+ * The warm-up is submitted as many small tasks with {@link ComputeScheduler.Priority#SPECULATION}, hence a calculation
+ * requested by the user is started after at most one of these tasks.
+ * The end of the warm-up is reported when all of its tasks have completed (they run in parallel on the worker threads).
+ *
+ * @author Christian Fries
+ */
+public class WarmUp {
+
+	private static final int numberOfModelEvaluations = 20;
+
+	private WarmUp() {}
+
+	/**
+	 * Submit the warm-up to the scheduler.
+	 *
+	 * @param scheduler The scheduler.
+	 */
+	public static void start(ComputeScheduler scheduler) {
+		final long timeStart = System.currentTimeMillis();
+		final List<CompletableFuture<Void>> tasks = new ArrayList<>();
+		for(int i=0; i<numberOfModelEvaluations; i++) {
+			final double abatementMaxTime = 20.0 + 10.0 * i;
+			tasks.add(submit(scheduler, () -> evaluateModel(abatementMaxTime)));
+		}
+		tasks.add(submit(scheduler, WarmUp::runGoldenSectionSearch));
+		tasks.add(submit(scheduler, WarmUp::runAdamOptimizer));
+		CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new))
+		.thenRun(() -> System.out.println("Warm-up finished after " + (System.currentTimeMillis() - timeStart) + " ms."));
+	}
+
+	/*
+	 * Submit a warm-up task; the returned future completes when the task has run (the tasks are never cancelled).
+	 */
+	private static CompletableFuture<Void> submit(ComputeScheduler scheduler, Runnable task) {
+		final CompletableFuture<Void> completion = new CompletableFuture<>();
+		scheduler.submit(ComputeScheduler.Priority.SPECULATION, () -> false, () -> {
+			try {
+				task.run();
+			}
+			finally {
+				completion.complete(null);
+			}
+		});
+		return completion;
+	}
+
+	private static ClimateModel getModel(TimeDiscretization timeDiscretization, double abatementMaxTime) {
+		final UnaryOperator<Double> abatementFunction = time -> Math.min(0.03 + 0.97/abatementMaxTime * time, 1.0);
+		final UnaryOperator<Double> savingsRateFunction = time -> 0.26;
+		return new DICEModel(timeDiscretization, abatementFunction, savingsRateFunction, 0.03);
+	}
+
+	private static void evaluateModel(double abatementMaxTime) {
+		final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, 500, 1.0);
+		final ClimateModelSnapshot snapshot = ClimateModelSnapshot.of(getModel(timeDiscretization, abatementMaxTime));
+		new CostAnalytics(snapshot, 0.03).getTotalAveragedPerGDP(100);
+	}
+
+	private static void runGoldenSectionSearch() {
+		final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, 50, 10.0);
+		final GoldenSectionSearch optimizer = new GoldenSectionSearch(10.0, 300.0);
+		while(optimizer.getAccuracy() > 1E-2 && !optimizer.isDone()) {
+			optimizer.setValue(-getModel(timeDiscretization, optimizer.getNextPoint()).getValue().expectation().doubleValue());
+		}
+	}
+
+	private static void runAdamOptimizer() {
+		final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, 50, 10.0);
+		final double[] initialParameters = new double[timeDiscretization.getNumberOfTimes()];
+		Arrays.fill(initialParameters, -Math.log(-Math.log(0.8)));
+		final AdamOptimizerUsingFiniteDifferences optimizer = new AdamOptimizerUsingFiniteDifferences(initialParameters, 5, 0.05, GradientMethod.AVERAGE) {
+			@Override
+			public RandomVariable setValue(RandomVariable[] parameters) {
+				final double[] abatement = Arrays.stream(parameters).mapToDouble(RandomVariable::getAverage).map(x -> Math.exp(-Math.exp(-x))).toArray();
+				final UnaryOperator<Double> abatementFunction = time -> abatement[(int)Math.round(time/10.0)];
+				final ClimateModel climateModel = new DICEModel(timeDiscretization, abatementFunction, time -> 0.26, 0.03);
+				return Scalar.of(-climateModel.getValue().expectation().doubleValue());
+			}
+		};
+		optimizer.setVerbose(false);
+		optimizer.run();
+	}
+}
@@ -6,8 +6,12 @@ public class BooleanParameter extends Parameter {
 
 	public static record BooleanParameterSpec(boolean initial) implements ParameterSpec {};
 
+	public BooleanParameter(String name, boolean value, PipelineStage stage) {
+		super(new SimpleBooleanProperty(null, name, value), new BooleanParameterSpec(value), stage);
+	}
+
 	public BooleanParameter(String name, boolean value) {
-		super(new SimpleBooleanProperty(null, name, value), new BooleanParameterSpec(value));
+		this(name, value, PipelineStage.MODEL);
 	}
 
 	public SimpleBooleanProperty getBindableValue() {
@@ -6,8 +6,12 @@ public class DoubleParameter extends Parameter {
 
 	public static record DoubleParameterSpec(double initial, double min, double max) implements ParameterSpec {};
 
+	public DoubleParameter(String name, double value, double min, double max, PipelineStage stage) {
+		super(new SimpleDoubleProperty(null, name, value), new DoubleParameterSpec(value, min,max), stage);
+	}
+
 	public DoubleParameter(String name, double value, double min, double max) {
-		super(new SimpleDoubleProperty(null, name, value), new DoubleParameterSpec(value, min,max));
+		this(name, value, min, max, PipelineStage.MODEL);
 	}
 
 	public SimpleDoubleProperty getBindableValue() {
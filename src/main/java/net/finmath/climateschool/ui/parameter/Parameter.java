@@ -6,11 +6,17 @@ public class Parameter {
 
 	private Property<?> bindableValue;
 	private ParameterSpec spec;
+	private PipelineStage stage;
 
-	public Parameter(Property<?> bindableValue, ParameterSpec spec) {
+	public Parameter(Property<?> bindableValue, ParameterSpec spec, PipelineStage stage) {
 		super();
 		this.bindableValue = bindableValue;
 		this.spec = spec;
+		this.stage = stage;
+	}
+
+	public Parameter(Property<?> bindableValue, ParameterSpec spec) {
+		this(bindableValue, spec, PipelineStage.MODEL);
 	}
 
 	public Property<?> getBindableValue() {
@@ -20,4 +26,11 @@ public class Parameter {
 	public ParameterSpec getSpec() {
 		return spec;
 	}
+
+	/**
+	 * @return The stage of the calculation affected by this parameter.
+	 */
+	public PipelineStage getStage() {
+		return stage;
+	}
 }
\ No newline at end of file
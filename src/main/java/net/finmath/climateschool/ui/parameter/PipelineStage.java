@@ -0,0 +1,16 @@
+package net.finmath.climateschool.ui.parameter;
+
+/**
+ * The stage of the calculation pipeline of an experiment which is affected by a parameter.
+ *
+ * The stages are ordered: a change of a parameter requires to re-execute its stage and all downstream stages,
+ * while the results of the upstream stages can be re-used.
+ */
+public enum PipelineStage {
+	/** The parameter is a parameter of the model (e.g. the discount rate). */
+	MODEL,
+	/** The parameter affects the calibration of the model (e.g. the optimizer), but not the model. */
+	CALIBRATION,
+	/** The parameter only affects the presentation of the results (e.g. which plots are shown). */
+	PRESENTATION
+}
@@ -2,6 +2,7 @@ package net.finmath.climateschool.utilities;
 
 
 import java.util.Arrays;
+import java.util.Map;
 
 import net.finmath.montecarlo.RandomVariableFactory;
 import net.finmath.montecarlo.RandomVariableFromArrayFactory;
@@ -13,7 +14,8 @@ import net.finmath.stochastic.RandomVariable;
  * Implementation of the ADAM optimizer for objective functions (loss functions)
  * that map <code>RandomVariable[]</code> parameters to a <code>RandomVariable</code> value.
  *
- * The gradient is calculated using finite differences.
+ * The gradient is calculated using finite differences, or, for {@link GradientMethod#EXPECTED_SHORTFALL_ADJOINT},
+ * by automatic differentiation (one backward pass).
  *
  * @author Maximilian Singhof
  * @author Chritian Fries
@@ -24,7 +26,14 @@ public abstract class AdamOptimizerUsingFiniteDifferences {
 		COMPLETE,
 		AVERAGE,
 		VALUE_AT_RISK,
-		EXPECTED_SHORTFALL
+		EXPECTED_SHORTFALL,
+		/**
+		 * Gradient of the expected shortfall (of the 5% highest values) of the objective function, calculated by a backward pass
+		 * of the AAD tape, using {@link RandomOperators#differentiableLeftTailExpectedShortFall(RandomVariable, double)}.
+		 * Requires that <code>setValue</code> keeps the dependency on the (differentiable) parameters; parameters without a
+		 * derivative are not updated.
+		 */
+		EXPECTED_SHORTFALL_ADJOINT
 	}
 
 	private final GradientMethod gradientMethod;
@@ -39,6 +48,9 @@ public abstract class AdamOptimizerUsingFiniteDifferences {
 	private RandomVariableDifferentiable[] bestFitParameters;
 	private double bestValue = Double.MAX_VALUE;
 
+	private CancellationToken cancellationToken = new CancellationToken();
+	private boolean isVerbose = true;
+
 	public AdamOptimizerUsingFiniteDifferences(double[] initialParameters, int iterations, double learningRate, double eps, double[] betas,
 			GradientMethod gradientMethod) {
 		final RandomVariableDifferentiableAADFactory randomVariableAADFactory = new RandomVariableDifferentiableAADFactory();
@@ -92,20 +104,22 @@ public abstract class AdamOptimizerUsingFiniteDifferences {
 			final double[] m = new double[parameters.length];
 			final double[] v = new double[parameters.length];
 
-			for(int k=0; k<iterations && runnning; k++) {
+			for(int k=0; k<iterations && runnning && !cancellationToken.isCancellationRequested(); k++) {
 				final RandomVariable value = setValue(parameters);
 				if (value.getAverage() < bestValue || bestFitParameters == null) {
 					bestValue = value.getAverage();
 					bestFitParameters=parameters.clone();
 				}
 
-				final RandomVariable[] derivative = getGradient(parameters, value);
+				final RandomVariable[] derivative = (gradientMethod == GradientMethod.EXPECTED_SHORTFALL_ADJOINT) ?
+						getGradientOfExpectedShortFall(parameters, value) : getGradient(parameters, value);
+				if(cancellationToken.isCancellationRequested()) break;
 
 				for(int i=0; i< parameters.length; i++) {
 					double gradient;
 					try {
-						gradient = (gradientMethod == GradientMethod.AVERAGE) ? derivative[i].getAverage() :
-							-RandomOperators.expectedShortFall(derivative[i].mult(-1.0),0.05).getAverage();
+						gradient = (gradientMethod == GradientMethod.AVERAGE || gradientMethod == GradientMethod.EXPECTED_SHORTFALL_ADJOINT) ? derivative[i].getAverage() :
+							-RandomOperators.leftTailExpectedShortFallBySelection(derivative[i].mult(-1.0), 0.05);
 					} catch (final NullPointerException e) {
 						continue;
 					}
@@ -122,8 +136,8 @@ public abstract class AdamOptimizerUsingFiniteDifferences {
 
 				if (k % 10 == 0) {
 					final double valueForPrinting = (gradientMethod == GradientMethod.AVERAGE) ? value.getAverage() :
-						-RandomOperators.expectedShortFall(value.mult(-1.0),0.05).doubleValue();
-					if (k % 100 == 0) {
+						-RandomOperators.leftTailExpectedShortFallBySelection(value.mult(-1.0), 0.05);
+					if (k % 100 == 0 && isVerbose) {
 						System.out.printf("iteration %8d \t\t value %8.4f %n", k, -valueForPrinting);
 					} else {
 						//						System.out.printf("iteration %8d \t\t value %8.4f \r", k, -valueForPrinting);
@@ -140,7 +154,7 @@ public abstract class AdamOptimizerUsingFiniteDifferences {
 				v[i] = randomVariableFactory.createRandomVariable(0);
 			}
 
-			for(int k=0; k<iterations && runnning; k++) {
+			for(int k=0; k<iterations && runnning && !cancellationToken.isCancellationRequested(); k++) {
 				final RandomVariable value = setValue(parameters);
 				if (value.getAverage() < bestValue || bestFitParameters == null) {
 					bestValue = value.getAverage();
@@ -148,6 +162,7 @@ public abstract class AdamOptimizerUsingFiniteDifferences {
 				}
 				
 				final RandomVariable[] derivative = getGradient(parameters, value);
+				if(cancellationToken.isCancellationRequested()) break;
 				for(int i=0; i< parameters.length; i++) {
 
 					RandomVariable gradient;
@@ -168,7 +183,7 @@ public abstract class AdamOptimizerUsingFiniteDifferences {
 							((RandomVariableDifferentiable) parameters[i].sub(stepDirection.mult(learningRate[i]))).getCloneIndependent();
 				}
 
-				if (k % 100 == 0) {
+				if (k % 100 == 0 && isVerbose) {
 					System.out.printf("iteration %8.4f \t\t value %8.4f %n", (double) k,value.getAverage());
 				}
 			}
@@ -179,6 +194,25 @@ public abstract class AdamOptimizerUsingFiniteDifferences {
 		runnning = false;
 	}
 
+	/**
+	 * Set the cancellation token. The optimizer polls the token before each evaluation of the objective function
+	 * and stops (keeping the best fit parameters found so far) if the cancellation has been requested.
+	 *
+	 * @param cancellationToken The cancellation token.
+	 */
+	public void setCancellationToken(CancellationToken cancellationToken) {
+		this.cancellationToken = cancellationToken;
+	}
+
+	/**
+	 * Enable or disable the progress output (the value every 100 iterations) to <code>System.out</code>.
+	 *
+	 * @param isVerbose If true, the progress is printed (default).
+	 */
+	public void setVerbose(boolean isVerbose) {
+		this.isVerbose = isVerbose;
+	}
+
 	public RandomVariableDifferentiable[] getBestFitParameters() {
 		return bestFitParameters;
 	}
@@ -199,7 +233,7 @@ public abstract class AdamOptimizerUsingFiniteDifferences {
 
 		final double epsilon = 1E-8;
 		final RandomVariable[] gradient =  new RandomVariable[parameters.length];
-		for(int i=0; i<parameters.length; i++) {
+		for(int i=0; i<parameters.length && !cancellationToken.isCancellationRequested(); i++) {
 			final RandomVariable[] parametersShifted = parameters.clone();
 			final RandomVariable parametersShift = parameters[i].abs().add(1).mult(epsilon);
 			parametersShifted[i] = parameters[i].add(parametersShift);
@@ -209,4 +243,19 @@ public abstract class AdamOptimizerUsingFiniteDifferences {
 
 		return gradient;
 	}
+
+	/*
+	 * Gradient of -ES(-value) with respect to the parameters from a single backward pass (null for parameters without a derivative).
+	 */
+	private RandomVariable[] getGradientOfExpectedShortFall(RandomVariableDifferentiable[] parameters, RandomVariable value) {
+		final RandomVariable[] gradient =  new RandomVariable[parameters.length];
+		final RandomVariable expectedShortFall = RandomOperators.differentiableLeftTailExpectedShortFall(value.mult(-1.0), 0.05).mult(-1.0);
+		if(expectedShortFall instanceof RandomVariableDifferentiable expectedShortFallDifferentiable) {
+			final Map<Long, RandomVariable> gradientOfExpectedShortFall = expectedShortFallDifferentiable.getGradient();
+			for(int i=0; i<parameters.length; i++) {
+				gradient[i] = gradientOfExpectedShortFall.get(parameters[i].getID());
+			}
+		}
+		return gradient;
+	}
 }
@@ -0,0 +1,154 @@
+package net.finmath.climateschool.utilities;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Implementation of the ADAM optimizer for objective functions (loss functions)
+ * that map <code>double[]</code> parameters to a <code>double</code> value, where the parameters
+ * are grouped in blocks (e.g. the coefficients of different control paths).
+ *
+ * The gradient is calculated using finite differences. The blocks and the parameters
+ * within a block are evaluated concurrently, hence {@link #setValue(double[])} has to be thread safe
+ * (it is called with different parameter arrays from different threads).
+ *
+ * Optionally, the optimizer performs block-coordinate updates: in each iteration only the gradient of one block
+ * is calculated and only that block is updated (cycling through the blocks).
+ *
+ * @author Christian Fries
+ */
+public abstract class AdamOptimizerWithBlockParallelGradient {
+
+	private final int iterations;
+	private final double learningRate;
+	private final double eps;
+	private final double[] betas;
+	private final boolean isBlockCoordinateUpdate;
+
+	// Index of the first parameter of each block, the last entry is the number of parameters
+	private final int[] blockStart;
+
+	private final double[] parameters;
+	private double[] bestFitParameters;
+	private double bestValue = Double.MAX_VALUE;
+	private volatile boolean running = false;
+	private volatile CancellationToken cancellationToken = new CancellationToken();
+
+	/**
+	 * Create the optimizer.
+	 *
+	 * @param initialParameters The initial parameters.
+	 * @param blockSizes The sizes of the blocks (sum has to be the number of parameters).
+	 * @param iterations The number of iterations.
+	 * @param learningRate The learning rate.
+	 * @param isBlockCoordinateUpdate If true, each iteration updates only one block (cycling through the blocks).
+	 */
+	public AdamOptimizerWithBlockParallelGradient(double[] initialParameters, int[] blockSizes, int iterations, double learningRate, boolean isBlockCoordinateUpdate) {
+		if(Arrays.stream(blockSizes).sum() != initialParameters.length) {
+			throw new IllegalArgumentException("The sum of the block sizes has to match the number of parameters.");
+		}
+
+		this.parameters = initialParameters.clone();
+		this.iterations = iterations;
+		this.learningRate = learningRate;
+		this.eps = 1e-8;
+		this.betas = new double[] {0.9, 0.999};
+		this.isBlockCoordinateUpdate = isBlockCoordinateUpdate;
+
+		this.blockStart = new int[blockSizes.length+1];
+		for(int block=0; block<blockSizes.length; block++) {
+			blockStart[block+1] = blockStart[block] + blockSizes[block];
+		}
+	}
+
+	/**
+	 * The objective function. Has to be thread safe.
+	 *
+	 * @param parameters The parameters.
+	 * @return The value to be minimised.
+	 */
+	public abstract double setValue(double[] parameters);
+
+	public void run() {
+		running = true;
+
+		final int numberOfBlocks = blockStart.length-1;
+		final double[] m = new double[parameters.length];
+		final double[] v = new double[parameters.length];
+		final int[] numberOfBlockUpdates = new int[numberOfBlocks];
+
+		for(int k=0; k<iterations && running && !cancellationToken.isCancellationRequested(); k++) {
+			final double value = setValue(parameters);
+			if (value < bestValue || bestFitParameters == null) {
+				bestValue = value;
+				bestFitParameters = parameters.clone();
+			}
+
+			final int[] blocks = isBlockCoordinateUpdate ? new int[] { k % numberOfBlocks } : IntStream.range(0, numberOfBlocks).toArray();
+			final double[] gradient = getGradient(parameters, value, blocks);
+			if(cancellationToken.isCancellationRequested()) break;
+
+			for(final int block : blocks) {
+				final int updateCount = ++numberOfBlockUpdates[block];
+				for(int i=blockStart[block]; i<blockStart[block+1]; i++) {
+					m[i] = (betas[0]*m[i] + (1-betas[0])*gradient[i]);
+					v[i] = (betas[1]*v[i] + (1-betas[1])*gradient[i]*gradient[i]);
+
+					final double update_m = m[i] / (1-Math.pow(betas[0],updateCount));
+					final double update_v = v[i] / (1-Math.pow(betas[1],updateCount));
+					final double stepDirection = update_m / (Math.sqrt(update_v)+eps);
+
+					parameters[i] -= learningRate*stepDirection;
+				}
+			}
+
+			if (k % 100 == 0) {
+				System.out.printf("iteration %8d \t\t value %8.4f %n", k, -value);
+			}
+		}
+	}
+
+	public void stop() {
+		running = false;
+	}
+
+	/**
+	 * Set the cancellation token. The optimizer polls the token before each evaluation of the objective function
+	 * and stops (keeping the best fit parameters found so far) if the cancellation has been requested.
+	 *
+	 * @param cancellationToken The cancellation token.
+	 */
+	public void setCancellationToken(CancellationToken cancellationToken) {
+		this.cancellationToken = cancellationToken;
+	}
+
+	public double[] getBestFitParameters() {
+		return bestFitParameters;
+	}
+
+	public double[] getLastParameters() {
+		return parameters.clone();
+	}
+
+	public double getBestValue() {
+		return bestValue;
+	}
+
+	/*
+	 * Finite difference gradient of the given blocks. The blocks, and the parameters within each block, are evaluated concurrently.
+	 */
+	private double[] getGradient(double[] parameters, double value, int[] blocks) {
+		final double epsilon = 1E-8;
+		final double[] gradient = new double[parameters.length];
+		Arrays.stream(blocks).parallel().forEach(block ->
+		IntStream.range(blockStart[block], blockStart[block+1]).parallel().forEach(i -> {
+			if(cancellationToken.isCancellationRequested()) return;
+			final double[] parametersShifted = parameters.clone();
+			final double parametersShift = (Math.abs(parameters[i]) + 1) * epsilon;
+			parametersShifted[i] += parametersShift;
+			gradient[i] = (setValue(parametersShifted) - value) / parametersShift;
+		}));
+
+		return gradient;
+	}
+}
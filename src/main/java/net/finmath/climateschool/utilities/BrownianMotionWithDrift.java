@@ -0,0 +1,113 @@
+package net.finmath.climateschool.utilities;
+
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * A Brownian motion with a (constant) drift per factor, for importance sampling.
+ *
+ * The increments are &Delta;W<sub>j</sub>(t<sub>i</sub>) + &theta;<sub>j</sub> &Delta;t<sub>i</sub>, where W is the given Brownian motion,
+ * i.e., the simulation is performed under a measure Q under which the paths are shifted toward the tail of interest.
+ * Expectations (and risk measures) under the original measure P are obtained by weighting the paths with the likelihood ratio
+ * dP/dQ = exp( &sum;<sub>i,j</sub> ( -&theta;<sub>j</sub> &Delta;X<sub>j</sub>(t<sub>i</sub>) + &theta;<sub>j</sub><sup>2</sup> &Delta;t<sub>i</sub> / 2 ) ),
+ * where &Delta;X are the shifted increments, see {@link #getLikelihoodRatio()} and the <code>weighted...</code> methods of {@link RandomOperators}.
+ *
+ * Use it with {@link ModelFactory#getInterestRateModel(TimeDiscretization, TimeDiscretization, double[], double[], double, double, BrownianMotion)}.
+ *
+ * @author Christian Fries
+ */
+public class BrownianMotionWithDrift implements BrownianMotion {
+
+	private final BrownianMotion brownianMotion;
+	private final double[] drift;
+
+	private volatile RandomVariable likelihoodRatio;
+
+	/**
+	 * Create the Brownian motion with drift.
+	 *
+	 * @param brownianMotion The (standard) Brownian motion.
+	 * @param drift The drift &theta;<sub>j</sub> of each factor j.
+	 */
+	public BrownianMotionWithDrift(BrownianMotion brownianMotion, double[] drift) {
+		if(drift.length != brownianMotion.getNumberOfFactors()) {
+			throw new IllegalArgumentException("The drift has to be given for each of the " + brownianMotion.getNumberOfFactors() + " factors.");
+		}
+		this.brownianMotion = brownianMotion;
+		this.drift = drift.clone();
+	}
+
+	@Override
+	public RandomVariable getBrownianIncrement(int timeIndex, int factor) {
+		final RandomVariable increment = brownianMotion.getBrownianIncrement(timeIndex, factor);
+		return drift[factor] == 0 ? increment : increment.add(drift[factor] * getTimeDiscretization().getTimeStep(timeIndex));
+	}
+
+	/**
+	 * The likelihood ratio dP/dQ of the original measure with respect to the measure under which the paths are simulated.
+	 * The expectation of the likelihood ratio is 1.
+	 *
+	 * @return The likelihood ratio (per path).
+	 */
+	public RandomVariable getLikelihoodRatio() {
+		RandomVariable likelihoodRatio = this.likelihoodRatio;
+		if(likelihoodRatio == null) {
+			synchronized (this) {
+				likelihoodRatio = this.likelihoodRatio;
+				if(likelihoodRatio == null) {
+					RandomVariable logLikelihoodRatio = getRandomVariableForConstant(0.0);
+					for(int timeIndex=0; timeIndex<getTimeDiscretization().getNumberOfTimeSteps(); timeIndex++) {
+						final double timeStep = getTimeDiscretization().getTimeStep(timeIndex);
+						for(int factor=0; factor<drift.length; factor++) {
+							if(drift[factor] == 0) continue;
+							logLikelihoodRatio = logLikelihoodRatio
+									.sub(getBrownianIncrement(timeIndex, factor).mult(drift[factor]))
+									.add(0.5 * drift[factor] * drift[factor] * timeStep);
+						}
+					}
+					likelihoodRatio = logLikelihoodRatio.exp();
+					this.likelihoodRatio = likelihoodRatio;
+				}
+			}
+		}
+		return likelihoodRatio;
+	}
+
+	/**
+	 * @return The drift &theta;<sub>j</sub> of each factor j.
+	 */
+	public double[] getDrift() {
+		return drift.clone();
+	}
+
+	@Override
+	public TimeDiscretization getTimeDiscretization() {
+		return brownianMotion.getTimeDiscretization();
+	}
+
+	@Override
+	public int getNumberOfFactors() {
+		return brownianMotion.getNumberOfFactors();
+	}
+
+	@Override
+	public int getNumberOfPaths() {
+		return brownianMotion.getNumberOfPaths();
+	}
+
+	@Override
+	public RandomVariable getRandomVariableForConstant(double value) {
+		return brownianMotion.getRandomVariableForConstant(value);
+	}
+
+	@Override
+	public BrownianMotion getCloneWithModifiedSeed(int seed) {
+		return new BrownianMotionWithDrift(brownianMotion.getCloneWithModifiedSeed(seed), drift);
+	}
+
+	@Override
+	public BrownianMotion getCloneWithModifiedTimeDiscretization(TimeDiscretization newTimeDiscretization) {
+		return new BrownianMotionWithDrift(brownianMotion.getCloneWithModifiedTimeDiscretization(newTimeDiscretization), drift);
+	}
+}
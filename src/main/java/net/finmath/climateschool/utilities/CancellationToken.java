@@ -0,0 +1,98 @@
+package net.finmath.climateschool.utilities;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Cooperative cancellation of a calculation.
+ *
+ * The calculation polls the token (at fine granularity, e.g. per function evaluation, path chunk or time step)
+ * and stops if cancellation has been requested, either via {@link #cancel()}, via the condition given at construction
+ * (e.g. the epoch of an experiment), or by interrupting the thread running the calculation.
+ *
+ * The token records the time of {@link #cancel()}, such that the time until the calculation has actually stopped
+ * (time-to-cancel) can be measured, see {@link #getNanosSinceCancellation()}.
+ *
+ * @author Christian Fries
+ */
+public class CancellationToken implements BooleanSupplier {
+
+	private final BooleanSupplier condition;
+
+	private volatile boolean isCancelled = false;
+	private volatile long cancellationNanos;
+
+	/**
+	 * Create a token which is cancelled via {@link #cancel()} (or the interrupt of the polling thread).
+	 */
+	public CancellationToken() {
+		this(() -> false);
+	}
+
+	/**
+	 * Create a token which is cancelled via {@link #cancel()}, if the given condition is true, or if the polling thread is interrupted.
+	 *
+	 * @param condition Returns true if the calculation has been cancelled.
+	 */
+	public CancellationToken(BooleanSupplier condition) {
+		this.condition = condition;
+	}
+
+	/**
+	 * Returns a cancellation token for the given condition.
+	 *
+	 * @param isCancelled Returns true if the calculation has been cancelled (may be null).
+	 * @return The given condition if it is a cancellation token, otherwise a token with the given condition.
+	 */
+	public static CancellationToken of(BooleanSupplier isCancelled) {
+		if(isCancelled instanceof CancellationToken cancellationToken) {
+			return cancellationToken;
+		}
+		return isCancelled != null ? new CancellationToken(isCancelled) : new CancellationToken();
+	}
+
+	/**
+	 * Request the cancellation. Only the first call records the time of the request.
+	 */
+	public void cancel() {
+		if(!isCancelled) {
+			synchronized (this) {
+				if(!isCancelled) {
+					cancellationNanos = System.nanoTime();
+					isCancelled = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return True if the cancellation has been requested (or the calling thread has been interrupted).
+	 */
+	public boolean isCancellationRequested() {
+		return isCancelled || condition.getAsBoolean() || Thread.currentThread().isInterrupted();
+	}
+
+	@Override
+	public boolean getAsBoolean() {
+		return isCancellationRequested();
+	}
+
+	/**
+	 * Throws a {@link CancellationException} if the cancellation has been requested.
+	 * Allows to leave deeply nested loops and callbacks (e.g. the objective function of an optimizer).
+	 *
+	 * @throws CancellationException Thrown if the cancellation has been requested.
+	 */
+	public void throwIfCancellationRequested() {
+		if(isCancellationRequested()) {
+			throw new CancellationException("Calculation cancelled.");
+		}
+	}
+
+	/**
+	 * @return The time since {@link #cancel()} has been called (in nanoseconds) or -1 if it has not been called.
+	 */
+	public long getNanosSinceCancellation() {
+		return isCancelled ? System.nanoTime() - cancellationNanos : -1;
+	}
+}
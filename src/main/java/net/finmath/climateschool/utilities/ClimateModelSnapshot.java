@@ -0,0 +1,156 @@
+package net.finmath.climateschool.utilities;
+
+import net.finmath.climate.models.CarbonConcentration;
+import net.finmath.climate.models.ClimateModel;
+import net.finmath.climate.models.Temperature;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * A snapshot of the (expected) outputs of a {@link ClimateModel} in primitive arrays.
+ *
+ * All series are extracted in a single pass over the model, such that plots and analytics
+ * do not need to call the getters of the model and {@link RandomVariable#getAverage()} repeatedly.
+ * The per GDP series store the expectation of the ratio (which coincides with the ratio of the expectations for the
+ * deterministic DICE model).
+ *
+ * The getters return the internal arrays (no copies), these must not be modified.
+ *
+ * @author Christian Fries
+ */
+public class ClimateModelSnapshot {
+
+	private final TimeDiscretization timeDiscretization;
+	private final double value;
+
+	private final double[] time;
+	private final double[] temperature;
+	private final double[] carbon;
+	private final double[] emission;
+	private final double[] gdp;
+	private final double[] abatement;
+	private final double[] damage;
+	private final double[] damageCosts;
+	private final double[] abatementCosts;
+	private final double[] damageCostsPerGDP;
+	private final double[] abatementCostsPerGDP;
+	private final double[] numeraire;
+
+	private ClimateModelSnapshot(ClimateModel climateModel) {
+		timeDiscretization = climateModel.getTimeDiscretization();
+		value = climateModel.getValue().getAverage();
+
+		final int numberOfTimes = timeDiscretization.getNumberOfTimes();
+		time = timeDiscretization.getAsDoubleArray();
+		temperature = new double[numberOfTimes];
+		carbon = new double[numberOfTimes];
+		emission = new double[numberOfTimes];
+		gdp = new double[numberOfTimes];
+		abatement = new double[numberOfTimes];
+		damage = new double[numberOfTimes];
+		damageCosts = new double[numberOfTimes];
+		abatementCosts = new double[numberOfTimes];
+		damageCostsPerGDP = new double[numberOfTimes];
+		abatementCostsPerGDP = new double[numberOfTimes];
+		numeraire = new double[numberOfTimes];
+
+		final Temperature[] temperatureOfModel = climateModel.getTemperature();
+		final CarbonConcentration[] carbonOfModel = climateModel.getCarbonConcentration();
+		final RandomVariable[] emissionOfModel = climateModel.getEmission();
+		final RandomVariable[] gdpOfModel = climateModel.getGDP();
+		final RandomVariable[] abatementOfModel = climateModel.getAbatement();
+		final RandomVariable[] damageOfModel = climateModel.getDamage();
+		final RandomVariable[] damageCostsOfModel = climateModel.getDamageCosts();
+		final RandomVariable[] abatementCostsOfModel = climateModel.getAbatementCosts();
+
+		for(int i=0; i<numberOfTimes; i++) {
+			temperature[i] = temperatureOfModel[i].getExpectedTemperatureOfAtmosphere();
+			carbon[i] = carbonOfModel[i].getExpectedCarbonConcentrationInAtmosphere();
+			emission[i] = emissionOfModel[i].getAverage();
+			gdp[i] = gdpOfModel[i].getAverage();
+			abatement[i] = abatementOfModel[i].getAverage();
+			damage[i] = damageOfModel[i].getAverage();
+			damageCosts[i] = damageCostsOfModel[i].getAverage();
+			abatementCosts[i] = abatementCostsOfModel[i].getAverage();
+			damageCostsPerGDP[i] = damageCostsOfModel[i].div(gdpOfModel[i]).getAverage();
+			abatementCostsPerGDP[i] = abatementCostsOfModel[i].div(gdpOfModel[i]).getAverage();
+			numeraire[i] = climateModel.getNumeraire(time[i]).getAverage();
+		}
+	}
+
+	/**
+	 * Create the snapshot of a climate model.
+	 *
+	 * @param climateModel The climate model.
+	 * @return The snapshot.
+	 */
+	public static ClimateModelSnapshot of(ClimateModel climateModel) {
+		return new ClimateModelSnapshot(climateModel);
+	}
+
+	public TimeDiscretization getTimeDiscretization() {
+		return timeDiscretization;
+	}
+
+	public int getNumberOfTimes() {
+		return time.length;
+	}
+
+	/**
+	 * @return The expected value (welfare) of the model.
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	public double[] getTime() {
+		return time;
+	}
+
+	public double[] getTemperature() {
+		return temperature;
+	}
+
+	public double[] getCarbonConcentration() {
+		return carbon;
+	}
+
+	public double[] getEmission() {
+		return emission;
+	}
+
+	public double[] getGDP() {
+		return gdp;
+	}
+
+	public double[] getAbatement() {
+		return abatement;
+	}
+
+	public double[] getDamage() {
+		return damage;
+	}
+
+	public double[] getDamageCosts() {
+		return damageCosts;
+	}
+
+	public double[] getAbatementCosts() {
+		return abatementCosts;
+	}
+
+	public double[] getDamageCostsPerGDP() {
+		return damageCostsPerGDP;
+	}
+
+	public double[] getAbatementCostsPerGDP() {
+		return abatementCostsPerGDP;
+	}
+
+	/**
+	 * @return The (expected) numeraire of the model at the times of the time discretization.
+	 */
+	public double[] getNumeraire() {
+		return numeraire;
+	}
+}
@@ -0,0 +1,183 @@
+package net.finmath.climateschool.utilities;
+
+/**
+ * Cost analytics of a climate model: damage, abatement and total cost (raw, discounted and per GDP)
+ * and averages over rolling time windows.
+ *
+ * The discount factors and the cumulative sums of the discounted costs and GDP are calculated once, such that the sum over any
+ * window is obtained in O(1). The sums are accumulated from the end (suffix sums): the discounted values decay, hence
+ * this avoids the cancellation of large sums for windows at late times. The series are given for the time indices 0, ..., n-2 (where n is the number of times of the model),
+ * i.e., the last time (where the model has no cost for the period) is excluded.
+ *
+ * @author Christian Fries
+ */
+public class CostAnalytics {
+
+	private final double[] time;
+
+	private final double[] damage;
+	private final double[] damageDiscounted;
+	private final double[] damagePerGDP;
+	private final double[] abatement;
+	private final double[] abatementDiscounted;
+	private final double[] abatementPerGDP;
+	private final double[] total;
+	private final double[] totalDiscounted;
+	private final double[] totalPerGDP;
+
+	/*
+	 * Suffix sums with respect to the numeraire of the model: costSuffixSum[k] = sum_{j>=k} (damage_j + abatement_j) / N_j.
+	 */
+	private final double[] costSuffixSum;
+	private final double[] gdpSuffixSum;
+
+	/**
+	 * Create the cost analytics.
+	 *
+	 * @param snapshot The snapshot of the climate model.
+	 * @param discountRate The (constant) discount rate used for the discounted cost.
+	 */
+	public CostAnalytics(ClimateModelSnapshot snapshot, double discountRate) {
+		final int numberOfTimes = snapshot.getNumberOfTimes();
+		final int numberOfValues = Math.max(numberOfTimes-1, 0);
+
+		final double[] timeOfModel = snapshot.getTime();
+		final double[] damageCosts = snapshot.getDamageCosts();
+		final double[] abatementCosts = snapshot.getAbatementCosts();
+		final double[] gdp = snapshot.getGDP();
+		final double[] numeraire = snapshot.getNumeraire();
+
+		time = new double[numberOfValues];
+		damage = new double[numberOfValues];
+		damageDiscounted = new double[numberOfValues];
+		damagePerGDP = new double[numberOfValues];
+		abatement = new double[numberOfValues];
+		abatementDiscounted = new double[numberOfValues];
+		abatementPerGDP = new double[numberOfValues];
+		total = new double[numberOfValues];
+		totalDiscounted = new double[numberOfValues];
+		totalPerGDP = new double[numberOfValues];
+
+		for(int i=0; i<numberOfValues; i++) {
+			final double discountFactor = Math.exp(discountRate * timeOfModel[i]);
+
+			time[i] = timeOfModel[i];
+			damage[i] = damageCosts[i];
+			damageDiscounted[i] = damageCosts[i] / discountFactor;
+			damagePerGDP[i] = snapshot.getDamageCostsPerGDP()[i];
+			abatement[i] = abatementCosts[i];
+			abatementDiscounted[i] = abatementCosts[i] / discountFactor;
+			abatementPerGDP[i] = snapshot.getAbatementCostsPerGDP()[i];
+			total[i] = damage[i] + abatement[i];
+			totalDiscounted[i] = total[i] / discountFactor;
+			totalPerGDP[i] = damagePerGDP[i] + abatementPerGDP[i];
+		}
+
+		costSuffixSum = new double[numberOfTimes+1];
+		gdpSuffixSum = new double[numberOfTimes+1];
+		for(int j=numberOfTimes-1; j>=0; j--) {
+			costSuffixSum[j] = costSuffixSum[j+1] + (damageCosts[j] + abatementCosts[j]) / numeraire[j];
+			gdpSuffixSum[j] = gdpSuffixSum[j+1] + gdp[j] / numeraire[j];
+		}
+	}
+
+	/**
+	 * The sum of the total cost, discounted with the numeraire of the model, over the time indices <code>from</code> (inclusive)
+	 * to <code>to</code> (exclusive).
+	 *
+	 * @param from The first time index.
+	 * @param to The time index after the last time index.
+	 * @return The sum.
+	 */
+	public double getCostInWindow(int from, int to) {
+		return costSuffixSum[from] - costSuffixSum[to];
+	}
+
+	/**
+	 * The sum of the GDP, discounted with the numeraire of the model, over the time indices <code>from</code> (inclusive)
+	 * to <code>to</code> (exclusive).
+	 *
+	 * @param from The first time index.
+	 * @param to The time index after the last time index.
+	 * @return The sum.
+	 */
+	public double getGDPInWindow(int from, int to) {
+		return gdpSuffixSum[from] - gdpSuffixSum[to];
+	}
+
+	/**
+	 * The discounted total cost averaged over the window of <code>windowLength</code> time steps starting in each time index.
+	 * Windows are truncated at the last time with cost, but the sum is always divided by <code>windowLength</code>.
+	 *
+	 * @param windowLength The length of the window (number of time steps).
+	 * @return The averaged cost for the time indices 0, ..., n-2.
+	 */
+	public double[] getTotalAveragedDiscounted(int windowLength) {
+		final int numberOfTimes = costSuffixSum.length-1;
+		final double[] averaged = new double[time.length];
+		for(int i=0; i<averaged.length; i++) {
+			averaged[i] = getCostInWindow(i, Math.min(i+windowLength, numberOfTimes-1)) / windowLength;
+		}
+		return averaged;
+	}
+
+	/**
+	 * The ratio of the discounted total cost and the discounted GDP over the window of <code>windowLength</code> time steps starting in each time index.
+	 * The window of the cost is truncated at the last time with cost, the window of the GDP at the last time.
+	 *
+	 * @param windowLength The length of the window (number of time steps).
+	 * @return The averaged cost per GDP for the time indices 0, ..., n-2.
+	 */
+	public double[] getTotalAveragedPerGDP(int windowLength) {
+		final int numberOfTimes = costSuffixSum.length-1;
+		final double[] averaged = new double[time.length];
+		for(int i=0; i<averaged.length; i++) {
+			averaged[i] = getCostInWindow(i, Math.min(i+windowLength, numberOfTimes-1)) / getGDPInWindow(i, Math.min(i+windowLength, numberOfTimes));
+		}
+		return averaged;
+	}
+
+	/*
+	 * The getters return the internal arrays (no copies), these must not be modified.
+	 */
+
+	public double[] getTime() {
+		return time;
+	}
+
+	public double[] getDamage() {
+		return damage;
+	}
+
+	public double[] getDamageDiscounted() {
+		return damageDiscounted;
+	}
+
+	public double[] getDamagePerGDP() {
+		return damagePerGDP;
+	}
+
+	public double[] getAbatement() {
+		return abatement;
+	}
+
+	public double[] getAbatementDiscounted() {
+		return abatementDiscounted;
+	}
+
+	public double[] getAbatementPerGDP() {
+		return abatementPerGDP;
+	}
+
+	public double[] getTotal() {
+		return total;
+	}
+
+	public double[] getTotalDiscounted() {
+		return totalDiscounted;
+	}
+
+	public double[] getTotalPerGDP() {
+		return totalPerGDP;
+	}
+}
@@ -0,0 +1,280 @@
+package net.finmath.climateschool.utilities;
+
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * Primitive (<code>double</code> based) one-step dynamics of the DICE model.
+ *
+ * The class mirrors the DICE 2016 calibration used by <code>net.finmath.climate.models.dice.DICEModel</code>, with
+ * the five year rates converted to annual rates. Different from <code>DICEModel</code> it allows to apply a single
+ * time step to an arbitrary state (carbon, temperature, capital), which is what a dynamic programming or Monte Carlo
+ * algorithm needs. Values are close to, but not bit-identical with, <code>DICEModel</code>. Use <code>DICEModel</code>
+ * to value a given abatement path.
+ *
+ * The state is stored in a <code>double[]</code> using the indices {@link #CARBON_ATMOSPHERE}, {@link #CARBON_UPPER},
+ * {@link #CARBON_LOWER}, {@link #TEMPERATURE_ATMOSPHERE}, {@link #TEMPERATURE_OCEAN}, {@link #CAPITAL}.
+ *
+ * @author Christian Fries
+ */
+public class DICEModelDynamics {
+
+	public static final int CARBON_ATMOSPHERE = 0;
+	public static final int CARBON_UPPER = 1;
+	public static final int CARBON_LOWER = 2;
+	public static final int TEMPERATURE_ATMOSPHERE = 3;
+	public static final int TEMPERATURE_OCEAN = 4;
+	public static final int CAPITAL = 5;
+	public static final int STATE_DIMENSION = 6;
+
+	/*
+	 * Default parameters (DICE 2016)
+	 */
+	public static final double EQUILIBRIUM_CLIMATE_SENSITIVITY = 3.1;
+	public static final double DAMAGE_COEFFICIENT = 0.00236;
+	public static final double PRODUCTIVITY_GROWTH = 0.076;
+
+	// Carbon cycle (per 5 years, converted below)
+	private static final double b12 = 0.12;
+	private static final double b23 = 0.007;
+	private static final double mateq = 588.0;
+	private static final double mueq = 360.0;
+	private static final double mleq = 1720.0;
+	private static final double carbonPerCO2 = 1.0 / 3.666;
+
+	// Forcing
+	private static final double forcingOfCO2Doubling = 3.6813;
+	private static final double forcingExternalInitial = 0.5;
+	private static final double forcingExternalFinal = 1.0;
+	private static final double forcingExternalTime = 85.0;
+
+	// Temperature (per 5 years, converted below)
+	private static final double c1 = 0.1005;
+	private static final double c3 = 0.088;
+	private static final double c4 = 0.025;
+
+	// Economy
+	private static final double gamma = 0.3;
+	private static final double capitalDepreciation = 0.1;
+	private static final double populationInitial = 7403;
+	private static final double populationAsymptotic = 11500;
+	private static final double populationAdjustment = 0.134;
+	private static final double productivityInitial = 5.115;
+	private static final double productivityGrowthDecline = 0.005;
+
+	// Emissions and abatement cost
+	private static final double emissionIntensityInitial = 35.85 / (105.5 * (1-0.03));
+	private static final double emissionIntensityGrowth = -0.0152;
+	private static final double emissionIntensityGrowthDecline = -0.001;
+	private static final double emissionLandInitial = 2.6;
+	private static final double emissionLandDecline = 0.115;
+	private static final double backstopPriceInitial = 550;
+	private static final double backstopPriceDecline = 0.025;
+	private static final double abatementCostExponent = 2.6;
+
+	// Utility
+	private static final double elasticityOfMarginalUtility = 1.45;
+
+	private static final double[] stateInitial = new double[] { 851, 460, 1740, 0.85, 0.0068, 223 };
+
+	private final TimeDiscretization timeDiscretization;
+	private final double equilibriumClimateSensitivity;
+	private final double damageCoefficient;
+
+	/*
+	 * Exogenous paths (functions of time only)
+	 */
+	private final double[] population;
+	private final double[] productivity;
+	private final double[] emissionIntensity;
+	private final double[] abatementCostCoefficient;
+	private final double[] emissionLand;
+	private final double[] forcingExternal;
+
+	/**
+	 * Create the DICE dynamics with non-default values for the parameters subject to uncertainty.
+	 *
+	 * @param timeDiscretization The time discretization (in years).
+	 * @param equilibriumClimateSensitivity Equilibrium temperature increase for a doubling of CO2 (°C).
+	 * @param damageCoefficient The coefficient a2 of the damage function a2 T^2.
+	 * @param productivityGrowth The initial growth rate of the total factor productivity (per 5 years).
+	 */
+	public DICEModelDynamics(TimeDiscretization timeDiscretization, double equilibriumClimateSensitivity, double damageCoefficient, double productivityGrowth) {
+		this.timeDiscretization = timeDiscretization;
+		this.equilibriumClimateSensitivity = equilibriumClimateSensitivity;
+		this.damageCoefficient = damageCoefficient;
+
+		final int numberOfTimes = timeDiscretization.getNumberOfTimes();
+		population = new double[numberOfTimes];
+		productivity = new double[numberOfTimes];
+		emissionIntensity = new double[numberOfTimes];
+		abatementCostCoefficient = new double[numberOfTimes];
+		emissionLand = new double[numberOfTimes];
+		forcingExternal = new double[numberOfTimes];
+
+		population[0] = populationInitial;
+		productivity[0] = productivityInitial;
+		emissionIntensity[0] = emissionIntensityInitial;
+		double emissionIntensityGrowthRate = emissionIntensityGrowth;
+		for(int i=0; i<numberOfTimes; i++) {
+			final double time = timeDiscretization.getTime(i);
+			if(i > 0) {
+				final double timeStep = timeDiscretization.getTimeStep(i-1);
+				final double timePrevious = timeDiscretization.getTime(i-1);
+				population[i] = population[i-1] * Math.pow(populationAsymptotic/population[i-1], populationAdjustment * timeStep / 5.0);
+				final double productivityGrowthRate = productivityGrowth * Math.exp(-productivityGrowthDecline * timePrevious);
+				productivity[i] = productivity[i-1] / Math.pow(1-productivityGrowthRate, timeStep / 5.0);
+				emissionIntensity[i] = emissionIntensity[i-1] * Math.exp(emissionIntensityGrowthRate * timeStep);
+				emissionIntensityGrowthRate *= Math.pow(1+emissionIntensityGrowthDecline, timeStep);
+			}
+			final double backstopPrice = backstopPriceInitial * Math.pow(1-backstopPriceDecline, time / 5.0);
+			abatementCostCoefficient[i] = backstopPrice * emissionIntensity[i] / abatementCostExponent / 1000.0;
+			emissionLand[i] = emissionLandInitial * Math.pow(1-emissionLandDecline, time / 5.0);
+			forcingExternal[i] = forcingExternalInitial + (forcingExternalFinal-forcingExternalInitial) * Math.min(time / forcingExternalTime, 1.0);
+		}
+	}
+
+	/**
+	 * Create the DICE dynamics with the default (DICE 2016) parameters.
+	 *
+	 * @param timeDiscretization The time discretization (in years).
+	 */
+	public DICEModelDynamics(TimeDiscretization timeDiscretization) {
+		this(timeDiscretization, EQUILIBRIUM_CLIMATE_SENSITIVITY, DAMAGE_COEFFICIENT, PRODUCTIVITY_GROWTH);
+	}
+
+	/**
+	 * @return A new array with the initial state (year 2015).
+	 */
+	public double[] getInitialState() {
+		return stateInitial.clone();
+	}
+
+	public TimeDiscretization getTimeDiscretization() {
+		return timeDiscretization;
+	}
+
+	/**
+	 * Apply one time step from time index <code>timeIndex</code> to <code>timeIndex+1</code>.
+	 *
+	 * @param timeIndex The time index of the given state.
+	 * @param state The state at time index <code>timeIndex</code> (not modified).
+	 * @param abatement The abatement &mu; applied in this period.
+	 * @param savingsRate The savings rate applied in this period.
+	 * @param stateNext Array receiving the state at <code>timeIndex+1</code>. May be the same array as <code>state</code>.
+	 * @return The (undiscounted) utility rate of this period.
+	 */
+	public double step(int timeIndex, double[] state, double abatement, double savingsRate, double[] stateNext) {
+		return step(timeIndex, state, abatement, savingsRate, 0.0, 0.0, stateNext);
+	}
+
+	/**
+	 * Apply one time step from time index <code>timeIndex</code> to <code>timeIndex+1</code>, with an additional
+	 * shift applied to the emission and the consumption of this period (e.g. to calculate the social cost of carbon).
+	 *
+	 * @param timeIndex The time index of the given state.
+	 * @param state The state at time index <code>timeIndex</code> (not modified).
+	 * @param abatement The abatement &mu; applied in this period.
+	 * @param savingsRate The savings rate applied in this period.
+	 * @param emissionShift Additional emission (GtCO2/yr).
+	 * @param consumptionShift Additional consumption (Tr$).
+	 * @param stateNext Array receiving the state at <code>timeIndex+1</code>. May be the same array as <code>state</code>.
+	 * @return The (undiscounted) utility rate of this period.
+	 */
+	public double step(int timeIndex, double[] state, double abatement, double savingsRate, double emissionShift, double consumptionShift, double[] stateNext) {
+		final double timeStep = timeDiscretization.getTimeStep(timeIndex);
+
+		final double carbonAtmosphere = state[CARBON_ATMOSPHERE];
+		final double carbonUpper = state[CARBON_UPPER];
+		final double carbonLower = state[CARBON_LOWER];
+		final double temperatureAtmosphere = state[TEMPERATURE_ATMOSPHERE];
+		final double temperatureOcean = state[TEMPERATURE_OCEAN];
+		final double capital = state[CAPITAL];
+
+		/*
+		 * Economy
+		 */
+		final double gdpGross = getGDPGross(timeIndex, capital);
+		final double damageFraction = getDamageFraction(temperatureAtmosphere);
+		final double abatementCostFraction = abatementCostCoefficient[timeIndex] * Math.pow(abatement, abatementCostExponent);
+		final double gdp = gdpGross * (1-damageFraction-abatementCostFraction);
+		final double investment = savingsRate * gdp;
+		final double consumption = gdp - investment + consumptionShift;
+
+		/*
+		 * Emission and carbon cycle (rates are per 5 years)
+		 */
+		final double emission = emissionIntensity[timeIndex] * gdpGross * (1-abatement) + emissionLand[timeIndex] + emissionShift;
+		final double b12y = b12 / 5.0;
+		final double b21y = b12 * mateq / mueq / 5.0;
+		final double b23y = b23 / 5.0;
+		final double b32y = b23 * mueq / mleq / 5.0;
+
+		/*
+		 * Temperature
+		 */
+		final double forcing = forcingOfCO2Doubling * Math.log(carbonAtmosphere / mateq) / Math.log(2) + forcingExternal[timeIndex];
+		final double feedback = forcingOfCO2Doubling / equilibriumClimateSensitivity;
+
+		stateNext[CARBON_ATMOSPHERE] = carbonAtmosphere + timeStep * (-b12y * carbonAtmosphere + b21y * carbonUpper + emission * carbonPerCO2);
+		stateNext[CARBON_UPPER] = carbonUpper + timeStep * (b12y * carbonAtmosphere - (b21y + b23y) * carbonUpper + b32y * carbonLower);
+		stateNext[CARBON_LOWER] = carbonLower + timeStep * (b23y * carbonUpper - b32y * carbonLower);
+		stateNext[TEMPERATURE_ATMOSPHERE] = temperatureAtmosphere + timeStep * c1 / 5.0 * (forcing - feedback * temperatureAtmosphere - c3 * (temperatureAtmosphere - temperatureOcean));
+		stateNext[TEMPERATURE_OCEAN] = temperatureOcean + timeStep * c4 / 5.0 * (temperatureAtmosphere - temperatureOcean);
+		stateNext[CAPITAL] = Math.pow(1-capitalDepreciation, timeStep) * capital + timeStep * investment;
+
+		return getUtility(timeIndex, consumption);
+	}
+
+	/**
+	 * Calculate the welfare (discounted utility) for given abatement and savings rate paths.
+	 *
+	 * @param abatement The abatement path (one value per time index).
+	 * @param savingsRate The savings rate path (one value per time index).
+	 * @param discountRate The (continuously compounded) discount rate.
+	 * @return The welfare.
+	 */
+	public double getWelfare(double[] abatement, double[] savingsRate, double discountRate) {
+		final double[] state = getInitialState();
+		double welfare = 0.0;
+		for(int timeIndex=0; timeIndex<timeDiscretization.getNumberOfTimeSteps(); timeIndex++) {
+			final double utility = step(timeIndex, state, abatement[timeIndex], savingsRate[timeIndex], state);
+			welfare += utility * timeDiscretization.getTimeStep(timeIndex) * Math.exp(-discountRate * timeDiscretization.getTime(timeIndex));
+		}
+		return welfare;
+	}
+
+	/**
+	 * @param timeIndex The time index.
+	 * @param capital The capital (Tr$).
+	 * @return The gross output (GDP before damages and abatement cost) in Tr$.
+	 */
+	public double getGDPGross(int timeIndex, double capital) {
+		return productivity[timeIndex] * Math.pow(Math.max(capital, 0.0), gamma) * Math.pow(population[timeIndex]/1000.0, 1-gamma);
+	}
+
+	/**
+	 * @param temperature Temperature above pre-industrial (°C).
+	 * @return The fraction of GDP lost due to damages.
+	 */
+	public double getDamageFraction(double temperature) {
+		return damageCoefficient * temperature * temperature;
+	}
+
+	/**
+	 * @param timeIndex The time index.
+	 * @param consumption The total consumption (Tr$).
+	 * @return The utility rate (population times utility of per capita consumption).
+	 */
+	public double getUtility(int timeIndex, double consumption) {
+		final double consumptionPerCapita = Math.max(1000.0 * consumption / population[timeIndex], 1E-6);
+		return population[timeIndex] * (Math.pow(consumptionPerCapita, 1-elasticityOfMarginalUtility) - 1) / (1-elasticityOfMarginalUtility);
+	}
+
+	public double getEquilibriumClimateSensitivity() {
+		return equilibriumClimateSensitivity;
+	}
+
+	public double getDamageCoefficient() {
+		return damageCoefficient;
+	}
+}
@@ -4,23 +4,15 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Rectangle;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
-import java.util.stream.IntStream;
 
-import net.finmath.climate.models.CarbonConcentration;
 import net.finmath.climate.models.ClimateModel;
-import net.finmath.climate.models.Temperature;
 import net.finmath.plots.GraphStyle;
 import net.finmath.plots.Plot2D;
 import net.finmath.plots.PlotablePoints2D;
 import net.finmath.plots.Plots;
 import net.finmath.plots.Point2D;
-import net.finmath.stochastic.RandomVariable;
-import net.finmath.stochastic.Scalar;
-import net.finmath.time.TimeDiscretization;
 
 public class DICEModelPlots {
 
@@ -34,71 +26,82 @@ public class DICEModelPlots {
 	Plot2D plotCostPerGDP = null;
 
 	public void plot(ClimateModel climateModel, String spec) {
+		plot(ClimateModelSnapshot.of(climateModel), spec);
+	}
+
+	public void plot(ClimateModelSnapshot snapshot, String spec) {
 		/*
 		 * Plots
 		 */
 
-		TimeDiscretization timeDiscretization = climateModel.getTimeDiscretization();
+		final double[] time = snapshot.getTime();
+
+		// Downsample long series to the pixel width of the plots (no change for the usual time discretizations)
+		final double[][] temperature = Downsampling.largestTriangleThreeBuckets(time, snapshot.getTemperature());
+		final double[][] carbon = Downsampling.largestTriangleThreeBuckets(time, snapshot.getCarbonConcentration());
+		final double[][] emission = Downsampling.largestTriangleThreeBuckets(time, snapshot.getEmission());
+		final double[][] output = Downsampling.largestTriangleThreeBuckets(time, snapshot.getGDP());
+		final double[][] abatement = Downsampling.largestTriangleThreeBuckets(time, snapshot.getAbatement());
 
 		if(plotTemperature == null) {
 			plotTemperature = Plots
-					.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getTemperature()).mapToDouble(Temperature::getExpectedTemperatureOfAtmosphere).toArray(), 0, 300, 3)
+					.createScatter(temperature[0], temperature[1], 0, 300, 3)
 					.setTitle("Temperature (" + spec + ")").setXAxisLabel("time (years)").setYAxisLabel("Temperature [°C]");
 			plotTemperature.show();
 		}
 		else {
 			Plots
-			.updateScatter(plotTemperature, timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getTemperature()).mapToDouble(Temperature::getExpectedTemperatureOfAtmosphere).toArray(), 0, 300, 3)
+			.updateScatter(plotTemperature, temperature[0], temperature[1], 0, 300, 3)
 			.setTitle("Temperature (" + spec + ")").setXAxisLabel("time (years)").setYAxisLabel("Temperature [°C]");
 		}
 
 		if(plotCarbon == null) {
 			plotCarbon = Plots
-					.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getCarbonConcentration()).mapToDouble(CarbonConcentration::getExpectedCarbonConcentrationInAtmosphere).toArray(), 0, 300, 3)
+					.createScatter(carbon[0], carbon[1], 0, 300, 3)
 					.setTitle("Carbon Concentration (" + spec + ")").setXAxisLabel("time (years)").setYAxisLabel("Carbon concentration [GtC]");
 			plotCarbon.show();
 		}
 		else {
 			Plots
-			.updateScatter(plotCarbon, timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getCarbonConcentration()).mapToDouble(CarbonConcentration::getExpectedCarbonConcentrationInAtmosphere).toArray(), 0, 300, 3)
+			.updateScatter(plotCarbon, carbon[0], carbon[1], 0, 300, 3)
 			.setTitle("Carbon Concentration (" + spec + ")").setXAxisLabel("time (years)").setYAxisLabel("Carbon concentration [GtC]");
 
 		}
 
 		if(plotEmission == null) {
 			plotEmission = Plots
-					.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getEmission()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
+					.createScatter(emission[0], emission[1], 0, 300, 3)
 					.setTitle("Emission (" + spec + ")").setXAxisLabel("time (years)").setYAxisLabel("Emission [GtCO2/yr]");
 			plotEmission.show();
 		}
 		else {
 			Plots
-			.updateScatter(plotEmission, timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getEmission()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
+			.updateScatter(plotEmission, emission[0], emission[1], 0, 300, 3)
 			.setTitle("Emission (" + spec + ")").setXAxisLabel("time (years)").setYAxisLabel("Emission [GtCO2/yr]");
 
 		}
 
 		if(plotOutput == null) {
 			plotOutput = Plots
-					.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getGDP()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
+					.createScatter(output[0], output[1], 0, 300, 3)
 					.setTitle("GDP (" + spec + ")").setXAxisLabel("time (years)").setYAxisLabel("GDP [Tr$2005]");			
 			plotOutput.show();
 		}
 		else {
 			Plots
-			.updateScatter(plotOutput, timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getGDP()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
+			.updateScatter(plotOutput, output[0], output[1], 0, 300, 3)
 			.setTitle("GDP (" + spec + ")").setXAxisLabel("time (years)").setYAxisLabel("GDP [Tr$2005]");
 		}
 
 		if(plotAbatement == null) {
 			plotAbatement = Plots
-					.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getAbatement()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
+					.createScatter(abatement[0], abatement[1], 0, 300, 3)
 					.setTitle("Abatement (" + spec + ")").setXAxisLabel("time (years)").setYAxisLabel("Abatement \u03bc");
 			plotAbatement.show();
 		}
 		else {
 			Plots
-			.updateScatter(plotAbatement, timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getAbatement()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
+			.updateScatter(plotAbatement, abatement[0], abatement[1], 0, 300, 3)
 			.setTitle("Abatement (" + spec + ")").setXAxisLabel("time (years)").setYAxisLabel("Abatement \u03bc");
 		}
 	}
@@ -106,52 +109,26 @@ public class DICEModelPlots {
 	public void plotCost(ClimateModel climateModel, double discountRate, String paramSpec) {
 		System.out.println("Generating plots for " + climateModel);
 
-		final double timeHorizonInPlot = 400;
-
-		final TimeDiscretization timeDiscretization = climateModel.getTimeDiscretization();
-
-		final RandomVariable[] abatement = climateModel.getAbatement();
-		final RandomVariable[] damage = climateModel.getDamage();
-		final RandomVariable[] damageCosts = climateModel.getDamageCosts();
-		final RandomVariable[] abatementCosts = climateModel.getAbatementCosts();
-		final RandomVariable[] gdp = climateModel.getGDP();
-		final RandomVariable[] emission = climateModel.getEmission();
-
-		final List<Point2D> costDamage			= new ArrayList<Point2D>();
-		final List<Point2D> costDamageDiscounted	= new ArrayList<Point2D>();
-		final List<Point2D> costDamagePerGDP	= new ArrayList<Point2D>();
-
-		final List<Point2D> costAbatement			= new ArrayList<Point2D>();
-		final List<Point2D> costAbatementDiscounted	= new ArrayList<Point2D>();
-		final List<Point2D> costAbatementPerGDP	= new ArrayList<Point2D>();
-
-		final List<Point2D> costTotal			= new ArrayList<Point2D>();
-		final List<Point2D> costTotalDiscounted	= new ArrayList<Point2D>();
-		final List<Point2D> costTotalPerGDP	= new ArrayList<Point2D>();
+		plotCost(ClimateModelSnapshot.of(climateModel), discountRate, paramSpec);
+	}
 
-		final List<Point2D> costAveraged			= new ArrayList<Point2D>();
-		final List<Point2D> costAveragedDiscounted	= new ArrayList<Point2D>();
-		final List<Point2D> costAveragedPerGDP	= new ArrayList<Point2D>();
+	public void plotCost(ClimateModelSnapshot snapshot, double discountRate, String paramSpec) {
+		final double timeHorizonInPlot = 400;
 
-		for(int i=0; i<damageCosts.length-1; i+=1) {
-			final double time = timeDiscretization.getTime(i);
-			final RandomVariable numeraire = Scalar.of(Math.exp(discountRate * time));
+		final CostAnalytics costAnalytics = new CostAnalytics(snapshot, discountRate);
+		final double[] time = costAnalytics.getTime();
 
-			costDamage.add(new Point2D(timeDiscretization.getTime(i),damageCosts[i].getAverage()));
-			costDamageDiscounted.add(new Point2D(timeDiscretization.getTime(i),damageCosts[i].div(numeraire).getAverage()));
-			costDamagePerGDP.add(new Point2D(timeDiscretization.getTime(i),damageCosts[i].div(gdp[i]).getAverage()));
+		final List<Point2D> costDamageDiscounted	= Downsampling.getPoints(time, costAnalytics.getDamageDiscounted());
+		final List<Point2D> costDamagePerGDP	= Downsampling.getPoints(time, costAnalytics.getDamagePerGDP());
 
-			costAbatement.add(new Point2D(timeDiscretization.getTime(i),abatementCosts[i].getAverage()));
-			costAbatementDiscounted.add(new Point2D(timeDiscretization.getTime(i),abatementCosts[i].div(numeraire).getAverage()));
-			costAbatementPerGDP.add(new Point2D(timeDiscretization.getTime(i),abatementCosts[i].div(gdp[i]).getAverage()));
+		final List<Point2D> costAbatementDiscounted	= Downsampling.getPoints(time, costAnalytics.getAbatementDiscounted());
+		final List<Point2D> costAbatementPerGDP	= Downsampling.getPoints(time, costAnalytics.getAbatementPerGDP());
 
-			costTotal.add(new Point2D(timeDiscretization.getTime(i), damageCosts[i].add(abatementCosts[i]).getAverage()));
-			costTotalDiscounted.add(new Point2D(timeDiscretization.getTime(i),damageCosts[i].add(abatementCosts[i]).div(numeraire).getAverage()));
-			costTotalPerGDP.add(new Point2D(timeDiscretization.getTime(i),damageCosts[i].add(abatementCosts[i]).div(gdp[i]).getAverage()));
+		final List<Point2D> costTotalDiscounted	= Downsampling.getPoints(time, costAnalytics.getTotalDiscounted());
+		final List<Point2D> costTotalPerGDP	= Downsampling.getPoints(time, costAnalytics.getTotalPerGDP());
 
-			costAveragedDiscounted.add(new Point2D(timeDiscretization.getTime(i),IntStream.range(i, Math.min(i+100, damageCosts.length-1)).mapToDouble(j -> damageCosts[j].add(abatementCosts[j]).div(climateModel.getNumeraire(timeDiscretization.getTime(j))).div(100.0).getAverage()).sum()));
-			costAveragedPerGDP.add(new Point2D(timeDiscretization.getTime(i),IntStream.range(i, Math.min(i+100, damageCosts.length-1)).mapToDouble(j -> damageCosts[j].add(abatementCosts[j]).div(climateModel.getNumeraire(timeDiscretization.getTime(j))).getAverage()).sum() / IntStream.range(i, Math.min(i+100, damageCosts.length)).mapToDouble(j -> gdp[j].div(climateModel.getNumeraire(timeDiscretization.getTime(j))).getAverage()).sum()));
-		}
+		// Averages over the next 100 time steps
+		final List<Point2D> costAveragedPerGDP	= Downsampling.getPoints(time, costAnalytics.getTotalAveragedPerGDP(100));
 
 		if(plotCostDiscounted == null) {
 			plotCostDiscounted = new Plot2D(
@@ -200,19 +177,39 @@ public class DICEModelPlots {
 							new PlotablePoints2D("total averaged", costAveragedPerGDP, new GraphStyle(new Rectangle(3, 3), new BasicStroke(), Color.BLACK))));
 		}
 
+		final double[][] abatement = Downsampling.largestTriangleThreeBuckets(snapshot.getTime(), snapshot.getAbatement());
 		if(plotAbatement == null) {
 			plotAbatement = Plots
-					.createScatter(timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getAbatement()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
+					.createScatter(abatement[0], abatement[1], 0, 300, 3)
 					.setTitle("Abatement (" + paramSpec + ")").setXAxisLabel("time (years)").setYAxisLabel("Abatement \u03bc");
 			plotAbatement.show();
 		}
 		else {
 			Plots
-			.updateScatter(plotAbatement, timeDiscretization.getAsDoubleArray(), Arrays.stream(climateModel.getAbatement()).mapToDouble(RandomVariable::getAverage).toArray(), 0, 300, 3)
+			.updateScatter(plotAbatement, abatement[0], abatement[1], 0, 300, 3)
 			.setTitle("Abatement (" + paramSpec + ")").setXAxisLabel("time (years)").setYAxisLabel("Abatement \u03bc");
 		}
 	}
 
+	/**
+	 * @return The number of open plot windows.
+	 */
+	public int getNumberOfOpenPlots() {
+		int numberOfOpenPlots = 0;
+		for(final Plot2D plot : new Plot2D[] { plotTemperature, plotCarbon, plotEmission, plotOutput, plotAbatement, plotCostDiscounted, plotCostPerGDP }) {
+			if(plot != null) numberOfOpenPlots++;
+		}
+		return numberOfOpenPlots;
+	}
+
+	/**
+	 * @return Estimate of the memory retained by the open plot windows (in bytes).
+	 */
+	public long getEstimatedRetainedSize() {
+		// A window with its back buffer (about 800 x 600 pixels, 4 bytes per pixel) and the series
+		return getNumberOfOpenPlots() * (4L << 20);
+	}
+
 	public void close() {
 		
 		java.awt.EventQueue.invokeLater(new Runnable() {
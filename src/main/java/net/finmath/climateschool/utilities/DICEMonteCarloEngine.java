@@ -0,0 +1,374 @@
+package net.finmath.climateschool.utilities;
+
+import java.util.SplittableRandom;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * Monte Carlo simulation of the DICE model with uncertain parameters.
+ *
+ * For each path the equilibrium climate sensitivity (log-normal), the damage coefficient (log-normal) and the
+ * initial growth rate of the total factor productivity (normal) are drawn and the model is evaluated for the
+ * given abatement and savings rate (using {@link DICEModelDynamics}).
+ *
+ * The paths are evaluated in parallel chunks. Each chunk uses its own random number generator, split from a
+ * <code>SplittableRandom</code> with the given seed in chunk order, hence the result does not depend on the
+ * number of threads. Per path only the scalar results (welfare, temperature, social cost of carbon) are stored.
+ * The temperature paths are aggregated per chunk (sum and sum of squares per time step) and the chunk aggregates are
+ * merged, such that the memory does not grow with the number of paths times the number of time steps.
+ * For tail risk measures, the draws may be shifted toward the tail (importance sampling), see
+ * {@link #simulate(int, long, double[], CancellationToken)}; the paths then carry likelihood ratio weights.
+ * For very large numbers of paths, {@link #simulateSketches(int, long, int, CancellationToken)} does not store the per path results
+ * but accumulates them in mergeable {@link QuantileSketch}es.
+ *
+ * @author Christian Fries
+ */
+public class DICEMonteCarloEngine {
+
+	private static final int chunkSize = 256;
+
+	/**
+	 * Result of the Monte Carlo simulation.
+	 *
+	 * The random variables can be used with {@link RandomOperators}, e.g. to calculate the expected shortfall.
+	 *
+	 * @param welfare The welfare (discounted utility) per path.
+	 * @param temperature The temperature at the evaluation time per path.
+	 * @param temperatureMaximum The maximum temperature over the time horizon per path.
+	 * @param socialCostOfCarbon The social cost of carbon per path.
+	 * @param temperatureMean The expected temperature for each time index.
+	 * @param temperatureStandardDeviation The standard deviation of the temperature for each time index.
+	 * @param likelihoodRatio The likelihood ratio (weight) per path, 1 if the simulation is not importance sampled.
+	 */
+	public record Result(RandomVariable welfare, RandomVariable temperature, RandomVariable temperatureMaximum, RandomVariable socialCostOfCarbon,
+			double[] temperatureMean, double[] temperatureStandardDeviation, RandomVariable likelihoodRatio) {}
+
+	/**
+	 * Result of the Monte Carlo simulation without paths (bounded memory), see {@link DICEMonteCarloEngine#simulateSketches(int, long, int, CancellationToken)}.
+	 *
+	 * @param welfare Sketch of the welfare (discounted utility).
+	 * @param temperature Sketch of the temperature at the evaluation time.
+	 * @param temperatureMaximum Sketch of the maximum temperature over the time horizon.
+	 * @param socialCostOfCarbon Sketch of the social cost of carbon.
+	 * @param temperatureMean The expected temperature for each time index.
+	 * @param temperatureStandardDeviation The standard deviation of the temperature for each time index.
+	 */
+	public record SketchResult(QuantileSketch welfare, QuantileSketch temperature, QuantileSketch temperatureMaximum, QuantileSketch socialCostOfCarbon,
+			double[] temperatureMean, double[] temperatureStandardDeviation) {}
+
+	private interface PathConsumer {
+		void accept(int path, double[] values, double weight);
+	}
+
+	private final TimeDiscretization timeDiscretization;
+	private final double[] abatement;
+	private final double[] savingsRate;
+	private final double discountRate;
+	private final int evaluationTimeIndex;
+
+	private final double climateSensitivityMedian;
+	private final double climateSensitivityLogVolatility;
+	private final double damageCoefficientMedian;
+	private final double damageCoefficientLogVolatility;
+	private final double productivityGrowthMean;
+	private final double productivityGrowthStandardDeviation;
+
+	/**
+	 * Create the Monte Carlo engine.
+	 *
+	 * @param timeDiscretization The time discretization.
+	 * @param abatementFunction The abatement as a function of time.
+	 * @param savingsRateFunction The savings rate as a function of time.
+	 * @param discountRate The discount rate.
+	 * @param evaluationTime The time at which the temperature is reported.
+	 * @param climateSensitivityMedian Median of the equilibrium climate sensitivity.
+	 * @param climateSensitivityLogVolatility Standard deviation of the log of the equilibrium climate sensitivity.
+	 * @param damageCoefficientMedian Median of the damage coefficient.
+	 * @param damageCoefficientLogVolatility Standard deviation of the log of the damage coefficient.
+	 * @param productivityGrowthMean Mean of the initial growth rate of the total factor productivity.
+	 * @param productivityGrowthStandardDeviation Standard deviation of the initial growth rate of the total factor productivity.
+	 */
+	public DICEMonteCarloEngine(TimeDiscretization timeDiscretization, UnaryOperator<Double> abatementFunction, UnaryOperator<Double> savingsRateFunction,
+			double discountRate, double evaluationTime,
+			double climateSensitivityMedian, double climateSensitivityLogVolatility,
+			double damageCoefficientMedian, double damageCoefficientLogVolatility,
+			double productivityGrowthMean, double productivityGrowthStandardDeviation) {
+		this.timeDiscretization = timeDiscretization;
+		this.discountRate = discountRate;
+		this.evaluationTimeIndex = Math.min(timeDiscretization.getNumberOfTimes()-1, Math.max(0, (int)Math.round(evaluationTime / timeDiscretization.getTimeStep(0))));
+		this.climateSensitivityMedian = climateSensitivityMedian;
+		this.climateSensitivityLogVolatility = climateSensitivityLogVolatility;
+		this.damageCoefficientMedian = damageCoefficientMedian;
+		this.damageCoefficientLogVolatility = damageCoefficientLogVolatility;
+		this.productivityGrowthMean = productivityGrowthMean;
+		this.productivityGrowthStandardDeviation = productivityGrowthStandardDeviation;
+
+		abatement = new double[timeDiscretization.getNumberOfTimes()];
+		savingsRate = new double[timeDiscretization.getNumberOfTimes()];
+		for(int timeIndex=0; timeIndex<timeDiscretization.getNumberOfTimes(); timeIndex++) {
+			abatement[timeIndex] = abatementFunction.apply(timeDiscretization.getTime(timeIndex));
+			savingsRate[timeIndex] = savingsRateFunction.apply(timeDiscretization.getTime(timeIndex));
+		}
+	}
+
+	/**
+	 * Create the Monte Carlo engine with a default specification of the parameter uncertainty.
+	 *
+	 * @param timeDiscretization The time discretization.
+	 * @param abatementFunction The abatement as a function of time.
+	 * @param savingsRateFunction The savings rate as a function of time.
+	 * @param discountRate The discount rate.
+	 * @param evaluationTime The time at which the temperature is reported.
+	 */
+	public DICEMonteCarloEngine(TimeDiscretization timeDiscretization, UnaryOperator<Double> abatementFunction, UnaryOperator<Double> savingsRateFunction,
+			double discountRate, double evaluationTime) {
+		this(timeDiscretization, abatementFunction, savingsRateFunction, discountRate, evaluationTime,
+				DICEModelDynamics.EQUILIBRIUM_CLIMATE_SENSITIVITY, 0.3,
+				DICEModelDynamics.DAMAGE_COEFFICIENT, 0.5,
+				DICEModelDynamics.PRODUCTIVITY_GROWTH, 0.015);
+	}
+
+	/**
+	 * Run the simulation.
+	 *
+	 * @param numberOfPaths The number of paths.
+	 * @param seed The seed of the random number generator.
+	 * @return The result.
+	 */
+	public Result simulate(int numberOfPaths, long seed) {
+		return simulate(numberOfPaths, seed, new CancellationToken());
+	}
+
+	/**
+	 * Run the simulation. The cancellation is polled per path.
+	 *
+	 * @param numberOfPaths The number of paths.
+	 * @param seed The seed of the random number generator.
+	 * @param cancellationToken The cancellation token.
+	 * @return The result.
+	 * @throws java.util.concurrent.CancellationException Thrown if the simulation has been cancelled.
+	 */
+	public Result simulate(int numberOfPaths, long seed, CancellationToken cancellationToken) {
+		return simulate(numberOfPaths, seed, null, cancellationToken);
+	}
+
+	/**
+	 * Run the simulation with importance sampling: the standard normal draws of the climate sensitivity, the damage coefficient and the
+	 * productivity growth are shifted by the given drift (e.g. positive values for the first two shift the paths toward high temperatures and damages).
+	 * Each path carries the likelihood ratio exp(-&theta;&middot;Z + |&theta;|<sup>2</sup>/2) (Z the shifted draws), which is used as weight for
+	 * the temperature statistics and has to be used with the <code>weighted...</code> risk measures of {@link RandomOperators}.
+	 * The cancellation is polled per path.
+	 *
+	 * @param numberOfPaths The number of paths.
+	 * @param seed The seed of the random number generator.
+	 * @param drift The shifts &theta; of the three standard normal draws (may be null for no shift).
+	 * @param cancellationToken The cancellation token.
+	 * @return The result.
+	 * @throws java.util.concurrent.CancellationException Thrown if the simulation has been cancelled.
+	 */
+	public Result simulate(int numberOfPaths, long seed, double[] drift, CancellationToken cancellationToken) {
+		final double[] welfare = new double[numberOfPaths];
+		final double[] temperature = new double[numberOfPaths];
+		final double[] temperatureMaximum = new double[numberOfPaths];
+		final double[] socialCostOfCarbon = new double[numberOfPaths];
+
+		final double[] likelihoodRatio = drift != null ? new double[numberOfPaths] : null;
+
+		final ChunkAggregate aggregate = simulateChunks(numberOfPaths, seed, drift, 0, cancellationToken, (path, values, weight) -> {
+			welfare[path] = values[0];
+			temperature[path] = values[1];
+			temperatureMaximum[path] = values[2];
+			socialCostOfCarbon[path] = values[3];
+			if(likelihoodRatio != null) {
+				likelihoodRatio[path] = weight;
+			}
+		});
+
+		return new Result(
+				new RandomVariableFromDoubleArray(0.0, welfare),
+				new RandomVariableFromDoubleArray(timeDiscretization.getTime(evaluationTimeIndex), temperature),
+				new RandomVariableFromDoubleArray(0.0, temperatureMaximum),
+				new RandomVariableFromDoubleArray(0.0, socialCostOfCarbon),
+				aggregate.getMean(), aggregate.getStandardDeviation(),
+				likelihoodRatio != null ? new RandomVariableFromDoubleArray(0.0, likelihoodRatio) : new RandomVariableFromDoubleArray(1.0));
+	}
+
+	/**
+	 * Run the simulation without storing the paths: the scalar results are accumulated in mergeable {@link QuantileSketch}es
+	 * (one per chunk, merged), such that the memory is bounded independent of the number of paths (e.g. for 10^7 paths).
+	 * The paths (hence expectations) are the same as for {@link #simulate(int, long, CancellationToken)}, quantiles and expected shortfall are approximations,
+	 * see {@link QuantileSketch} for the error bounds.
+	 *
+	 * @param numberOfPaths The number of paths.
+	 * @param seed The seed of the random number generator.
+	 * @param k The capacity parameter of the sketches (e.g. {@link QuantileSketch#DEFAULT_K}).
+	 * @param cancellationToken The cancellation token.
+	 * @return The result.
+	 * @throws java.util.concurrent.CancellationException Thrown if the simulation has been cancelled.
+	 */
+	public SketchResult simulateSketches(int numberOfPaths, long seed, int k, CancellationToken cancellationToken) {
+		final ChunkAggregate aggregate = simulateChunks(numberOfPaths, seed, null, k, cancellationToken, null);
+		return new SketchResult(aggregate.sketches[0], aggregate.sketches[1], aggregate.sketches[2], aggregate.sketches[3],
+				aggregate.getMean(), aggregate.getStandardDeviation());
+	}
+
+	/*
+	 * Evaluate the paths in parallel chunks. For each path the scalar results (welfare, temperature, temperature maximum, social cost of carbon)
+	 * are passed to the consumer (if not null) and added to the sketches of the chunk (if k > 0).
+	 * If a drift is given, the normal draws are shifted and the paths are weighted by the likelihood ratio.
+	 */
+	private ChunkAggregate simulateChunks(int numberOfPaths, long seed, double[] drift, int k, CancellationToken cancellationToken, PathConsumer consumer) {
+		final double[] shift = drift != null ? drift : new double[3];
+		final double logLikelihoodRatioOffset = 0.5 * (shift[0] * shift[0] + shift[1] * shift[1] + shift[2] * shift[2]);
+
+		final int numberOfTimes = timeDiscretization.getNumberOfTimes();
+		final int numberOfChunks = (numberOfPaths + chunkSize - 1) / chunkSize;
+
+		// Split the generators in chunk order (reproducible, independent of the parallel execution)
+		final SplittableRandom randomNumberGenerator = new SplittableRandom(seed);
+		final SplittableRandom[] randomNumberGeneratorOfChunk = new SplittableRandom[numberOfChunks];
+		for(int chunk=0; chunk<numberOfChunks; chunk++) {
+			randomNumberGeneratorOfChunk[chunk] = randomNumberGenerator.split();
+		}
+		// Independent seeds for the sketches of each chunk (from a further split, the path generators are not affected)
+		final SplittableRandom sketchSeedGenerator = randomNumberGenerator.split();
+		final long[] sketchSeedOfChunk = new long[numberOfChunks];
+		for(int chunk=0; chunk<numberOfChunks; chunk++) {
+			sketchSeedOfChunk[chunk] = sketchSeedGenerator.nextLong();
+		}
+
+		return IntStream.range(0, numberOfChunks).parallel().mapToObj(chunk -> {
+			final SplittableRandom random = randomNumberGeneratorOfChunk[chunk];
+			final ChunkAggregate chunkAggregate = new ChunkAggregate(numberOfTimes, k, sketchSeedOfChunk[chunk]);
+			final double[] temperaturePath = new double[numberOfTimes];
+			final double[] values = new double[4];
+			for(int path = chunk * chunkSize; path < Math.min(numberOfPaths, (chunk+1) * chunkSize); path++) {
+				cancellationToken.throwIfCancellationRequested();
+				final double climateSensitivityDraw = random.nextGaussian() + shift[0];
+				final double damageCoefficientDraw = random.nextGaussian() + shift[1];
+				final double productivityGrowthDraw = random.nextGaussian() + shift[2];
+				final double weight = drift != null ?
+						Math.exp(logLikelihoodRatioOffset - shift[0] * climateSensitivityDraw - shift[1] * damageCoefficientDraw - shift[2] * productivityGrowthDraw) : 1.0;
+
+				final double climateSensitivity = climateSensitivityMedian * Math.exp(climateSensitivityLogVolatility * climateSensitivityDraw);
+				final double damageCoefficient = damageCoefficientMedian * Math.exp(damageCoefficientLogVolatility * damageCoefficientDraw);
+				final double productivityGrowth = productivityGrowthMean + productivityGrowthStandardDeviation * productivityGrowthDraw;
+
+				final DICEModelDynamics dynamics = new DICEModelDynamics(timeDiscretization, climateSensitivity, damageCoefficient, productivityGrowth);
+
+				final double value = getWelfare(dynamics, 0.0, 0.0, temperaturePath);
+				final double valueEmissionShifted = getWelfare(dynamics, 0.01, 0.0, null);
+				final double valueConsumptionShifted = getWelfare(dynamics, 0.0, 0.01, null);
+
+				double maximum = -Double.MAX_VALUE;
+				for(int timeIndex=0; timeIndex<numberOfTimes; timeIndex++) {
+					maximum = Math.max(maximum, temperaturePath[timeIndex]);
+				}
+
+				values[0] = value;
+				values[1] = temperaturePath[evaluationTimeIndex];
+				values[2] = maximum;
+				// scc = dV/dE / dV/dC (see DICEModelSocialCostOfCarbon)
+				values[3] = -(valueEmissionShifted-value) / (valueConsumptionShifted-value) * 1000;
+
+				if(consumer != null) {
+					consumer.accept(path, values, weight);
+				}
+				chunkAggregate.add(temperaturePath, values, weight);
+			}
+			return chunkAggregate;
+		}).reduce(ChunkAggregate::merge).orElse(new ChunkAggregate(numberOfTimes, k, seed));
+	}
+
+	/*
+	 * Welfare of a single path, with a shift of emission and consumption at time index 1.
+	 */
+	private double getWelfare(DICEModelDynamics dynamics, double emissionShift, double consumptionShift, double[] temperaturePath) {
+		final double[] state = dynamics.getInitialState();
+		double welfare = 0.0;
+		for(int timeIndex=0; timeIndex<timeDiscretization.getNumberOfTimeSteps(); timeIndex++) {
+			if(temperaturePath != null) {
+				temperaturePath[timeIndex] = state[DICEModelDynamics.TEMPERATURE_ATMOSPHERE];
+			}
+			final boolean isShift = timeIndex == 1;
+			final double utility = dynamics.step(timeIndex, state, abatement[timeIndex], savingsRate[timeIndex],
+					isShift ? emissionShift : 0.0, isShift ? consumptionShift : 0.0, state);
+			welfare += utility * timeDiscretization.getTimeStep(timeIndex) * Math.exp(-discountRate * timeDiscretization.getTime(timeIndex));
+		}
+		if(temperaturePath != null) {
+			temperaturePath[timeDiscretization.getNumberOfTimes()-1] = state[DICEModelDynamics.TEMPERATURE_ATMOSPHERE];
+		}
+		return welfare;
+	}
+
+	/**
+	 * Per time step (weighted) sums of a chunk of paths and (optionally) sketches of the scalar results (mergeable).
+	 */
+	private static class ChunkAggregate {
+		private final double[] sum;
+		private final double[] sumOfSquares;
+		private final QuantileSketch[] sketches;
+		private double sumOfWeights;
+
+		ChunkAggregate(int numberOfTimes, int k, long seed) {
+			sum = new double[numberOfTimes];
+			sumOfSquares = new double[numberOfTimes];
+			if(k > 0) {
+				// Each sketch draws its compaction offsets from its own seed
+				final SplittableRandom seeds = new SplittableRandom(seed);
+				sketches = new QuantileSketch[] { new QuantileSketch(k, seeds.nextLong()), new QuantileSketch(k, seeds.nextLong()), new QuantileSketch(k, seeds.nextLong()), new QuantileSketch(k, seeds.nextLong()) };
+			}
+			else {
+				sketches = null;
+			}
+		}
+
+		void add(double[] path, double[] scalarValues, double weight) {
+			for(int i=0; i<path.length; i++) {
+				sum[i] += weight * path[i];
+				sumOfSquares[i] += weight * path[i] * path[i];
+			}
+			if(sketches != null) {
+				for(int i=0; i<sketches.length; i++) {
+					sketches[i].add(scalarValues[i]);
+				}
+			}
+			sumOfWeights += weight;
+		}
+
+		ChunkAggregate merge(ChunkAggregate other) {
+			for(int i=0; i<sum.length; i++) {
+				sum[i] += other.sum[i];
+				sumOfSquares[i] += other.sumOfSquares[i];
+			}
+			if(sketches != null) {
+				for(int i=0; i<sketches.length; i++) {
+					sketches[i].merge(other.sketches[i]);
+				}
+			}
+			sumOfWeights += other.sumOfWeights;
+			return this;
+		}
+
+		double[] getMean() {
+			final double[] mean = new double[sum.length];
+			for(int i=0; i<sum.length; i++) {
+				mean[i] = sum[i] / sumOfWeights;
+			}
+			return mean;
+		}
+
+		double[] getStandardDeviation() {
+			final double[] standardDeviation = new double[sum.length];
+			for(int i=0; i<sum.length; i++) {
+				final double mean = sum[i] / sumOfWeights;
+				standardDeviation[i] = Math.sqrt(Math.max(sumOfSquares[i] / sumOfWeights - mean * mean, 0.0));
+			}
+			return standardDeviation;
+		}
+	}
+}
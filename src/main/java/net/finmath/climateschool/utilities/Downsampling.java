@@ -0,0 +1,219 @@
+package net.finmath.climateschool.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.finmath.plots.Point2D;
+
+/**
+ * Downsampling of series before they are plotted.
+ *
+ * Two methods are provided:
+ * <ul>
+ * 	<li>Largest-Triangle-Three-Buckets (LTTB): selects a given number of points, keeping the visual shape of a (smooth) line.</li>
+ * 	<li>M4 (first, minimum, maximum, last per pixel column): selects at most four points per pixel column, such that a line
+ * 		through the selected points is identical (at pixel resolution) to the line through all points.</li>
+ * </ul>
+ * Both methods return the series unchanged if the number of points does not exceed the number of pixels (buckets),
+ * hence they do not change what is shown at normal zoom, but keep the render cost flat for long series.
+ * The x values are assumed to be increasing.
+ *
+ * @author Christian Fries
+ */
+public class Downsampling {
+
+	/**
+	 * The number of points used for plot windows (about their width in pixels).
+	 */
+	public static final int DEFAULT_NUMBER_OF_POINTS = 1000;
+
+	private Downsampling() {}
+
+	/**
+	 * Select the indices of the points using the Largest-Triangle-Three-Buckets algorithm.
+	 *
+	 * @param x The x values.
+	 * @param y The y values.
+	 * @param length The number of points to consider.
+	 * @param threshold The number of points to select (at least 3).
+	 * @return The indices of the selected points (all indices if length &le; threshold).
+	 */
+	public static int[] getIndicesLargestTriangleThreeBuckets(double[] x, double[] y, int length, int threshold) {
+		if(length <= threshold || threshold < 3) {
+			final int[] indices = new int[length];
+			for(int i=0; i<length; i++) {
+				indices[i] = i;
+			}
+			return indices;
+		}
+
+		final int[] indices = new int[threshold];
+		final double bucketSize = (double)(length - 2) / (threshold - 2);
+
+		int selected = 0;
+		indices[0] = 0;
+		for(int bucket=0; bucket<threshold-2; bucket++) {
+			// Average of the next bucket (the last point for the last bucket)
+			final int nextStart = (int)Math.floor((bucket + 1) * bucketSize) + 1;
+			final int nextEnd = Math.min((int)Math.floor((bucket + 2) * bucketSize) + 1, length);
+			double averageX = 0.0;
+			double averageY = 0.0;
+			for(int i=nextStart; i<nextEnd; i++) {
+				averageX += x[i];
+				averageY += y[i];
+			}
+			final int nextCount = nextEnd - nextStart;
+			if(nextCount > 0) {
+				averageX /= nextCount;
+				averageY /= nextCount;
+			}
+			else {
+				averageX = x[length-1];
+				averageY = y[length-1];
+			}
+
+			// Point of the current bucket forming the largest triangle with the previously selected point and the average
+			final int start = (int)Math.floor(bucket * bucketSize) + 1;
+			final int end = (int)Math.floor((bucket + 1) * bucketSize) + 1;
+			final double selectedX = x[selected];
+			final double selectedY = y[selected];
+			double areaMax = -1.0;
+			int indexMax = start;
+			for(int i=start; i<end; i++) {
+				final double area = Math.abs((selectedX - averageX) * (y[i] - selectedY) - (selectedX - x[i]) * (averageY - selectedY));
+				if(area > areaMax) {
+					areaMax = area;
+					indexMax = i;
+				}
+			}
+			indices[bucket+1] = indexMax;
+			selected = indexMax;
+		}
+		indices[threshold-1] = length-1;
+
+		return indices;
+	}
+
+	/**
+	 * Select the indices of the first, minimum, maximum and last point of each pixel column (M4).
+	 * The pixel columns are given by <code>numberOfBuckets</code> buckets of equal width covering <code>[xMin, xMax]</code>;
+	 * points outside this interval are bucketed with the same width.
+	 *
+	 * @param x The x values.
+	 * @param y The y values.
+	 * @param from The first index to consider.
+	 * @param to The index after the last index to consider.
+	 * @param xMin The left boundary of the visible x range.
+	 * @param xMax The right boundary of the visible x range.
+	 * @param numberOfBuckets The number of pixel columns of the visible x range.
+	 * @param indices Array receiving the indices (length at least <code>to - from</code>).
+	 * @return The number of selected indices (all indices if to - from &le; numberOfBuckets).
+	 */
+	public static int getIndicesM4(double[] x, double[] y, int from, int to, double xMin, double xMax, int numberOfBuckets, int[] indices) {
+		if(to - from <= numberOfBuckets) {
+			for(int i=from; i<to; i++) {
+				indices[i-from] = i;
+			}
+			return to - from;
+		}
+
+		final double bucketsPerUnit = numberOfBuckets / (xMax - xMin);
+
+		int count = 0;
+		long bucket = Long.MIN_VALUE;
+		int first = -1, last = -1, min = -1, max = -1;
+		for(int i=from; i<=to; i++) {
+			final long bucketOfPoint = i < to ? (long)Math.floor((x[i] - xMin) * bucketsPerUnit) : Long.MAX_VALUE;
+			if(bucketOfPoint != bucket) {
+				if(first >= 0) {
+					count = addSorted(indices, count, first, min, max, last);
+				}
+				if(i == to) {
+					break;
+				}
+				bucket = bucketOfPoint;
+				first = last = min = max = i;
+			}
+			else {
+				last = i;
+				if(y[i] < y[min]) {
+					min = i;
+				}
+				if(y[i] > y[max]) {
+					max = i;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Downsample a series to <code>threshold</code> points using Largest-Triangle-Three-Buckets.
+	 *
+	 * @param x The x values.
+	 * @param y The y values.
+	 * @param threshold The maximum number of points.
+	 * @return Array <code>{ x, y }</code> of the downsampled series (the given arrays if no downsampling is required).
+	 */
+	public static double[][] largestTriangleThreeBuckets(double[] x, double[] y, int threshold) {
+		final int length = Math.min(x.length, y.length);
+		if(length <= threshold) {
+			return new double[][] { x, y };
+		}
+		final int[] indices = getIndicesLargestTriangleThreeBuckets(x, y, length, threshold);
+		final double[] xDownsampled = new double[indices.length];
+		final double[] yDownsampled = new double[indices.length];
+		for(int i=0; i<indices.length; i++) {
+			xDownsampled[i] = x[indices[i]];
+			yDownsampled[i] = y[indices[i]];
+		}
+		return new double[][] { xDownsampled, yDownsampled };
+	}
+
+	/**
+	 * Downsample a series to {@link #DEFAULT_NUMBER_OF_POINTS} points using Largest-Triangle-Three-Buckets.
+	 *
+	 * @param x The x values.
+	 * @param y The y values.
+	 * @return Array <code>{ x, y }</code> of the downsampled series (the given arrays if no downsampling is required).
+	 */
+	public static double[][] largestTriangleThreeBuckets(double[] x, double[] y) {
+		return largestTriangleThreeBuckets(x, y, DEFAULT_NUMBER_OF_POINTS);
+	}
+
+	/**
+	 * Create the points of a series for {@link net.finmath.plots.PlotablePoints2D}, downsampled to {@link #DEFAULT_NUMBER_OF_POINTS}.
+	 *
+	 * @param x The x values.
+	 * @param y The y values.
+	 * @return The list of points.
+	 */
+	public static List<Point2D> getPoints(double[] x, double[] y) {
+		final int length = Math.min(x.length, y.length);
+		final int[] indices = getIndicesLargestTriangleThreeBuckets(x, y, length, DEFAULT_NUMBER_OF_POINTS);
+		final List<Point2D> points = new ArrayList<Point2D>(indices.length);
+		for(final int index : indices) {
+			points.add(new Point2D(x[index], y[index]));
+		}
+		return points;
+	}
+
+	/*
+	 * Append the (up to four) distinct indices in increasing order.
+	 */
+	private static int addSorted(int[] indices, int count, int first, int min, int max, int last) {
+		final int lower = Math.min(min, max);
+		final int upper = Math.max(min, max);
+		indices[count++] = first;
+		if(lower != first) {
+			indices[count++] = lower;
+		}
+		if(upper != lower && upper != first) {
+			indices[count++] = upper;
+		}
+		if(last != upper && last != lower && last != first) {
+			indices[count++] = last;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,307 @@
+package net.finmath.climateschool.utilities;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * Solves for the optimal abatement path of the DICE model by dynamic programming.
+ *
+ * The abatement &mu; is treated as a control. The state (carbon in atmosphere, temperature of atmosphere, capital)
+ * is discretized on a grid (one grid per time, spanned by the paths of no and of full abatement) and the Bellman recursion
+ * <pre>
+ * V(t,x) = max_&mu; { u(t,x,&mu;) &Delta;t + exp(-r &Delta;t) V(t+&Delta;t, x'(t,x,&mu;)) }
+ * </pre>
+ * is solved backward in time, using trilinear interpolation of V in x'. The grid nodes of a time step are
+ * evaluated in parallel. The remaining state components (carbon in upper and lower ocean, ocean temperature) react
+ * slowly and are taken from a reference path. The reference path is updated with the optimal path and the recursion
+ * is repeated <code>numberOfReferenceIterations</code> times.
+ *
+ * The optimal path is obtained by a forward simulation, where in each time step the Bellman maximisation is
+ * carried out for the actual state.
+ *
+ * @author Christian Fries
+ */
+public class DynamicProgrammingAbatementSolver {
+
+	private static final int[] gridStateIndex = new int[] {
+			DICEModelDynamics.CARBON_ATMOSPHERE, DICEModelDynamics.TEMPERATURE_ATMOSPHERE, DICEModelDynamics.CAPITAL };
+
+	/**
+	 * Result of the dynamic programming: the optimal abatement path and the optimal policy on the state grid.
+	 *
+	 * @param abatement The optimal abatement path (one value per time index).
+	 * @param policy The optimal abatement for each time index and grid node.
+	 * @param gridLower The lower bounds of the grid for each time index (carbon, temperature, capital).
+	 * @param gridUpper The upper bounds of the grid for each time index (carbon, temperature, capital).
+	 * @param numberOfNodes The number of grid nodes per dimension (carbon, temperature, capital).
+	 * @param welfare The welfare of the optimal abatement path under {@link DICEModelDynamics}.
+	 */
+	public record Result(double[] abatement, double[][] policy, double[][] gridLower, double[][] gridUpper, int[] numberOfNodes, double welfare) {
+
+		/**
+		 * Returns the optimal abatement for a given time index and state (interpolated from the grid).
+		 *
+		 * @param timeIndex The time index.
+		 * @param carbon The carbon in atmosphere (GtC).
+		 * @param temperature The temperature of atmosphere (°C).
+		 * @param capital The capital (Tr$).
+		 * @return The optimal abatement.
+		 */
+		public double getPolicy(int timeIndex, double carbon, double temperature, double capital) {
+			return interpolate(policy[timeIndex], gridLower[timeIndex], gridUpper[timeIndex], numberOfNodes, carbon, temperature, capital);
+		}
+	}
+
+	private final DICEModelDynamics dynamics;
+	private final UnaryOperator<Double> savingsRateFunction;
+	private final double discountRate;
+	private final int[] numberOfNodes;
+	private final int numberOfAbatementLevels;
+	private final double abatementInitial;
+	private final int numberOfReferenceIterations;
+
+	/**
+	 * Create the solver.
+	 *
+	 * @param dynamics The DICE dynamics.
+	 * @param savingsRateFunction The savings rate as a function of time.
+	 * @param discountRate The discount rate.
+	 * @param numberOfCarbonNodes Number of grid nodes for the carbon in atmosphere (at least 2).
+	 * @param numberOfTemperatureNodes Number of grid nodes for the temperature (at least 2).
+	 * @param numberOfCapitalNodes Number of grid nodes for the capital (at least 2).
+	 * @param numberOfAbatementLevels Number of abatement values in [0,1] tried in the maximisation (refined by a parabolic step).
+	 * @param abatementInitial The (fixed) abatement at time 0.
+	 * @param numberOfReferenceIterations Number of updates of the reference path of the non-grid state components.
+	 */
+	public DynamicProgrammingAbatementSolver(DICEModelDynamics dynamics, UnaryOperator<Double> savingsRateFunction, double discountRate,
+			int numberOfCarbonNodes, int numberOfTemperatureNodes, int numberOfCapitalNodes, int numberOfAbatementLevels,
+			double abatementInitial, int numberOfReferenceIterations) {
+		if(numberOfCarbonNodes < 2 || numberOfTemperatureNodes < 2 || numberOfCapitalNodes < 2) {
+			throw new IllegalArgumentException("The grid requires at least two nodes per dimension.");
+		}
+		if(numberOfAbatementLevels < 3) {
+			throw new IllegalArgumentException("The number of abatement levels has to be at least 3.");
+		}
+		this.dynamics = dynamics;
+		this.savingsRateFunction = savingsRateFunction;
+		this.discountRate = discountRate;
+		this.numberOfNodes = new int[] { numberOfCarbonNodes, numberOfTemperatureNodes, numberOfCapitalNodes };
+		this.numberOfAbatementLevels = numberOfAbatementLevels;
+		this.abatementInitial = abatementInitial;
+		this.numberOfReferenceIterations = Math.max(1, numberOfReferenceIterations);
+	}
+
+	/**
+	 * Create the solver with default grid sizes (10 x 10 x 6 nodes, 21 abatement levels, 2 reference iterations).
+	 *
+	 * @param dynamics The DICE dynamics.
+	 * @param savingsRateFunction The savings rate as a function of time.
+	 * @param discountRate The discount rate.
+	 */
+	public DynamicProgrammingAbatementSolver(DICEModelDynamics dynamics, UnaryOperator<Double> savingsRateFunction, double discountRate) {
+		this(dynamics, savingsRateFunction, discountRate, 10, 10, 6, 21, 0.03, 2);
+	}
+
+	public Result solve() {
+		return solve(new CancellationToken());
+	}
+
+	/**
+	 * Solve for the optimal abatement path. The cancellation is polled per time step and grid node.
+	 *
+	 * @param cancellationToken The cancellation token.
+	 * @return The result.
+	 * @throws java.util.concurrent.CancellationException Thrown if the calculation has been cancelled.
+	 */
+	public Result solve(CancellationToken cancellationToken) {
+		final TimeDiscretization timeDiscretization = dynamics.getTimeDiscretization();
+		final int numberOfTimes = timeDiscretization.getNumberOfTimes();
+		final int numberOfGridNodes = numberOfNodes[0] * numberOfNodes[1] * numberOfNodes[2];
+
+		final double[] savingsRate = new double[numberOfTimes];
+		for(int timeIndex=0; timeIndex<numberOfTimes; timeIndex++) {
+			savingsRate[timeIndex] = savingsRateFunction.apply(timeDiscretization.getTime(timeIndex));
+		}
+
+		// Reference path for the non-grid state components (initial guess: 80 % abatement)
+		double[] abatement = new double[numberOfTimes];
+		Arrays.fill(abatement, 0.8);
+		abatement[0] = abatementInitial;
+
+		double[][] policy = null;
+		double[][] gridLower = null;
+		double[][] gridUpper = null;
+		for(int iteration = 0; iteration < numberOfReferenceIterations; iteration++) {
+			final double[][] statesReference = simulate(abatement, savingsRate);
+
+			/*
+			 * Grid bounds per time: spanned by the reference path and the paths of no and full abatement
+			 */
+			final double[] abatementNone = new double[numberOfTimes];
+			final double[] abatementFull = new double[numberOfTimes];
+			Arrays.fill(abatementFull, 1.0);
+			abatementNone[0] = abatementInitial;
+			abatementFull[0] = abatementInitial;
+			final double[][][] statesBounding = new double[][][] { statesReference, simulate(abatementNone, savingsRate), simulate(abatementFull, savingsRate) };
+
+			gridLower = new double[numberOfTimes][3];
+			gridUpper = new double[numberOfTimes][3];
+			for(int timeIndex=0; timeIndex<numberOfTimes; timeIndex++) {
+				for(int dimension=0; dimension<3; dimension++) {
+					double min = Double.MAX_VALUE;
+					double max = -Double.MAX_VALUE;
+					for(final double[][] states : statesBounding) {
+						min = Math.min(min, states[timeIndex][gridStateIndex[dimension]]);
+						max = Math.max(max, states[timeIndex][gridStateIndex[dimension]]);
+					}
+					final double margin = 0.1 * (max-min) + 1E-3 * Math.abs(max) + 1E-6;
+					gridLower[timeIndex][dimension] = min - margin;
+					gridUpper[timeIndex][dimension] = max + margin;
+				}
+			}
+
+			/*
+			 * Backward induction (terminal value is 0)
+			 */
+			final double[][] value = new double[numberOfTimes][numberOfGridNodes];
+			policy = new double[numberOfTimes][numberOfGridNodes];
+			for(int timeIndex = numberOfTimes-2; timeIndex >= 0; timeIndex--) {
+				cancellationToken.throwIfCancellationRequested();
+				final int currentTimeIndex = timeIndex;
+				final double[] gridLowerOfTime = gridLower[timeIndex];
+				final double[] gridUpperOfTime = gridUpper[timeIndex];
+				final double[] valueNext = value[timeIndex+1];
+				final double[] gridLowerNext = gridLower[timeIndex+1];
+				final double[] gridUpperNext = gridUpper[timeIndex+1];
+				final double[] valueOfTime = value[timeIndex];
+				final double[] policyOfTime = policy[timeIndex];
+				final double[] stateReference = statesReference[timeIndex];
+
+				IntStream.range(0, numberOfGridNodes).parallel().forEach(node -> {
+					if(cancellationToken.isCancellationRequested()) return;
+					final double[] state = stateReference.clone();
+					int nodeRemainder = node;
+					for(int dimension=2; dimension>=0; dimension--) {
+						final int index = nodeRemainder % numberOfNodes[dimension];
+						nodeRemainder /= numberOfNodes[dimension];
+						state[gridStateIndex[dimension]] = gridLowerOfTime[dimension] + (gridUpperOfTime[dimension]-gridLowerOfTime[dimension]) * index / (numberOfNodes[dimension]-1);
+					}
+					final double[] optimum = getOptimalAbatement(currentTimeIndex, state, savingsRate[currentTimeIndex], valueNext, gridLowerNext, gridUpperNext);
+					policyOfTime[node] = optimum[0];
+					valueOfTime[node] = optimum[1];
+				});
+			}
+			policy[numberOfTimes-1] = policy[numberOfTimes-2].clone();
+
+			/*
+			 * Forward simulation of the optimal path
+			 */
+			abatement = new double[numberOfTimes];
+			final double[] state = dynamics.getInitialState();
+			for(int timeIndex=0; timeIndex<numberOfTimes-1; timeIndex++) {
+				abatement[timeIndex] = getOptimalAbatement(timeIndex, state, savingsRate[timeIndex], value[timeIndex+1], gridLower[timeIndex+1], gridUpper[timeIndex+1])[0];
+				dynamics.step(timeIndex, state, abatement[timeIndex], savingsRate[timeIndex], state);
+			}
+			abatement[numberOfTimes-1] = abatement[numberOfTimes-2];
+		}
+
+		cancellationToken.throwIfCancellationRequested();
+
+		final double welfare = dynamics.getWelfare(abatement, savingsRate, discountRate);
+
+		return new Result(abatement, policy, gridLower, gridUpper, numberOfNodes.clone(), welfare);
+	}
+
+	/**
+	 * Maximise the right hand side of the Bellman equation over the abatement.
+	 *
+	 * @return Array {abatement, value}.
+	 */
+	private double[] getOptimalAbatement(int timeIndex, double[] state, double savingsRate, double[] valueNext, double[] gridLowerNext, double[] gridUpperNext) {
+		final double[] stateNext = new double[DICEModelDynamics.STATE_DIMENSION];
+
+		if(timeIndex == 0) {
+			return new double[] { abatementInitial, getBellmanValue(timeIndex, state, abatementInitial, savingsRate, valueNext, gridLowerNext, gridUpperNext, stateNext) };
+		}
+
+		final double[] values = new double[numberOfAbatementLevels];
+		int levelBest = 0;
+		for(int level=0; level<numberOfAbatementLevels; level++) {
+			final double abatement = (double)level / (numberOfAbatementLevels-1);
+			values[level] = getBellmanValue(timeIndex, state, abatement, savingsRate, valueNext, gridLowerNext, gridUpperNext, stateNext);
+			if(values[level] > values[levelBest]) {
+				levelBest = level;
+			}
+		}
+
+		double abatementBest = (double)levelBest / (numberOfAbatementLevels-1);
+		double valueBest = values[levelBest];
+
+		// Parabolic refinement around the best level
+		if(levelBest > 0 && levelBest < numberOfAbatementLevels-1) {
+			final double curvature = values[levelBest-1] - 2*values[levelBest] + values[levelBest+1];
+			if(curvature < 0) {
+				final double levelSpacing = 1.0 / (numberOfAbatementLevels-1);
+				final double abatementVertex = abatementBest + 0.5 * (values[levelBest-1] - values[levelBest+1]) / curvature * levelSpacing;
+				final double valueVertex = getBellmanValue(timeIndex, state, abatementVertex, savingsRate, valueNext, gridLowerNext, gridUpperNext, stateNext);
+				if(valueVertex > valueBest) {
+					abatementBest = abatementVertex;
+					valueBest = valueVertex;
+				}
+			}
+		}
+
+		return new double[] { abatementBest, valueBest };
+	}
+
+	private double getBellmanValue(int timeIndex, double[] state, double abatement, double savingsRate, double[] valueNext, double[] gridLowerNext, double[] gridUpperNext, double[] stateNext) {
+		final double timeStep = dynamics.getTimeDiscretization().getTimeStep(timeIndex);
+		final double utility = dynamics.step(timeIndex, state, abatement, savingsRate, stateNext);
+		final double continuationValue = interpolate(valueNext, gridLowerNext, gridUpperNext, numberOfNodes,
+				stateNext[DICEModelDynamics.CARBON_ATMOSPHERE], stateNext[DICEModelDynamics.TEMPERATURE_ATMOSPHERE], stateNext[DICEModelDynamics.CAPITAL]);
+
+		return utility * timeStep + Math.exp(-discountRate * timeStep) * continuationValue;
+	}
+
+	private double[][] simulate(double[] abatement, double[] savingsRate) {
+		final int numberOfTimes = dynamics.getTimeDiscretization().getNumberOfTimes();
+		final double[][] states = new double[numberOfTimes][];
+		states[0] = dynamics.getInitialState();
+		for(int timeIndex=0; timeIndex<numberOfTimes-1; timeIndex++) {
+			states[timeIndex+1] = new double[DICEModelDynamics.STATE_DIMENSION];
+			dynamics.step(timeIndex, states[timeIndex], abatement[timeIndex], savingsRate[timeIndex], states[timeIndex+1]);
+		}
+		return states;
+	}
+
+	/*
+	 * Trilinear interpolation on a uniform grid (constant extrapolation).
+	 */
+	private static double interpolate(double[] values, double[] lower, double[] upper, int[] numberOfNodes, double x0, double x1, double x2) {
+		final double[] x = new double[] { x0, x1, x2 };
+		final int[] index = new int[3];
+		final double[] weight = new double[3];
+		for(int dimension=0; dimension<3; dimension++) {
+			final int n = numberOfNodes[dimension];
+			final double position = Math.max(0.0, Math.min(n-1, (x[dimension]-lower[dimension]) / (upper[dimension]-lower[dimension]) * (n-1)));
+			index[dimension] = Math.min((int)position, n-2);
+			weight[dimension] = position - index[dimension];
+		}
+
+		double value = 0.0;
+		for(int corner=0; corner<8; corner++) {
+			double cornerWeight = 1.0;
+			int node = 0;
+			for(int dimension=0; dimension<3; dimension++) {
+				final int offset = (corner >> dimension) & 1;
+				cornerWeight *= offset == 1 ? weight[dimension] : 1-weight[dimension];
+				node = node * numberOfNodes[dimension] + index[dimension] + offset;
+			}
+			value += cornerWeight * values[node];
+		}
+		return value;
+	}
+}
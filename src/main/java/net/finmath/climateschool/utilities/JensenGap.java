@@ -0,0 +1,114 @@
+package net.finmath.climateschool.utilities;
+
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.DoubleStream;
+
+/**
+ * The Jensen gap E(f(X)) - f(E(X)) of a function f, estimated from a stream of samples of X in a single pass and constant memory.
+ *
+ * The moments of X and f(X) are accumulated with {@link StreamingStatistics}, in addition the co-moment of X and f(X), such that
+ * the standard error of the estimate can be given: the gap estimate mean(f(X)) - f(mean(X)) has (to first order) the variance of
+ * f(X) - f'(E(X)) X divided by n. For a convex f the gap is non-negative, for a linear f it is zero.
+ *
+ * Estimates of different threads are combined with {@link #combine(JensenGap)}, see {@link #of(DoubleStream, DoubleUnaryOperator)}.
+ *
+ * @author Christian Fries
+ */
+public class JensenGap implements DoubleConsumer {
+
+	private final DoubleUnaryOperator function;
+	private final StreamingStatistics statisticsOfSamples = new StreamingStatistics();
+	private final StreamingStatistics statisticsOfFunction = new StreamingStatistics();
+	private double coMoment = 0.0;
+
+	/**
+	 * Create an empty estimator.
+	 *
+	 * @param function The function f.
+	 */
+	public JensenGap(DoubleUnaryOperator function) {
+		this.function = function;
+	}
+
+	/**
+	 * Estimate the Jensen gap from a stream of samples (sequential or parallel).
+	 *
+	 * @param samples The samples of X.
+	 * @param function The function f.
+	 * @return The estimator.
+	 */
+	public static JensenGap of(DoubleStream samples, DoubleUnaryOperator function) {
+		return samples.collect(() -> new JensenGap(function), JensenGap::accept, JensenGap::combine);
+	}
+
+	@Override
+	public void accept(double value) {
+		final double valueOfFunction = function.applyAsDouble(value);
+		final double deltaOfSamples = statisticsOfSamples.getCount() > 0 ? value - statisticsOfSamples.getMean() : 0.0;
+		statisticsOfSamples.accept(value);
+		statisticsOfFunction.accept(valueOfFunction);
+		coMoment += deltaOfSamples * (valueOfFunction - statisticsOfFunction.getMean());
+	}
+
+	/**
+	 * Combine another estimator (for the same function) into this one. The other estimator is not modified.
+	 *
+	 * @param other The other estimator.
+	 * @return This estimator.
+	 */
+	public JensenGap combine(JensenGap other) {
+		final long count = statisticsOfSamples.getCount();
+		final long otherCount = other.statisticsOfSamples.getCount();
+		if(otherCount == 0) return this;
+		if(count > 0) {
+			coMoment += other.coMoment
+					+ (other.statisticsOfSamples.getMean() - statisticsOfSamples.getMean())
+					* (other.statisticsOfFunction.getMean() - statisticsOfFunction.getMean())
+					* ((double)count * otherCount / (count + otherCount));
+		}
+		else {
+			coMoment = other.coMoment;
+		}
+		statisticsOfSamples.combine(other.statisticsOfSamples);
+		statisticsOfFunction.combine(other.statisticsOfFunction);
+		return this;
+	}
+
+	/**
+	 * @return The estimate of E(f(X)) - f(E(X)).
+	 */
+	public double getGap() {
+		return statisticsOfFunction.getMean() - function.applyAsDouble(statisticsOfSamples.getMean());
+	}
+
+	/**
+	 * @return The standard error of the estimate of the gap (first order).
+	 */
+	public double getStandardError() {
+		final long count = statisticsOfSamples.getCount();
+		if(count < 2) return Double.NaN;
+
+		final double mean = statisticsOfSamples.getMean();
+		final double shift = 1E-6 * Math.max(Math.abs(mean), 1.0);
+		final double derivative = (function.applyAsDouble(mean + shift) - function.applyAsDouble(mean - shift)) / (2 * shift);
+
+		final double covariance = coMoment / (count-1);
+		final double variance = statisticsOfFunction.getSampleVariance() - 2 * derivative * covariance + derivative * derivative * statisticsOfSamples.getSampleVariance();
+		return Math.sqrt(Math.max(variance, 0.0) / count);
+	}
+
+	/**
+	 * @return The statistics of the samples X.
+	 */
+	public StreamingStatistics getStatisticsOfSamples() {
+		return statisticsOfSamples;
+	}
+
+	/**
+	 * @return The statistics of f(X).
+	 */
+	public StreamingStatistics getStatisticsOfFunction() {
+		return statisticsOfFunction;
+	}
+}
@@ -0,0 +1,115 @@
+package net.finmath.climateschool.utilities;
+
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * A basis of piecewise linear (hat) functions on a given set of knots, evaluated on a time discretization.
+ *
+ * The function with coefficients c<sub>j</sub> is f(t) = &sum;<sub>j</sub> c<sub>j</sub> &phi;<sub>j</sub>(t), where &phi;<sub>j</sub>
+ * is 1 in knot j, 0 in all other knots and linear in between, i.e. c<sub>j</sub> = f(knot<sub>j</sub>).
+ * Beyond the last knot the function is constant.
+ *
+ * Using the same basis for several control paths (e.g. abatement and savings rate) reduces the number of free
+ * parameters of a calibration from the number of time steps to the number of knots per path.
+ *
+ * @author Christian Fries
+ */
+public class PiecewiseLinearBasis {
+
+	private final double[] knots;
+
+	/*
+	 * For each time index: the index of the knot left of the time and the weight of that knot.
+	 */
+	private final int[] knotIndexLeft;
+	private final double[] weightLeft;
+
+	/**
+	 * Create the basis.
+	 *
+	 * @param timeDiscretization The time discretization on which the functions are evaluated.
+	 * @param knots The knots (strictly increasing, the first knot should be the first time of the discretization).
+	 */
+	public PiecewiseLinearBasis(TimeDiscretization timeDiscretization, double[] knots) {
+		if(knots.length < 1) {
+			throw new IllegalArgumentException("The basis requires at least one knot.");
+		}
+		this.knots = knots.clone();
+
+		final int numberOfTimes = timeDiscretization.getNumberOfTimes();
+		knotIndexLeft = new int[numberOfTimes];
+		weightLeft = new double[numberOfTimes];
+		int knotIndex = 0;
+		for(int timeIndex=0; timeIndex<numberOfTimes; timeIndex++) {
+			final double time = timeDiscretization.getTime(timeIndex);
+			while(knotIndex < knots.length-2 && knots[knotIndex+1] <= time) {
+				knotIndex++;
+			}
+			if(knots.length == 1 || time <= knots[0]) {
+				knotIndexLeft[timeIndex] = 0;
+				weightLeft[timeIndex] = 1.0;
+			}
+			else if(time >= knots[knots.length-1]) {
+				knotIndexLeft[timeIndex] = knots.length-2;
+				weightLeft[timeIndex] = 0.0;
+			}
+			else {
+				knotIndexLeft[timeIndex] = knotIndex;
+				weightLeft[timeIndex] = (knots[knotIndex+1] - time) / (knots[knotIndex+1] - knots[knotIndex]);
+			}
+		}
+	}
+
+	/**
+	 * Create the basis with equidistant knots, starting at the first time of the time discretization and covering the last time.
+	 *
+	 * @param timeDiscretization The time discretization on which the functions are evaluated.
+	 * @param knotSpacing The distance of two knots.
+	 * @return The basis.
+	 */
+	public static PiecewiseLinearBasis withUniformKnots(TimeDiscretization timeDiscretization, double knotSpacing) {
+		final double timeFirst = timeDiscretization.getTime(0);
+		final double timeLast = timeDiscretization.getTime(timeDiscretization.getNumberOfTimes()-1);
+		final int numberOfKnots = (int)Math.ceil((timeLast - timeFirst) / knotSpacing - 1E-10) + 1;
+		final double[] knots = new double[numberOfKnots];
+		for(int i=0; i<numberOfKnots; i++) {
+			knots[i] = timeFirst + i * knotSpacing;
+		}
+		return new PiecewiseLinearBasis(timeDiscretization, knots);
+	}
+
+	public int getNumberOfBasisFunctions() {
+		return knots.length;
+	}
+
+	public double[] getKnots() {
+		return knots.clone();
+	}
+
+	/**
+	 * Evaluate the function with the given coefficients on the time discretization.
+	 *
+	 * @param coefficients The coefficients (array of length at least <code>offset + getNumberOfBasisFunctions()</code>).
+	 * @param offset Index of the first coefficient (allows to store several paths in one parameter vector).
+	 * @return The values on the time discretization.
+	 */
+	public double[] getValues(double[] coefficients, int offset) {
+		final double[] values = new double[knotIndexLeft.length];
+		for(int timeIndex=0; timeIndex<values.length; timeIndex++) {
+			final int knotIndex = knotIndexLeft[timeIndex];
+			final double weight = weightLeft[timeIndex];
+			values[timeIndex] = weight * coefficients[offset + knotIndex] + (weight < 1.0 ? (1-weight) * coefficients[offset + knotIndex + 1] : 0.0);
+		}
+		return values;
+	}
+
+	/**
+	 * Evaluate the function with the given coefficients on the time discretization.
+	 *
+	 * @param coefficients The coefficients.
+	 * @return The values on the time discretization.
+	 */
+	public double[] getValues(double[] coefficients) {
+		return getValues(coefficients, 0);
+	}
+}
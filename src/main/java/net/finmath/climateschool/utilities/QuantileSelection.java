@@ -0,0 +1,427 @@
+package net.finmath.climateschool.utilities;
+
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+/**
+ * Value at risk and expected shortfall at a single level by selection (without sorting).
+ *
+ * The quantile is found by introselect (quickselect with a three-way partition around a median-of-three pivot, falling back
+ * to sorting the remaining range if the partitions do not shrink), which is O(n). The expected shortfall is then a partial sum.
+ * The calculations operate on a primitive copy of the realizations and do not allocate further arrays.
+ *
+ * For large arrays (at least {@link #PARALLEL_THRESHOLD} values) a parallel variant is used: the values are counted in
+ * buckets in parallel, the bucket containing the quantile is extracted, and the quantile is selected within that bucket.
+ *
+ * The index convention is that of <code>RandomVariable.getQuantile</code>, i.e., the results agree with
+ * {@link RandomOperators#valueAtRisk(RandomVariable, Double)}, {@link RandomOperators#leftTailExpectedShortFall(RandomVariable, Double)} and
+ * {@link RandomOperators#rightTailExpectedShortFall(RandomVariable, Double)} (up to rounding of the sums), including their
+ * special cases (the expected shortfall of constant values is their mean). The values must not be NaN.
+ *
+ * The <code>weighted...</code> methods calculate the risk measures of weighted values, e.g. of an importance sampling
+ * simulation where the weights are the likelihood ratios. The weights are assumed to have expectation 1 and are not normalized by their sum
+ * (normalizing by the sum would let the paths outside the tail, which carry the large weights, dominate the estimate).
+ *
+ * For many levels of the same values use {@link RiskMeasureBundle}.
+ *
+ * @author Christian Fries
+ */
+public class QuantileSelection {
+
+	/**
+	 * Arrays with at least this number of values are processed in parallel.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 18;
+
+	private static final int insertionSortThreshold = 16;
+	private static final int numberOfBuckets = 1 << 12;
+	private static final int chunkSize = 1 << 14;
+
+	private QuantileSelection() {}
+
+	/**
+	 * VaR_&alpha;, the &alpha;-quantile of the values.
+	 *
+	 * @param realizations The values (not modified).
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return VaR_&alpha;.
+	 */
+	public static double valueAtRisk(double[] realizations, double percentageLevel) {
+		final int k = getIndexOfQuantile(realizations.length, percentageLevel);
+		return realizations.length >= PARALLEL_THRESHOLD ? parallelSelect(realizations, k) : select(realizations.clone(), k);
+	}
+
+	/**
+	 * ES_&alpha; = E(X 1(X &lt; VaR_&alpha;)) / &alpha;, for values where lower values are worse outcomes.
+	 *
+	 * @param realizations The values (not modified).
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return ES_&alpha;.
+	 */
+	public static double leftTailExpectedShortFall(double[] realizations, double percentageLevel) {
+		if(isConstant(realizations) || percentageLevel == 1) {
+			return getAverage(realizations);
+		}
+
+		final int numberOfPaths = realizations.length;
+		final int k = getIndexOfQuantile(numberOfPaths, percentageLevel);
+
+		if(numberOfPaths >= PARALLEL_THRESHOLD) {
+			final double valueAtRisk = parallelSelect(realizations, k);
+			return parallelSum(realizations, valueAtRisk, true) / numberOfPaths / percentageLevel;
+		}
+
+		// After the selection all values below the quantile are in [0, k)
+		final double[] values = realizations.clone();
+		final double valueAtRisk = select(values, k);
+		double sum = 0.0;
+		for(int i=0; i<k; i++) {
+			if(values[i] < valueAtRisk) sum += values[i];
+		}
+		return sum / numberOfPaths / percentageLevel;
+	}
+
+	/**
+	 * ES_&alpha; = E(X 1(X &ge; VaR_&alpha;)) / (1-&alpha;), for losses where higher values are worse outcomes.
+	 *
+	 * @param realizations The values (not modified).
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return ES_&alpha;.
+	 */
+	public static double rightTailExpectedShortFall(double[] realizations, double percentageLevel) {
+		if(isConstant(realizations)) {
+			return getAverage(realizations);
+		}
+
+		final int numberOfPaths = realizations.length;
+		final int k = getIndexOfQuantile(numberOfPaths, percentageLevel);
+
+		if(numberOfPaths >= PARALLEL_THRESHOLD) {
+			final double valueAtRisk = parallelSelect(realizations, k);
+			return parallelSum(realizations, valueAtRisk, false) / numberOfPaths / (1-percentageLevel);
+		}
+
+		// After the selection all values in [k, n) are at least the quantile; values in [0, k) may be equal to it
+		final double[] values = realizations.clone();
+		final double valueAtRisk = select(values, k);
+		double sum = 0.0;
+		for(int i=0; i<k; i++) {
+			if(values[i] == valueAtRisk) sum += values[i];
+		}
+		for(int i=k; i<numberOfPaths; i++) {
+			sum += values[i];
+		}
+		return sum / numberOfPaths / (1-percentageLevel);
+	}
+
+	/**
+	 * Returns the k-th smallest value (introselect). The array is partially reordered: after the call, values[k] is the
+	 * k-th smallest value, all values before are less or equal, all values after are greater or equal.
+	 *
+	 * @param values The values (reordered).
+	 * @param k The index of the value in sorted order.
+	 * @return The k-th smallest value.
+	 */
+	public static double select(double[] values, int k) {
+		int from = 0;
+		int to = values.length;
+		int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(values.length));
+		while(to - from > insertionSortThreshold) {
+			if(depthLimit-- == 0) {
+				Arrays.sort(values, from, to);
+				return values[k];
+			}
+
+			final double pivot = medianOfThree(values[from], values[(from + to) >>> 1], values[to-1]);
+
+			// Three-way partition: [from, lower) < pivot, [lower, upper] == pivot, (upper, to) > pivot
+			int lower = from;
+			int upper = to-1;
+			int i = from;
+			while(i <= upper) {
+				if(values[i] < pivot) {
+					swap(values, lower++, i++);
+				}
+				else if(values[i] > pivot) {
+					swap(values, i, upper--);
+				}
+				else {
+					i++;
+				}
+			}
+
+			if(k < lower) {
+				to = lower;
+			}
+			else if(k > upper) {
+				from = upper+1;
+			}
+			else {
+				return pivot;
+			}
+		}
+
+		// Insertion sort of the small remaining range
+		for(int i=from+1; i<to; i++) {
+			final double value = values[i];
+			int j = i-1;
+			while(j >= from && values[j] > value) {
+				values[j+1] = values[j];
+				j--;
+			}
+			values[j+1] = value;
+		}
+		return values[k];
+	}
+
+	/**
+	 * Returns the k-th smallest value, using a parallel bucket count to narrow the candidates. The array is not modified.
+	 *
+	 * @param values The values.
+	 * @param k The index of the value in sorted order.
+	 * @return The k-th smallest value.
+	 */
+	public static double parallelSelect(double[] values, int k) {
+		final DoubleSummaryStatistics statistics = DoubleStream.of(values).parallel().summaryStatistics();
+		final double min = statistics.getMin();
+		final double max = statistics.getMax();
+		if(min == max) {
+			return min;
+		}
+
+		final double bucketsPerUnit = numberOfBuckets / (max - min);
+		final int numberOfChunks = (values.length + chunkSize - 1) / chunkSize;
+
+		// Count the values per bucket (per chunk, then merged)
+		final long[] counts = IntStream.range(0, numberOfChunks).parallel().mapToObj(chunk -> {
+			final long[] countsOfChunk = new long[numberOfBuckets];
+			for(int i=chunk*chunkSize; i<Math.min(values.length, (chunk+1)*chunkSize); i++) {
+				countsOfChunk[getBucket(values[i], min, bucketsPerUnit)]++;
+			}
+			return countsOfChunk;
+		}).reduce((counts1, counts2) -> {
+			final long[] merged = new long[numberOfBuckets];
+			for(int bucket=0; bucket<numberOfBuckets; bucket++) {
+				merged[bucket] = counts1[bucket] + counts2[bucket];
+			}
+			return merged;
+		}).orElseThrow();
+
+		// The bucket containing the k-th value
+		int bucketOfQuantile = 0;
+		long numberOfValuesBefore = 0;
+		while(numberOfValuesBefore + counts[bucketOfQuantile] <= k) {
+			numberOfValuesBefore += counts[bucketOfQuantile];
+			bucketOfQuantile++;
+		}
+
+		final int bucket = bucketOfQuantile;
+		final double[] candidates = DoubleStream.of(values).parallel().filter(value -> getBucket(value, min, bucketsPerUnit) == bucket).toArray();
+		return select(candidates, (int)(k - numberOfValuesBefore));
+	}
+
+	/**
+	 * VaR_&alpha; of weighted values: for &alpha; &le; 1/2 the smallest value v such that the weight of the values &le; v is at least &alpha;,
+	 * otherwise the largest value v such that the weight of the values &ge; v is at least 1-&alpha;. The quantile is located from the tail
+	 * the level refers to, since this is where the paths of an importance sampling are concentrated.
+	 *
+	 * For weights equal to 1 this is the element at index ceil(&alpha; n)-1 (or n-ceil((1-&alpha;) n)) of the sorted values, which may differ by one
+	 * index from the convention of <code>RandomVariable.getQuantile</code>.
+	 *
+	 * @param realizations The values (not modified).
+	 * @param weights The (non-negative) weights of the values with mean 1, e.g. likelihood ratios (not modified).
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return VaR_&alpha;.
+	 */
+	public static double weightedValueAtRisk(double[] realizations, double[] weights, double percentageLevel) {
+		if(percentageLevel <= 0.5) {
+			return weightedSelect(realizations.clone(), weights.clone(), percentageLevel * realizations.length);
+		}
+		else {
+			// Located from above: the largest value v such that the weight of the values >= v is at least 1-alpha
+			final double[] negatedRealizations = new double[realizations.length];
+			for(int i=0; i<realizations.length; i++) {
+				negatedRealizations[i] = -realizations[i];
+			}
+			return -weightedSelect(negatedRealizations, weights.clone(), (1-percentageLevel) * realizations.length);
+		}
+	}
+
+	/**
+	 * ES_&alpha; of weighted values, for values where lower values are worse outcomes:
+	 * ES_&alpha; = (E(W X 1(X &lt; VaR_&alpha;)) + VaR_&alpha; (&alpha; - E(W 1(X &lt; VaR_&alpha;)))) / &alpha;, with E(W) = 1,
+	 * i.e., the weight of the values equal to VaR is counted up to the level &alpha;.
+	 *
+	 * @param realizations The values (not modified).
+	 * @param weights The (non-negative) weights of the values with mean 1, e.g. likelihood ratios (not modified).
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return ES_&alpha;.
+	 */
+	public static double weightedLeftTailExpectedShortFall(double[] realizations, double[] weights, double percentageLevel) {
+		final double valueAtRisk = weightedValueAtRisk(realizations, weights, percentageLevel);
+		final int numberOfPaths = realizations.length;
+		double weightBelow = 0.0;
+		double weightedSumBelow = 0.0;
+		for(int i=0; i<numberOfPaths; i++) {
+			if(realizations[i] < valueAtRisk) {
+				weightBelow += weights[i];
+				weightedSumBelow += weights[i] * realizations[i];
+			}
+		}
+		return (weightedSumBelow / numberOfPaths + valueAtRisk * (percentageLevel - weightBelow / numberOfPaths)) / percentageLevel;
+	}
+
+	/**
+	 * ES_&alpha; of weighted values, for losses where higher values are worse outcomes:
+	 * ES_&alpha; = (E(W X 1(X &gt; VaR_&alpha;)) + VaR_&alpha; (1-&alpha; - E(W 1(X &gt; VaR_&alpha;)))) / (1-&alpha;), with E(W) = 1,
+	 * i.e., the weight of the values equal to VaR is counted up to the level 1-&alpha;.
+	 *
+	 * @param realizations The values (not modified).
+	 * @param weights The (non-negative) weights of the values with mean 1, e.g. likelihood ratios (not modified).
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return ES_&alpha;.
+	 */
+	public static double weightedRightTailExpectedShortFall(double[] realizations, double[] weights, double percentageLevel) {
+		final double valueAtRisk = weightedValueAtRisk(realizations, weights, percentageLevel);
+		final int numberOfPaths = realizations.length;
+		double weightAbove = 0.0;
+		double weightedSumAbove = 0.0;
+		for(int i=0; i<numberOfPaths; i++) {
+			if(realizations[i] > valueAtRisk) {
+				weightAbove += weights[i];
+				weightedSumAbove += weights[i] * realizations[i];
+			}
+		}
+		return (weightedSumAbove / numberOfPaths + valueAtRisk * (1-percentageLevel - weightAbove / numberOfPaths)) / (1-percentageLevel);
+	}
+
+	/**
+	 * The index of the &alpha;-quantile in the sorted values (convention of <code>RandomVariable.getQuantile</code>).
+	 *
+	 * @param numberOfValues The number of values.
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return The index.
+	 */
+	public static int getIndexOfQuantile(int numberOfValues, double percentageLevel) {
+		return Math.min(Math.max((int)Math.round((numberOfValues+1) * percentageLevel - 1), 0), numberOfValues-1);
+	}
+
+	/*
+	 * Sum of the values below (isBelow = true) or at least (isBelow = false) the given threshold, in parallel chunks.
+	 */
+	private static double parallelSum(double[] values, double threshold, boolean isBelow) {
+		final int numberOfChunks = (values.length + chunkSize - 1) / chunkSize;
+		return IntStream.range(0, numberOfChunks).parallel().mapToDouble(chunk -> {
+			double sum = 0.0;
+			for(int i=chunk*chunkSize; i<Math.min(values.length, (chunk+1)*chunkSize); i++) {
+				if((values[i] < threshold) == isBelow) sum += values[i];
+			}
+			return sum;
+		}).sum();
+	}
+
+	/*
+	 * The smallest value v such that the weight of the values <= v is at least the target weight
+	 * (weighted quickselect, values and weights are reordered together).
+	 */
+	private static double weightedSelect(double[] values, double[] weights, double targetWeight) {
+		int from = 0;
+		int to = values.length;
+		double weightBelow = 0.0;		// weight of [0, from), all less than the values in [from, to)
+		while(to - from > insertionSortThreshold) {
+			final double pivot = medianOfThree(values[from], values[(from + to) >>> 1], values[to-1]);
+
+			// Three-way partition: [from, lower) < pivot, [lower, upper] == pivot, (upper, to) > pivot
+			int lower = from;
+			int upper = to-1;
+			int i = from;
+			while(i <= upper) {
+				if(values[i] < pivot) {
+					swap(values, weights, lower++, i++);
+				}
+				else if(values[i] > pivot) {
+					swap(values, weights, i, upper--);
+				}
+				else {
+					i++;
+				}
+			}
+
+			double weightLower = 0.0;
+			for(int j=from; j<lower; j++) {
+				weightLower += weights[j];
+			}
+			double weightPivot = 0.0;
+			for(int j=lower; j<=upper; j++) {
+				weightPivot += weights[j];
+			}
+
+			if(weightBelow + weightLower >= targetWeight && lower > from) {
+				to = lower;
+			}
+			else if(weightBelow + weightLower + weightPivot >= targetWeight || upper+1 >= to) {
+				return pivot;
+			}
+			else {
+				weightBelow += weightLower + weightPivot;
+				from = upper+1;
+			}
+		}
+
+		// Insertion sort of the small remaining range, then accumulate the weights
+		for(int i=from+1; i<to; i++) {
+			final double value = values[i];
+			final double weight = weights[i];
+			int j = i-1;
+			while(j >= from && values[j] > value) {
+				values[j+1] = values[j];
+				weights[j+1] = weights[j];
+				j--;
+			}
+			values[j+1] = value;
+			weights[j+1] = weight;
+		}
+		for(int i=from; i<to; i++) {
+			weightBelow += weights[i];
+			if(weightBelow >= targetWeight) {
+				return values[i];
+			}
+		}
+		return values[to-1];
+	}
+
+	/*
+	 * True if all values are equal (stops at the first differing value).
+	 */
+	private static boolean isConstant(double[] values) {
+		for(int i=1; i<values.length; i++) {
+			if(values[i] != values[0]) return false;
+		}
+		return true;
+	}
+
+	private static double getAverage(double[] values) {
+		return values.length >= PARALLEL_THRESHOLD ? DoubleStream.of(values).parallel().average().orElse(Double.NaN) : DoubleStream.of(values).average().orElse(Double.NaN);
+	}
+
+	private static int getBucket(double value, double min, double bucketsPerUnit) {
+		return Math.min((int)((value - min) * bucketsPerUnit), numberOfBuckets-1);
+	}
+
+	private static double medianOfThree(double a, double b, double c) {
+		return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+	}
+
+	private static void swap(double[] values, int i, int j) {
+		final double value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+
+	private static void swap(double[] values, double[] weights, int i, int j) {
+		swap(values, i, j);
+		swap(weights, i, j);
+	}
+}
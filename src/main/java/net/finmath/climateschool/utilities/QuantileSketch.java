@@ -0,0 +1,540 @@
+package net.finmath.climateschool.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Streaming estimator of quantiles (value at risk) and expected shortfall with bounded memory (a KLL sketch).
+ *
+ * The values are added one by one or in chunks of paths and are not stored. The sketch keeps a hierarchy of compactors:
+ * level h holds values of weight 2<sup>h</sup>. If a level is full, it is sorted and every second value (starting at a random
+ * offset) is promoted to the next level with twice the weight. The capacity of the levels decreases geometrically (by a factor 2/3)
+ * from the top level, which has capacity k, such that the sketch retains at most about 3k values, independent of the number of values added.
+ * Count, sum, minimum and maximum are accumulated exactly. In addition, the sketch keeps the <code>tailSize</code> smallest and the
+ * <code>tailSize</code> largest values (tail accumulators), from which quantiles and expected shortfall in the tails are calculated exactly.
+ *
+ * Sketches are mergeable: each thread may fill its own sketch (for its chunk of paths) and the sketches are combined with
+ * {@link #merge(QuantileSketch)}. A sketch is not thread-safe.
+ *
+ * <b>Error bounds</b>
+ * <ul>
+ * 	<li>Tails: if &alpha; n &lt; tailSize (left tail) or (1-&alpha;) n &lt; tailSize (right tail), value at risk and expected shortfall are
+ * 		exact (as in {@link RiskMeasureBundle}).</li>
+ * 	<li>Quantiles: otherwise, the rank of the returned quantile differs from the requested rank by at most &epsilon; n, where &epsilon; is the normalized
+ * 		rank error {@link #getNormalizedRankError()} (about 1.65% for k = 200, 0.35% for k = 1000), with a probability of 99%.
+ * 		The error does not depend on the number of values n.</li>
+ * 	<li>Expected shortfall: otherwise, the sketch calculates the Rockafellar-Uryasev representation
+ * 		ES<sub>&alpha;</sub> = VaR<sub>&alpha;</sub> + E(min(X - VaR<sub>&alpha;</sub>, 0)) / &alpha; (left tail),
+ * 		which is stationary in VaR, i.e., the error of the quantile enters only in second order. The error of the tail sum is bounded by
+ * 		&epsilon; (VaR<sub>&alpha;</sub> - min X) / &alpha; (left tail) and &epsilon; (max X - VaR<sub>&alpha;</sub>) / (1-&alpha;) (right tail).</li>
+ * </ul>
+ * For exact values of moderate path counts use {@link RiskMeasureBundle} or {@link QuantileSelection}.
+ *
+ * @author Christian Fries
+ */
+public class QuantileSketch {
+
+	public static final int DEFAULT_K = 200;
+	public static final int DEFAULT_TAIL_SIZE = 1 << 12;
+
+	private static final double capacityDecay = 2.0 / 3.0;
+	private static final int chunkSize = 1 << 16;
+
+	private final int k;
+	private final SplittableRandom random;
+	private final List<Compactor> compactors = new ArrayList<>();
+	private final TailAccumulator lowerTail;
+	private final TailAccumulator upperTail;
+
+	private int numberOfRetainedValues = 0;
+	private int maximumNumberOfRetainedValues;
+
+	// Exact accumulators
+	private long count = 0;
+	private double sum = 0.0;
+	private double sumError = 0.0;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	// Sorted view of the retained values with cumulated weights (created lazily, invalidated by updates)
+	private double[] sortedValues;
+	private long[] cumulatedWeights;
+
+	/**
+	 * Create an empty sketch.
+	 *
+	 * @param k The capacity of the top compactor (controls accuracy and memory, see {@link #getNormalizedRankError()}).
+	 * @param tailSize The number of smallest and largest values kept exactly (may be 0).
+	 * @param seed The seed of the random offsets of the compactions.
+	 */
+	public QuantileSketch(int k, int tailSize, long seed) {
+		if(k < 8) throw new IllegalArgumentException("The parameter k has to be at least 8.");
+		this.k = k;
+		this.random = new SplittableRandom(seed);
+		this.lowerTail = new TailAccumulator(tailSize, false);
+		this.upperTail = new TailAccumulator(tailSize, true);
+		grow();
+	}
+
+	/**
+	 * Create an empty sketch with tail size {@link #DEFAULT_TAIL_SIZE}.
+	 *
+	 * @param k The capacity of the top compactor (controls accuracy and memory, see {@link #getNormalizedRankError()}).
+	 * @param seed The seed of the random offsets of the compactions.
+	 */
+	public QuantileSketch(int k, long seed) {
+		this(k, DEFAULT_TAIL_SIZE, seed);
+	}
+
+	/**
+	 * Create an empty sketch with capacity {@link #DEFAULT_K} and tail size {@link #DEFAULT_TAIL_SIZE}.
+	 */
+	public QuantileSketch() {
+		this(DEFAULT_K, 3141);
+	}
+
+	/**
+	 * Create a sketch of the realizations of a random variable. The realizations are added in parallel chunks, the chunk sketches are merged.
+	 *
+	 * @param x The random variable.
+	 * @param k The capacity of the top compactor.
+	 * @return The sketch.
+	 */
+	public static QuantileSketch of(RandomVariable x, int k) {
+		if(x.isDeterministic()) {
+			final QuantileSketch sketch = new QuantileSketch(k, 0);
+			sketch.add(x.doubleValue());
+			return sketch;
+		}
+		final double[] realizations = x.getRealizations();
+		final int numberOfChunks = (realizations.length + chunkSize - 1) / chunkSize;
+		return IntStream.range(0, numberOfChunks).parallel().mapToObj(chunk -> {
+			final QuantileSketch sketch = new QuantileSketch(k, chunk);
+			sketch.add(realizations, chunk * chunkSize, Math.min(realizations.length, (chunk+1) * chunkSize));
+			return sketch;
+		}).reduce(QuantileSketch::merge).orElseGet(() -> new QuantileSketch(k, 0));
+	}
+
+	/**
+	 * Create a sketch of the realizations of a random variable with capacity {@link #DEFAULT_K}.
+	 *
+	 * @param x The random variable.
+	 * @return The sketch.
+	 */
+	public static QuantileSketch of(RandomVariable x) {
+		return of(x, DEFAULT_K);
+	}
+
+	/**
+	 * Add a value.
+	 *
+	 * @param value The value (must not be NaN).
+	 */
+	public void add(double value) {
+		compactors.get(0).add(value);
+		numberOfRetainedValues++;
+		lowerTail.add(value);
+		upperTail.add(value);
+
+		count++;
+		final double summand = value - sumError;
+		final double newSum = sum + summand;
+		sumError = (newSum - sum) - summand;
+		sum = newSum;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+
+		sortedValues = null;
+		if(numberOfRetainedValues >= maximumNumberOfRetainedValues) {
+			compress();
+		}
+	}
+
+	/**
+	 * Add a chunk of values.
+	 *
+	 * @param values The array of values.
+	 * @param from The first index (inclusive).
+	 * @param to The last index (exclusive).
+	 */
+	public void add(double[] values, int from, int to) {
+		for(int i=from; i<to; i++) {
+			add(values[i]);
+		}
+	}
+
+	/**
+	 * Add a chunk of values.
+	 *
+	 * @param values The values.
+	 */
+	public void add(double[] values) {
+		add(values, 0, values.length);
+	}
+
+	/**
+	 * Merge another sketch into this sketch. The other sketch is not modified.
+	 *
+	 * @param other The other sketch (should have the same k).
+	 * @return This sketch.
+	 */
+	public QuantileSketch merge(QuantileSketch other) {
+		while(compactors.size() < other.compactors.size()) {
+			grow();
+		}
+		for(int level=0; level<other.compactors.size(); level++) {
+			compactors.get(level).addAll(other.compactors.get(level));
+		}
+		numberOfRetainedValues += other.numberOfRetainedValues;
+		lowerTail.addAll(other.lowerTail);
+		upperTail.addAll(other.upperTail);
+
+		count += other.count;
+		final double summand = other.sum - sumError - other.sumError;
+		final double newSum = sum + summand;
+		sumError = (newSum - sum) - summand;
+		sum = newSum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+
+		sortedValues = null;
+		while(numberOfRetainedValues >= maximumNumberOfRetainedValues) {
+			compress();
+		}
+		return this;
+	}
+
+	/**
+	 * @return The number of values added.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The number of values retained by the sketch (the memory used), excluding the tail accumulators.
+	 */
+	public int getNumberOfRetainedValues() {
+		return numberOfRetainedValues;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return E(X) (exact).
+	 */
+	public double getAverage() {
+		return count > 0 ? sum / count : Double.NaN;
+	}
+
+	/**
+	 * The normalized rank error &epsilon; (99% confidence) of a single quantile, i.e., the rank of the quantile returned for the level &alpha;
+	 * is within (&alpha; &plusmn; &epsilon;) n. The value is the empirical bound 2.3 / k<sup>0.97</sup> of the KLL sketch.
+	 *
+	 * @return The normalized rank error.
+	 */
+	public double getNormalizedRankError() {
+		return 2.296 / Math.pow(k, 0.9723);
+	}
+
+	/**
+	 * The normalized rank of a value, i.e., an estimate of P(X &lt; value).
+	 *
+	 * @param value The value.
+	 * @return The estimate of P(X &lt; value).
+	 */
+	public double getRank(double value) {
+		updateSortedView();
+		final int numberBelow = getNumberOfRetainedValuesBelow(value);
+		return numberBelow > 0 ? (double)cumulatedWeights[numberBelow-1] / count : 0.0;
+	}
+
+	/**
+	 * VaR_&alpha;, the &alpha;-quantile (same index convention as <code>RandomVariable.getQuantile</code>).
+	 *
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return The estimate of VaR_&alpha;.
+	 */
+	public double getValueAtRisk(double percentageLevel) {
+		if(count == 0) return Double.NaN;
+		final long index = getIndexOfQuantile(percentageLevel);
+		if(index < lowerTail.size) {
+			return lowerTail.getSorted()[(int)index];
+		}
+		if(index >= count - upperTail.size) {
+			return upperTail.getSorted()[(int)(index - (count - upperTail.size))];
+		}
+
+		updateSortedView();
+
+		// First retained value whose cumulated weight exceeds the index
+		int low = 0;
+		int high = sortedValues.length-1;
+		while(low < high) {
+			final int middle = (low + high) >>> 1;
+			if(cumulatedWeights[middle] <= index) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return sortedValues[low];
+	}
+
+	/**
+	 * ES_&alpha; = VaR_&alpha; + E(min(X - VaR_&alpha;, 0)) / &alpha;, for values where lower values are worse outcomes.
+	 *
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return The estimate of ES_&alpha;.
+	 */
+	public double getLeftTailExpectedShortFall(double percentageLevel) {
+		if(min == max || percentageLevel == 1) return getAverage();
+
+		final double valueAtRisk = getValueAtRisk(percentageLevel);
+		if(getIndexOfQuantile(percentageLevel) < lowerTail.size) {
+			// Exact: all values below VaR are in the lower tail
+			double sumBelow = 0.0;
+			for(final double value : lowerTail.getSorted()) {
+				if(value >= valueAtRisk) break;
+				sumBelow += value;
+			}
+			return sumBelow / count / percentageLevel;
+		}
+
+		updateSortedView();
+		final int numberBelow = getNumberOfRetainedValuesBelow(valueAtRisk);
+		double tailSum = 0.0;
+		for(int i=0; i<numberBelow; i++) {
+			tailSum += getWeight(i) * (sortedValues[i] - valueAtRisk);
+		}
+		return valueAtRisk + tailSum / count / percentageLevel;
+	}
+
+	/**
+	 * ES_&alpha; = VaR_&alpha; + E(max(X - VaR_&alpha;, 0)) / (1-&alpha;), for losses where higher values are worse outcomes.
+	 *
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return The estimate of ES_&alpha;.
+	 */
+	public double getRightTailExpectedShortFall(double percentageLevel) {
+		if(min == max) return getAverage();
+
+		final double valueAtRisk = getValueAtRisk(percentageLevel);
+		if(getIndexOfQuantile(percentageLevel) >= count - upperTail.size) {
+			// Exact: all values above VaR are in the upper tail
+			double sumAbove = 0.0;
+			for(final double value : upperTail.getSorted()) {
+				if(value >= valueAtRisk) sumAbove += value;
+			}
+			return sumAbove / count / (1-percentageLevel);
+		}
+
+		updateSortedView();
+		double tailSum = 0.0;
+		for(int i=getNumberOfRetainedValuesBelow(valueAtRisk); i<sortedValues.length; i++) {
+			tailSum += getWeight(i) * (sortedValues[i] - valueAtRisk);
+		}
+		return valueAtRisk + tailSum / count / (1-percentageLevel);
+	}
+
+	private long getIndexOfQuantile(double percentageLevel) {
+		return Math.min(Math.max(Math.round((count+1) * percentageLevel - 1), 0), count-1);
+	}
+
+	/*
+	 * Compact the lowest full level (lazy compaction: stop as soon as the sketch is below its capacity).
+	 */
+	private void compress() {
+		for(int level=0; level<compactors.size(); level++) {
+			if(compactors.get(level).size >= getCapacity(level)) {
+				if(level+1 >= compactors.size()) {
+					grow();
+				}
+				final Compactor compactor = compactors.get(level);
+				final int sizeBefore = compactor.size;
+				compactor.compactInto(compactors.get(level+1), random.nextBoolean());
+				// Half of the compacted values are promoted
+				numberOfRetainedValues -= (sizeBefore - compactor.size) / 2;
+				if(numberOfRetainedValues < maximumNumberOfRetainedValues) {
+					break;
+				}
+			}
+		}
+	}
+
+	private void grow() {
+		compactors.add(new Compactor());
+		maximumNumberOfRetainedValues = 0;
+		for(int level=0; level<compactors.size(); level++) {
+			maximumNumberOfRetainedValues += getCapacity(level);
+		}
+	}
+
+	private int getCapacity(int level) {
+		final int depth = compactors.size() - level - 1;
+		return Math.max((int)Math.ceil(k * Math.pow(capacityDecay, depth)), 2);
+	}
+
+	private void updateSortedView() {
+		if(sortedValues != null) return;
+
+		final double[] values = new double[numberOfRetainedValues];
+		final long[] weights = new long[numberOfRetainedValues];
+		int index = 0;
+		for(int level=0; level<compactors.size(); level++) {
+			final Compactor compactor = compactors.get(level);
+			for(int i=0; i<compactor.size; i++) {
+				values[index] = compactor.values[i];
+				weights[index] = 1L << level;
+				index++;
+			}
+		}
+
+		// Sort values and weights together
+		final Integer[] order = new Integer[values.length];
+		Arrays.setAll(order, i -> i);
+		Arrays.sort(order, (i, j) -> Double.compare(values[i], values[j]));
+
+		sortedValues = new double[values.length];
+		cumulatedWeights = new long[values.length];
+		long cumulatedWeight = 0;
+		for(int i=0; i<order.length; i++) {
+			sortedValues[i] = values[order[i]];
+			cumulatedWeight += weights[order[i]];
+			cumulatedWeights[i] = cumulatedWeight;
+		}
+	}
+
+	private long getWeight(int index) {
+		return index == 0 ? cumulatedWeights[0] : cumulatedWeights[index] - cumulatedWeights[index-1];
+	}
+
+	/*
+	 * The number of retained values strictly less than the given value (requires the sorted view).
+	 */
+	private int getNumberOfRetainedValuesBelow(double value) {
+		int low = 0;
+		int high = sortedValues.length;
+		while(low < high) {
+			final int middle = (low + high) >>> 1;
+			if(sortedValues[middle] < value) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * The smallest (or largest) values added, kept in a heap of bounded size.
+	 */
+	private static class TailAccumulator {
+		private final double[] heap;		// max-heap of the (negated, for the upper tail) values
+		private final boolean isUpper;
+		private int size = 0;
+		private double[] sorted;
+
+		TailAccumulator(int capacity, boolean isUpper) {
+			this.heap = new double[capacity];
+			this.isUpper = isUpper;
+		}
+
+		void add(double value) {
+			final double key = isUpper ? -value : value;
+			if(size < heap.length) {
+				// Sift up
+				int index = size++;
+				while(index > 0 && heap[(index-1)/2] < key) {
+					heap[index] = heap[(index-1)/2];
+					index = (index-1)/2;
+				}
+				heap[index] = key;
+				sorted = null;
+			}
+			else if(size > 0 && key < heap[0]) {
+				// Replace the root and sift down
+				int index = 0;
+				while(2*index+1 < size) {
+					int child = 2*index+1;
+					if(child+1 < size && heap[child+1] > heap[child]) child++;
+					if(heap[child] <= key) break;
+					heap[index] = heap[child];
+					index = child;
+				}
+				heap[index] = key;
+				sorted = null;
+			}
+		}
+
+		void addAll(TailAccumulator other) {
+			for(int i=0; i<other.size; i++) {
+				add(other.isUpper ? -other.heap[i] : other.heap[i]);
+			}
+		}
+
+		/*
+		 * The values in ascending order.
+		 */
+		double[] getSorted() {
+			if(sorted == null) {
+				final double[] values = new double[size];
+				for(int i=0; i<size; i++) {
+					values[i] = isUpper ? -heap[i] : heap[i];
+				}
+				Arrays.sort(values);
+				sorted = values;
+			}
+			return sorted;
+		}
+	}
+
+	/**
+	 * The values of one level of the sketch.
+	 */
+	private static class Compactor {
+		private double[] values = new double[16];
+		private int size = 0;
+
+		void add(double value) {
+			if(size == values.length) {
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			values[size++] = value;
+		}
+
+		void addAll(Compactor other) {
+			if(size + other.size > values.length) {
+				values = Arrays.copyOf(values, Math.max(2 * values.length, size + other.size));
+			}
+			System.arraycopy(other.values, 0, values, size, other.size);
+			size += other.size;
+		}
+
+		/*
+		 * Sort the values and promote every second value (starting at the given offset) to the next level.
+		 * If the number of values is odd, the smallest value remains on this level.
+		 */
+		void compactInto(Compactor next, boolean isOddOffset) {
+			Arrays.sort(values, 0, size);
+			final int start = size % 2;
+			for(int i=start + (isOddOffset ? 1 : 0); i<size; i+=2) {
+				next.add(values[i]);
+			}
+			size = start;
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package net.finmath.climateschool.utilities;
 
+import java.util.Arrays;
+
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
 import net.finmath.stochastic.RandomOperator;
 import net.finmath.stochastic.RandomVariable;
 import net.finmath.stochastic.Scalar;
@@ -7,6 +10,14 @@ import net.finmath.stochastic.Scalar;
 /**
  * Operators on <code>RandomVariable</code>.
  *
+ * To evaluate several risk measures of the same random variable (e.g. VaR and ES at many levels),
+ * use {@link RiskMeasureBundle}, which sorts the realizations only once. To evaluate a single risk measure of a
+ * (non-differentiable) random variable, e.g. repeatedly within an optimization, use the <code>...BySelection</code> methods,
+ * which avoid sorting and the indicator random variables (see {@link QuantileSelection}). For very large numbers of paths,
+ * the <code>sketched...</code> operators estimate the risk measures with bounded memory (see {@link QuantileSketch}).
+ * To differentiate a risk measure with automatic differentiation (AAD), use the <code>differentiable...</code> methods.
+ * For importance sampling (e.g. with a {@link BrownianMotionWithDrift}), use the <code>weighted...</code> methods with the likelihood ratio as weights.
+ *
  * @author Christian Fries
  * @author Lennart Quante
  */
@@ -139,4 +150,225 @@ public class RandomOperators {
 
 		return averageSmallerThanVar;
 	}
+
+	/**
+	 * VaR_\alpha(X) calculated by selection on a copy of the realizations (without sorting).
+	 *
+	 * @param x The random variable.
+	 * @param percentageLevel the percentage \alpha level of the value at risk.
+	 * @return VaR_\alpha(X)
+	 */
+	public static double valueAtRiskBySelection(RandomVariable x, double percentageLevel) {
+		if(x.isDeterministic()) {
+			return x.doubleValue();
+		}
+		return QuantileSelection.valueAtRisk(x.getRealizations(), percentageLevel);
+	}
+
+	/**
+	 * ES_\alpha(X) (right tail) calculated by selection on a copy of the realizations (without sorting and without an indicator random variable).
+	 * Same value as {@link #rightTailExpectedShortFall(RandomVariable, Double)}.
+	 *
+	 * @param x The random variable.
+	 * @param percentageLevel the percentage \alpha level of the expected short fall.
+	 * @return ES_\alpha(X)
+	 */
+	public static double rightTailExpectedShortFallBySelection(RandomVariable x, double percentageLevel) {
+		if(x.isDeterministic()) {
+			return x.doubleValue();
+		}
+		return QuantileSelection.rightTailExpectedShortFall(x.getRealizations(), percentageLevel);
+	}
+
+	/**
+	 * ES_\alpha(X) (left tail) calculated by selection on a copy of the realizations (without sorting and without an indicator random variable).
+	 * Same value as {@link #leftTailExpectedShortFall(RandomVariable, Double)}.
+	 *
+	 * @param x The random variable.
+	 * @param percentageLevel the percentage \alpha level of the expected short fall.
+	 * @return ES_\alpha(X)
+	 */
+	public static double leftTailExpectedShortFallBySelection(RandomVariable x, double percentageLevel) {
+		if(x.isDeterministic()) {
+			return x.doubleValue();
+		}
+		return QuantileSelection.leftTailExpectedShortFall(x.getRealizations(), percentageLevel);
+	}
+
+	/**
+	 * X &mapsto; VaR_\alpha(X), estimated by a {@link QuantileSketch} (bounded memory, approximate).
+	 *
+	 * @param percentageLevel the percentage \alpha level of the value at risk.
+	 * @return The operator X &mapsto; VaR_\alpha(X)
+	 */
+	public static RandomOperator sketchedValueAtRisk(Double percentageLevel) {
+		return x -> Scalar.of(QuantileSketch.of(x).getValueAtRisk(percentageLevel));
+	}
+
+	/**
+	 * X &mapsto; ES_\alpha(X) (left tail), estimated by a {@link QuantileSketch} (bounded memory, approximate).
+	 *
+	 * @param percentageLevel the percentage \alpha level of the expected short fall.
+	 * @return The operator X &mapsto; ES_\alpha(X)
+	 */
+	public static RandomOperator sketchedLeftTailExpectedShortFall(Double percentageLevel) {
+		return x -> Scalar.of(QuantileSketch.of(x).getLeftTailExpectedShortFall(percentageLevel));
+	}
+
+	/**
+	 * X &mapsto; ES_\alpha(X) (right tail), estimated by a {@link QuantileSketch} (bounded memory, approximate).
+	 *
+	 * @param percentageLevel the percentage \alpha level of the expected short fall.
+	 * @return The operator X &mapsto; ES_\alpha(X)
+	 */
+	public static RandomOperator sketchedRightTailExpectedShortFall(Double percentageLevel) {
+		return x -> Scalar.of(QuantileSketch.of(x).getRightTailExpectedShortFall(percentageLevel));
+	}
+
+	/**
+	 * VaR_\alpha(X) for the use with automatic differentiation.
+	 *
+	 * The value is VaR_\alpha(X). The derivative is the pathwise derivative E(dX | X = VaR_\alpha(X)), estimated by the average
+	 * of the derivatives of the paths whose rank is within &plusmn; sqrt(n) of the rank of the quantile.
+	 * The weights are constants (not recorded on the AAD tape).
+	 *
+	 * @param x The random variable (e.g. a <code>RandomVariableDifferentiable</code>).
+	 * @param percentageLevel the percentage \alpha level of the value at risk.
+	 * @return VaR_\alpha(X)
+	 */
+	public static RandomVariable differentiableValueAtRisk(RandomVariable x, double percentageLevel) {
+		if(x.isDeterministic() || x.getVariance() == 0) {
+			return x.average();
+		}
+
+		final double[] realizations = x.getRealizations();
+		final int numberOfPaths = realizations.length;
+		final int index = QuantileSelection.getIndexOfQuantile(numberOfPaths, percentageLevel);
+		final int bandwidth = Math.max((int)Math.sqrt(numberOfPaths), 1);
+		final double valueAtRisk = QuantileSelection.valueAtRisk(realizations, percentageLevel);
+		final double lower = QuantileSelection.select(realizations.clone(), Math.max(index - bandwidth, 0));
+		final double upper = QuantileSelection.select(realizations.clone(), Math.min(index + bandwidth, numberOfPaths-1));
+
+		final double[] weights = new double[numberOfPaths];
+		int numberOfPathsInWindow = 0;
+		for(int i=0; i<numberOfPaths; i++) {
+			if(realizations[i] >= lower && realizations[i] <= upper) {
+				weights[i] = 1.0;
+				numberOfPathsInWindow++;
+			}
+		}
+		for(int i=0; i<numberOfPaths; i++) {
+			weights[i] *= (double)numberOfPaths / numberOfPathsInWindow;
+		}
+
+		// Value VaR, derivative of the window average
+		final RandomVariable windowAverage = x.mult(new RandomVariableFromDoubleArray(x.getFiltrationTime(), weights)).average();
+		return windowAverage.sub(windowAverage.doubleValue()).add(valueAtRisk);
+	}
+
+	/**
+	 * ES_\alpha(X) (left tail) for the use with automatic differentiation.
+	 *
+	 * The value is the same as {@link #leftTailExpectedShortFall(RandomVariable, Double)}. The derivative is the pathwise (tail averaging)
+	 * derivative E(dX 1(X &lt; VaR_\alpha(X))) / \alpha, since the indicator is a constant (not recorded on the AAD tape).
+	 *
+	 * @param x The random variable (e.g. a <code>RandomVariableDifferentiable</code>).
+	 * @param percentageLevel the percentage \alpha level of the expected short fall.
+	 * @return ES_\alpha(X)
+	 */
+	public static RandomVariable differentiableLeftTailExpectedShortFall(RandomVariable x, double percentageLevel) {
+		if(x.isDeterministic() || x.getVariance() == 0 || percentageLevel == 1) {
+			return x.average();
+		}
+
+		final double[] realizations = x.getRealizations();
+		final double valueAtRisk = QuantileSelection.valueAtRisk(realizations, percentageLevel);
+		final double[] weights = new double[realizations.length];
+		for(int i=0; i<realizations.length; i++) {
+			weights[i] = realizations[i] < valueAtRisk ? 1.0 / percentageLevel : 0.0;
+		}
+
+		return x.mult(new RandomVariableFromDoubleArray(x.getFiltrationTime(), weights)).average();
+	}
+
+	/**
+	 * ES_\alpha(X) (right tail) for the use with automatic differentiation.
+	 *
+	 * The value is the same as {@link #rightTailExpectedShortFall(RandomVariable, Double)}. The derivative is the pathwise (tail averaging)
+	 * derivative E(dX 1(X &ge; VaR_\alpha(X))) / (1-\alpha), since the indicator is a constant (not recorded on the AAD tape).
+	 *
+	 * @param x The random variable (e.g. a <code>RandomVariableDifferentiable</code>).
+	 * @param percentageLevel the percentage \alpha level of the expected short fall.
+	 * @return ES_\alpha(X)
+	 */
+	public static RandomVariable differentiableRightTailExpectedShortFall(RandomVariable x, double percentageLevel) {
+		if(x.isDeterministic() || x.getVariance() == 0) {
+			return x.average();
+		}
+
+		final double[] realizations = x.getRealizations();
+		final double valueAtRisk = QuantileSelection.valueAtRisk(realizations, percentageLevel);
+		final double[] weights = new double[realizations.length];
+		for(int i=0; i<realizations.length; i++) {
+			weights[i] = realizations[i] >= valueAtRisk ? 1.0 / (1-percentageLevel) : 0.0;
+		}
+
+		return x.mult(new RandomVariableFromDoubleArray(x.getFiltrationTime(), weights)).average();
+	}
+
+	/**
+	 * VaR_\alpha(X) under the measure with density W (e.g. the likelihood ratio of an importance sampling), see {@link QuantileSelection#weightedValueAtRisk(double[], double[], double)}.
+	 *
+	 * @param x The random variable.
+	 * @param weights The (non-negative) weights of the paths with expectation 1 (e.g. the likelihood ratio).
+	 * @param percentageLevel the percentage \alpha level of the value at risk.
+	 * @return VaR_\alpha(X)
+	 */
+	public static double weightedValueAtRisk(RandomVariable x, RandomVariable weights, double percentageLevel) {
+		if(x.isDeterministic()) {
+			return x.doubleValue();
+		}
+		return QuantileSelection.weightedValueAtRisk(x.getRealizations(), getWeights(weights, x.size()), percentageLevel);
+	}
+
+	/**
+	 * ES_\alpha(X) (left tail) under the measure with density W (e.g. the likelihood ratio of an importance sampling),
+	 * see {@link QuantileSelection#weightedLeftTailExpectedShortFall(double[], double[], double)}.
+	 *
+	 * @param x The random variable.
+	 * @param weights The (non-negative) weights of the paths with expectation 1 (e.g. the likelihood ratio).
+	 * @param percentageLevel the percentage \alpha level of the expected short fall.
+	 * @return ES_\alpha(X)
+	 */
+	public static double weightedLeftTailExpectedShortFall(RandomVariable x, RandomVariable weights, double percentageLevel) {
+		if(x.isDeterministic()) {
+			return x.doubleValue();
+		}
+		return QuantileSelection.weightedLeftTailExpectedShortFall(x.getRealizations(), getWeights(weights, x.size()), percentageLevel);
+	}
+
+	/**
+	 * ES_\alpha(X) (right tail) under the measure with density W (e.g. the likelihood ratio of an importance sampling),
+	 * see {@link QuantileSelection#weightedRightTailExpectedShortFall(double[], double[], double)}.
+	 *
+	 * @param x The random variable.
+	 * @param weights The (non-negative) weights of the paths with expectation 1 (e.g. the likelihood ratio).
+	 * @param percentageLevel the percentage \alpha level of the expected short fall.
+	 * @return ES_\alpha(X)
+	 */
+	public static double weightedRightTailExpectedShortFall(RandomVariable x, RandomVariable weights, double percentageLevel) {
+		if(x.isDeterministic()) {
+			return x.doubleValue();
+		}
+		return QuantileSelection.weightedRightTailExpectedShortFall(x.getRealizations(), getWeights(weights, x.size()), percentageLevel);
+	}
+
+	private static double[] getWeights(RandomVariable weights, int numberOfPaths) {
+		if(weights.isDeterministic()) {
+			final double[] constantWeights = new double[numberOfPaths];
+			Arrays.fill(constantWeights, weights.doubleValue());
+			return constantWeights;
+		}
+		return weights.getRealizations();
+	}
 }
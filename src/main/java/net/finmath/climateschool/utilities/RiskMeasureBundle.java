@@ -0,0 +1,174 @@
+package net.finmath.climateschool.utilities;
+
+import java.util.Arrays;
+
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Risk measures of a <code>RandomVariable</code> at many levels, calculated from a single sort of its realizations.
+ *
+ * The realizations are sorted once and their (compensated) prefix sums are stored. Then
+ * <ul>
+ * 	<li>the value at risk at level &alpha; is the element of the sorted realizations at the index used by <code>RandomVariable.getQuantile</code>,</li>
+ * 	<li>the left (right) tail expected shortfall is the prefix sum (suffix sum) up to (from) the first realization &ge; VaR,</li>
+ * </ul>
+ * i.e., each risk measure is obtained in O(log n) without further allocation. The values agree with
+ * {@link RandomOperators#valueAtRisk(RandomVariable, Double)}, {@link RandomOperators#leftTailExpectedShortFall(RandomVariable, Double)} and
+ * {@link RandomOperators#rightTailExpectedShortFall(RandomVariable, Double)}, up to rounding of the sums.
+ *
+ * @author Christian Fries
+ */
+public class RiskMeasureBundle {
+
+	private final double[] sorted;
+	private final double[] prefixSum;		// prefixSum[k] = sum of the k smallest realizations
+	private final double mean;
+	private final double variance;
+
+	private RiskMeasureBundle(double[] sorted) {
+		this.sorted = sorted;
+
+		final int numberOfPaths = sorted.length;
+		prefixSum = new double[numberOfPaths+1];
+		double sum = 0.0;
+		double error = 0.0;
+		for(int i=0; i<numberOfPaths; i++) {
+			// Kahan summation
+			final double value = sorted[i] - error;
+			final double newSum = sum + value;
+			error = (newSum - sum) - value;
+			sum = newSum;
+			prefixSum[i+1] = sum;
+		}
+		mean = numberOfPaths > 0 ? sum / numberOfPaths : Double.NaN;
+
+		double sumOfSquaredDeviations = 0.0;
+		for(final double value : sorted) {
+			sumOfSquaredDeviations += (value - mean) * (value - mean);
+		}
+		variance = numberOfPaths > 0 ? sumOfSquaredDeviations / numberOfPaths : Double.NaN;
+	}
+
+	/**
+	 * Create the risk measures of a random variable (sorts a copy of its realizations).
+	 *
+	 * @param x The random variable.
+	 * @return The risk measures.
+	 */
+	public static RiskMeasureBundle of(RandomVariable x) {
+		final double[] sorted = x.isDeterministic() ? new double[] { x.doubleValue() } : x.getRealizations().clone();
+		Arrays.sort(sorted);
+		return new RiskMeasureBundle(sorted);
+	}
+
+	/**
+	 * Create the risk measures of the given realizations (sorts a copy).
+	 *
+	 * @param realizations The realizations.
+	 * @return The risk measures.
+	 */
+	public static RiskMeasureBundle of(double[] realizations) {
+		final double[] sorted = realizations.clone();
+		Arrays.sort(sorted);
+		return new RiskMeasureBundle(sorted);
+	}
+
+	public int size() {
+		return sorted.length;
+	}
+
+	/**
+	 * @return E(X).
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return Var(X) = E((X - E(X))^2).
+	 */
+	public double getVariance() {
+		return variance;
+	}
+
+	/**
+	 * VaR_&alpha;(X), the &alpha;-quantile (same index convention as <code>RandomVariable.getQuantile</code>).
+	 *
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return VaR_&alpha;(X).
+	 */
+	public double getValueAtRisk(double percentageLevel) {
+		final int numberOfPaths = sorted.length;
+		final int index = Math.min(Math.max((int)Math.round((numberOfPaths+1) * percentageLevel - 1), 0), numberOfPaths-1);
+		return sorted[index];
+	}
+
+	/**
+	 * ES_&alpha;(X) = E(X 1(X &lt; VaR_&alpha;(X))) / &alpha;, for values where lower values are worse outcomes.
+	 *
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return ES_&alpha;(X).
+	 */
+	public double getLeftTailExpectedShortFall(double percentageLevel) {
+		if(variance == 0) return mean;
+		if(percentageLevel == 1) return mean;
+
+		final int numberBelow = getNumberOfValuesBelow(getValueAtRisk(percentageLevel));
+		return prefixSum[numberBelow] / sorted.length / percentageLevel;
+	}
+
+	/**
+	 * ES_&alpha;(X) = E(X 1(X &ge; VaR_&alpha;(X))) / (1-&alpha;), for losses where higher values are worse outcomes.
+	 *
+	 * @param percentageLevel The percentage &alpha; level.
+	 * @return ES_&alpha;(X).
+	 */
+	public double getRightTailExpectedShortFall(double percentageLevel) {
+		if(variance == 0) return mean;
+
+		final int numberBelow = getNumberOfValuesBelow(getValueAtRisk(percentageLevel));
+		return (prefixSum[sorted.length] - prefixSum[numberBelow]) / sorted.length / (1-percentageLevel);
+	}
+
+	/**
+	 * @param percentageLevels The percentage levels.
+	 * @return VaR at each of the given levels.
+	 */
+	public double[] getValueAtRisk(double[] percentageLevels) {
+		return Arrays.stream(percentageLevels).map(this::getValueAtRisk).toArray();
+	}
+
+	/**
+	 * @param percentageLevels The percentage levels.
+	 * @return The left tail expected shortfall at each of the given levels.
+	 */
+	public double[] getLeftTailExpectedShortFall(double[] percentageLevels) {
+		return Arrays.stream(percentageLevels).map(this::getLeftTailExpectedShortFall).toArray();
+	}
+
+	/**
+	 * @param percentageLevels The percentage levels.
+	 * @return The right tail expected shortfall at each of the given levels.
+	 */
+	public double[] getRightTailExpectedShortFall(double[] percentageLevels) {
+		return Arrays.stream(percentageLevels).map(this::getRightTailExpectedShortFall).toArray();
+	}
+
+	/*
+	 * The number of realizations strictly less than the given value (first index of a value &ge; the given value).
+	 */
+	private int getNumberOfValuesBelow(double value) {
+		int low = 0;
+		int high = sorted.length;
+		while(low < high) {
+			final int middle = (low + high) >>> 1;
+			if(sorted[middle] < value) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,132 @@
+package net.finmath.climateschool.utilities;
+
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+
+/**
+ * Histogram of a stream of samples with fixed, equally spaced bins, in constant memory.
+ *
+ * Samples outside the range are counted as underflow and overflow (they are part of the total count, i.e., the density
+ * integrates to the fraction of the samples inside the range). Histograms of different threads are combined with
+ * {@link #combine(StreamingHistogram)}.
+ *
+ * An instance is not thread-safe: use one instance per thread and combine them.
+ *
+ * @author Christian Fries
+ */
+public class StreamingHistogram implements DoubleConsumer {
+
+	private final double lowerBound;
+	private final double upperBound;
+	private final double binsPerUnit;
+	private final long[] counts;
+	private long underflow = 0;
+	private long overflow = 0;
+
+	/**
+	 * Create an empty histogram.
+	 *
+	 * @param lowerBound The lower bound of the first bin.
+	 * @param upperBound The upper bound of the last bin.
+	 * @param numberOfBins The number of bins.
+	 */
+	public StreamingHistogram(double lowerBound, double upperBound, int numberOfBins) {
+		if(!(upperBound > lowerBound) || numberOfBins < 1) {
+			throw new IllegalArgumentException("The histogram requires lowerBound < upperBound and at least one bin.");
+		}
+		this.lowerBound = lowerBound;
+		this.upperBound = upperBound;
+		this.binsPerUnit = numberOfBins / (upperBound - lowerBound);
+		this.counts = new long[numberOfBins];
+	}
+
+	/**
+	 * Collect the histogram of a stream (sequential or parallel).
+	 *
+	 * @param samples The samples.
+	 * @param lowerBound The lower bound of the first bin.
+	 * @param upperBound The upper bound of the last bin.
+	 * @param numberOfBins The number of bins.
+	 * @return The histogram.
+	 */
+	public static StreamingHistogram of(DoubleStream samples, double lowerBound, double upperBound, int numberOfBins) {
+		return samples.collect(() -> new StreamingHistogram(lowerBound, upperBound, numberOfBins), StreamingHistogram::accept, StreamingHistogram::combine);
+	}
+
+	@Override
+	public void accept(double value) {
+		if(value < lowerBound) {
+			underflow++;
+		}
+		else if(value >= upperBound) {
+			overflow++;
+		}
+		else {
+			counts[Math.min((int)((value - lowerBound) * binsPerUnit), counts.length-1)]++;
+		}
+	}
+
+	/**
+	 * Combine the counts of another histogram with the same bins into this one. The other histogram is not modified.
+	 *
+	 * @param other The other histogram.
+	 * @return This histogram.
+	 */
+	public StreamingHistogram combine(StreamingHistogram other) {
+		if(other.lowerBound != lowerBound || other.upperBound != upperBound || other.counts.length != counts.length) {
+			throw new IllegalArgumentException("Histograms with different bins cannot be combined.");
+		}
+		for(int bin=0; bin<counts.length; bin++) {
+			counts[bin] += other.counts[bin];
+		}
+		underflow += other.underflow;
+		overflow += other.overflow;
+		return this;
+	}
+
+	/**
+	 * @return The number of samples (including those outside the range).
+	 */
+	public long getCount() {
+		long count = underflow + overflow;
+		for(final long countOfBin : counts) {
+			count += countOfBin;
+		}
+		return count;
+	}
+
+	public long[] getCounts() {
+		return counts.clone();
+	}
+
+	public long getUnderflow() {
+		return underflow;
+	}
+
+	public long getOverflow() {
+		return overflow;
+	}
+
+	/**
+	 * @return The centers of the bins.
+	 */
+	public double[] getBinCenters() {
+		final double[] centers = new double[counts.length];
+		for(int bin=0; bin<counts.length; bin++) {
+			centers[bin] = lowerBound + (bin + 0.5) / binsPerUnit;
+		}
+		return centers;
+	}
+
+	/**
+	 * @return The density per bin, i.e., the fraction of the samples in the bin divided by the width of the bin.
+	 */
+	public double[] getDensity() {
+		final double count = getCount();
+		final double[] density = new double[counts.length];
+		for(int bin=0; bin<counts.length; bin++) {
+			density[bin] = count > 0 ? counts[bin] / count * binsPerUnit : 0.0;
+		}
+		return density;
+	}
+}
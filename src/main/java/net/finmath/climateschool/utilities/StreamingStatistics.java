@@ -0,0 +1,147 @@
+package net.finmath.climateschool.utilities;
+
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+
+/**
+ * Moments of a stream of samples in constant memory.
+ *
+ * Mean and variance are updated with Welford's algorithm (numerically stable in a single pass), the sum is accumulated with
+ * Kahan summation. Statistics of different threads are combined with {@link #combine(StreamingStatistics)} (Chan's formula),
+ * such that a (parallel) <code>DoubleStream</code> can be collected directly, see {@link #of(DoubleStream)}.
+ * Samples generated in chunks (e.g. into a reused buffer) can be added with {@link #accept(double[], int, int)}.
+ *
+ * An instance is not thread-safe: use one instance per thread and combine them.
+ *
+ * @author Christian Fries
+ */
+public class StreamingStatistics implements DoubleConsumer {
+
+	private long count = 0;
+	private double mean = 0.0;
+	private double sumOfSquaredDeviations = 0.0;		// M2 of Welford's algorithm
+	private double sum = 0.0;
+	private double sumError = 0.0;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Collect the statistics of a stream (sequential or parallel).
+	 *
+	 * @param samples The samples.
+	 * @return The statistics.
+	 */
+	public static StreamingStatistics of(DoubleStream samples) {
+		return samples.collect(StreamingStatistics::new, StreamingStatistics::accept, StreamingStatistics::combine);
+	}
+
+	@Override
+	public void accept(double value) {
+		count++;
+		final double delta = value - mean;
+		mean += delta / count;
+		sumOfSquaredDeviations += delta * (value - mean);
+
+		final double summand = value - sumError;
+		final double newSum = sum + summand;
+		sumError = (newSum - sum) - summand;
+		sum = newSum;
+
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Add a chunk of samples.
+	 *
+	 * @param values The array of samples.
+	 * @param from The first index (inclusive).
+	 * @param to The last index (exclusive).
+	 */
+	public void accept(double[] values, int from, int to) {
+		for(int i=from; i<to; i++) {
+			accept(values[i]);
+		}
+	}
+
+	/**
+	 * Combine the statistics of another set of samples into this one. The other statistics are not modified.
+	 *
+	 * @param other The other statistics.
+	 * @return This statistics.
+	 */
+	public StreamingStatistics combine(StreamingStatistics other) {
+		if(other.count == 0) return this;
+
+		final long combinedCount = count + other.count;
+		final double delta = other.mean - mean;
+		sumOfSquaredDeviations += other.sumOfSquaredDeviations + delta * delta * ((double)count * other.count / combinedCount);
+		mean += delta * other.count / combinedCount;
+		count = combinedCount;
+
+		final double summand = other.sum - sumError - other.sumError;
+		final double newSum = sum + summand;
+		sumError = (newSum - sum) - summand;
+		sum = newSum;
+
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		return this;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The (Kahan compensated) sum of the samples.
+	 */
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return The mean of the samples (NaN if there are none).
+	 */
+	public double getMean() {
+		return count > 0 ? mean : Double.NaN;
+	}
+
+	/**
+	 * @return The variance of the samples, E((X - E(X))^2), i.e., normalized by n.
+	 */
+	public double getVariance() {
+		return count > 0 ? sumOfSquaredDeviations / count : Double.NaN;
+	}
+
+	/**
+	 * @return The unbiased estimate of the variance, normalized by n-1.
+	 */
+	public double getSampleVariance() {
+		return count > 1 ? sumOfSquaredDeviations / (count-1) : Double.NaN;
+	}
+
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * @return The standard error of the mean, i.e., the sample standard deviation divided by sqrt(n).
+	 */
+	public double getStandardError() {
+		return Math.sqrt(getSampleVariance() / count);
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return "StreamingStatistics [count=" + count + ", mean=" + getMean() + ", variance=" + getVariance() + ", min=" + min + ", max=" + max + "]";
+	}
+}